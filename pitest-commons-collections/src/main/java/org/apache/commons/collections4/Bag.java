@@ -19,6 +19,7 @@ package org.apache.commons.collections4;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.Set;
+import java.util.function.ObjIntConsumer;
 
 /**
  * Defines a collection that counts the number of times an object appears in
@@ -122,6 +123,27 @@ public interface Bag<E> extends Collection<E> {
      */
     Set<E> uniqueSet();
 
+    /**
+     * Performs the given action for each distinct element of the bag and its
+     * number of occurrences, visiting every element once whatever its count.
+     * <p>
+     * The default implementation looks up the count of each element of the
+     * {@link #uniqueSet()}; implementations backed by a table of counts read
+     * them as they traverse it. The action must not modify the bag.
+     *
+     * @param action  the action to perform, must not be null
+     * @throws NullPointerException if the action is null
+     * @since 4.5
+     */
+    default void forEachEntry(final ObjIntConsumer<? super E> action) {
+        if (action == null) {
+            throw new NullPointerException("The action must not be null");
+        }
+        for (final E element : uniqueSet()) {
+            action.accept(element, getCount(element));
+        }
+    }
+
     /**
      * Returns the total number of items in the bag across all types.
      *
@@ -18,9 +18,11 @@ package org.apache.commons.collections4;
 
 import java.lang.reflect.Array;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.EnumSet;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -28,9 +30,11 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
+import java.util.RandomAccess;
 import java.util.Set;
+import java.util.function.ObjIntConsumer;
 
-import org.apache.commons.collections4.bag.HashBag;
+import org.apache.commons.collections4.bitmap.RoaringIntSet;
 import org.apache.commons.collections4.collection.PredicatedCollection;
 import org.apache.commons.collections4.collection.SynchronizedCollection;
 import org.apache.commons.collections4.collection.TransformedCollection;
@@ -38,7 +42,10 @@ import org.apache.commons.collections4.collection.UnmodifiableBoundedCollection;
 import org.apache.commons.collections4.collection.UnmodifiableCollection;
 import org.apache.commons.collections4.functors.TruePredicate;
 import org.apache.commons.collections4.iterators.CollatingIterator;
+import org.apache.commons.collections4.iterators.PermutationCursor;
 import org.apache.commons.collections4.iterators.PermutationIterator;
+import org.apache.commons.collections4.map.ObjectIntHashMap;
+import org.apache.commons.collections4.set.BloomFilterSet;
 
 /**
  * Provides utility methods and decorators for {@link Collection} instances.
@@ -53,125 +60,6 @@ import org.apache.commons.collections4.iterators.PermutationIterator;
  */
 public class CollectionUtils {
 
-    /**
-     * Helper class to easily access cardinality properties of two collections.
-     * @param <O>  the element type
-     */
-    private static class CardinalityHelper<O> {
-
-        /** Contains the cardinality for each object in collection A. */
-        final Map<O, Integer> cardinalityA;
-
-        /** Contains the cardinality for each object in collection B. */
-        final Map<O, Integer> cardinalityB;
-
-        /**
-         * Create a new CardinalityHelper for two collections.
-         * @param a  the first collection
-         * @param b  the second collection
-         */
-        public CardinalityHelper(final Iterable<? extends O> a, final Iterable<? extends O> b) {
-            cardinalityA = CollectionUtils.<O>getCardinalityMap(a);
-            cardinalityB = CollectionUtils.<O>getCardinalityMap(b);
-        }
-
-        /**
-         * Returns the maximum frequency of an object.
-         * @param obj  the object
-         * @return the maximum frequency of the object
-         */
-        public final int max(final Object obj) {
-            return Math.max(freqA(obj), freqB(obj));
-        }
-
-        /**
-         * Returns the minimum frequency of an object.
-         * @param obj  the object
-         * @return the minimum frequency of the object
-         */
-        public final int min(final Object obj) {
-            return Math.min(freqA(obj), freqB(obj));
-        }
-
-        /**
-         * Returns the frequency of this object in collection A.
-         * @param obj  the object
-         * @return the frequency of the object in collection A
-         */
-        public int freqA(final Object obj) {
-            return getFreq(obj, cardinalityA);
-        }
-
-        /**
-         * Returns the frequency of this object in collection B.
-         * @param obj  the object
-         * @return the frequency of the object in collection B
-         */
-        public int freqB(final Object obj) {
-            return getFreq(obj, cardinalityB);
-        }
-
-        private int getFreq(final Object obj, final Map<?, Integer> freqMap) {
-            final Integer count = freqMap.get(obj);
-            if (count != null) {
-                return count.intValue();
-            }
-            return 0;
-        }
-    }
-
-    /**
-     * Helper class for set-related operations, e.g. union, subtract, intersection.
-     * @param <O>  the element type
-     */
-    private static class SetOperationCardinalityHelper<O> extends CardinalityHelper<O> implements Iterable<O> {
-
-        /** Contains the unique elements of the two collections. */
-        private final Set<O> elements;
-
-        /** Output collection. */
-        private final List<O> newList;
-
-        /**
-         * Create a new set operation helper from the two collections.
-         * @param a  the first collection
-         * @param b  the second collection
-         */
-        public SetOperationCardinalityHelper(final Iterable<? extends O> a, final Iterable<? extends O> b) {
-            super(a, b);
-            elements = new HashSet<>();
-            addAll(elements, a);
-            addAll(elements, b);
-            // the resulting list must contain at least each unique element, but may grow
-            newList = new ArrayList<>(elements.size());
-        }
-
-        @Override
-        public Iterator<O> iterator() {
-            return elements.iterator();
-        }
-
-        /**
-         * Add the object {@code count} times to the result collection.
-         * @param obj  the object to add
-         * @param count  the count
-         */
-        public void setCardinality(final O obj, final int count) {
-            for (int i = 0; i < count; i++) {
-                newList.add(obj);
-            }
-        }
-
-        /**
-         * Returns the resulting collection.
-         * @return the result
-         */
-        public Collection<O> list() {
-            return newList;
-        }
-
-    }
-
     /**
      * An empty unmodifiable collection.
      * The JDK provides empty Set and List implementations which could be used for
@@ -181,6 +69,22 @@ public class CollectionUtils {
     @SuppressWarnings("rawtypes") // we deliberately use the raw type here
     public static final Collection EMPTY_COLLECTION = Collections.emptyList();
 
+    /**
+     * Whether a list class inherits {@link Collection#removeIf}, which removes
+     * the matching elements one by one through the iterator.
+     */
+    private static final ClassValue<Boolean> INHERITS_REMOVE_IF = new ClassValue<Boolean>() {
+        @Override
+        protected Boolean computeValue(final Class<?> type) {
+            try {
+                return Boolean.valueOf(type.getMethod("removeIf", java.util.function.Predicate.class)
+                        .getDeclaringClass() == Collection.class);
+            } catch (final NoSuchMethodException ex) {
+                return Boolean.FALSE;
+            }
+        }
+    };
+
     /**
      * <code>CollectionUtils</code> should not normally be instantiated.
      */
@@ -218,6 +122,9 @@ public class CollectionUtils {
      * The cardinality of each element in the returned {@link Collection} will
      * be equal to the maximum of the cardinality of that element in the two
      * given {@link Iterable}s.
+     * <p>
+     * If both inputs are {@link RoaringIntSet}s, the result is a new
+     * {@link RoaringIntSet}, computed container by container without boxing.
      *
      * @param a the first collection, must not be null
      * @param b the second collection, must not be null
@@ -227,11 +134,87 @@ public class CollectionUtils {
      * @see Collection#addAll
      */
     public static <O> Collection<O> union(final Iterable<? extends O> a, final Iterable<? extends O> b) {
-        final SetOperationCardinalityHelper<O> helper = new SetOperationCardinalityHelper<>(a, b);
-        for (final O obj : helper) {
-            helper.setCardinality(obj, helper.max(obj));
+        if (a instanceof RoaringIntSet && b instanceof RoaringIntSet) {
+            return bitmapOperation(a, b, SetOperationEngine.Operation.UNION);
+        }
+        final List<O> dense = DenseSetOperations.apply(a, b, SetOperationEngine.Operation.UNION);
+        return dense != null ? dense : SetOperationEngine.<O>of(a, b).emit(SetOperationEngine.Operation.UNION);
+    }
+
+    /**
+     * Returns a {@link Collection} containing the union of the given {@link Iterable}s.
+     * <p>
+     * The cardinality of each element in the returned {@link Collection} will be
+     * equal to the maximum of the cardinality of that element in all the given
+     * {@link Iterable}s, where an {@link Iterable} that does not hold the element
+     * counts as zero.
+     * <p>
+     * All the inputs are counted into a single table in one pass and the result
+     * is emitted once, so the cost is linear in the total number of elements,
+     * whereas chaining {@link #union(Iterable, Iterable)} rebuilds the table and
+     * the intermediate result for every input. If all the inputs are
+     * {@link RoaringIntSet}s, the result is a new {@link RoaringIntSet}.
+     *
+     * @param inputs the collections, must not be null or contain null
+     * @param <O> the generic type that is able to represent the types contained
+     *        in all the input collections.
+     * @return the union of the collections, empty if there are none
+     * @throws NullPointerException if the array or any of the collections is null
+     * @see #union(Iterable, Iterable)
+     * @since 4.5
+     */
+    @SafeVarargs
+    @SuppressWarnings("varargs") // the array is only read, through a list that does not escape
+    public static <O> Collection<O> union(final Iterable<? extends O>... inputs) {
+        if (inputs == null) {
+            throw new NullPointerException("The collections must not be null");
         }
-        return helper.list();
+        return union(Arrays.asList(inputs));
+    }
+
+    /**
+     * Returns a {@link Collection} containing the union of the {@link Iterable}s
+     * in the given {@link Collection}, as defined by {@link #union(Iterable...)}.
+     *
+     * @param inputs the collections, must not be null or contain null
+     * @param <O> the generic type that is able to represent the types contained
+     *        in all the input collections.
+     * @return the union of the collections, empty if there are none
+     * @throws NullPointerException if the collection or any of its collections is null
+     * @see #union(Iterable...)
+     * @since 4.5
+     */
+    public static <O> Collection<O> union(final Collection<? extends Iterable<? extends O>> inputs) {
+        return naryOperation(inputs, SetOperationEngine.Operation.UNION);
+    }
+
+    /**
+     * Returns a {@link List} containing the union of the given {@link Iterable}s,
+     * which must both be sorted according to the given {@link Comparator}.
+     * <p>
+     * The cardinality of each element in the returned {@link List} will be
+     * equal to the maximum of the cardinality of that element in the two given
+     * {@link Iterable}s, where elements are considered equal if the comparator
+     * returns zero for them.
+     * <p>
+     * Instead of hashing the elements, this method merges the two inputs in a
+     * single linear pass, e.g. for two {@link java.util.SortedSet}s or two lists
+     * sorted with a comparator from {@link ComparatorUtils}. The returned list is
+     * sorted as well. The result is undefined if an input is not sorted.
+     *
+     * @param a the first sorted collection, must not be null
+     * @param b the second sorted collection, must not be null
+     * @param c the comparator both collections are sorted by, must not be null
+     * @param <O> the generic type that is able to represent the types contained
+     *        in both input collections.
+     * @return the sorted union of the two collections
+     * @throws NullPointerException if either collection or the comparator is null
+     * @see #union(Iterable, Iterable)
+     * @since 4.5
+     */
+    public static <O> List<O> union(final Iterable<? extends O> a, final Iterable<? extends O> b,
+                                    final Comparator<? super O> c) {
+        return SortedSetOperations.apply(a, b, c, SetOperationEngine.Operation.UNION, false);
     }
 
     /**
@@ -241,6 +224,9 @@ public class CollectionUtils {
      * The cardinality of each element in the returned {@link Collection} will
      * be equal to the minimum of the cardinality of that element in the two
      * given {@link Iterable}s.
+     * <p>
+     * If both inputs are {@link RoaringIntSet}s, the result is a new
+     * {@link RoaringIntSet}, computed container by container without boxing.
      *
      * @param a the first collection, must not be null
      * @param b the second collection, must not be null
@@ -251,11 +237,88 @@ public class CollectionUtils {
      * @see #containsAny
      */
     public static <O> Collection<O> intersection(final Iterable<? extends O> a, final Iterable<? extends O> b) {
-        final SetOperationCardinalityHelper<O> helper = new SetOperationCardinalityHelper<>(a, b);
-        for (final O obj : helper) {
-            helper.setCardinality(obj, helper.min(obj));
+        if (a instanceof RoaringIntSet && b instanceof RoaringIntSet) {
+            return bitmapOperation(a, b, SetOperationEngine.Operation.INTERSECTION);
+        }
+        final List<O> dense = DenseSetOperations.apply(a, b, SetOperationEngine.Operation.INTERSECTION);
+        return dense != null ? dense : SetOperationEngine.<O>of(a, b).emit(SetOperationEngine.Operation.INTERSECTION);
+    }
+
+    /**
+     * Returns a {@link Collection} containing the intersection of the given {@link Iterable}s.
+     * <p>
+     * The cardinality of each element in the returned {@link Collection} will be
+     * equal to the minimum of the cardinality of that element in all the given
+     * {@link Iterable}s, where an {@link Iterable} that does not hold the element
+     * counts as zero.
+     * <p>
+     * All the inputs are counted into a single table in one pass and the result
+     * is emitted once, so the cost is linear in the total number of elements,
+     * whereas chaining {@link #intersection(Iterable, Iterable)} rebuilds the table and
+     * the intermediate result for every input. If all the inputs are
+     * {@link RoaringIntSet}s, the result is a new {@link RoaringIntSet}.
+     *
+     * @param inputs the collections, must not be null or contain null
+     * @param <O> the generic type that is able to represent the types contained
+     *        in all the input collections.
+     * @return the intersection of the collections, empty if there are none
+     * @throws NullPointerException if the array or any of the collections is null
+     * @see #intersection(Iterable, Iterable)
+     * @since 4.5
+     */
+    @SafeVarargs
+    @SuppressWarnings("varargs") // the array is only read, through a list that does not escape
+    public static <O> Collection<O> intersection(final Iterable<? extends O>... inputs) {
+        if (inputs == null) {
+            throw new NullPointerException("The collections must not be null");
         }
-        return helper.list();
+        return intersection(Arrays.asList(inputs));
+    }
+
+    /**
+     * Returns a {@link Collection} containing the intersection of the {@link Iterable}s
+     * in the given {@link Collection}, as defined by {@link #intersection(Iterable...)}.
+     *
+     * @param inputs the collections, must not be null or contain null
+     * @param <O> the generic type that is able to represent the types contained
+     *        in all the input collections.
+     * @return the intersection of the collections, empty if there are none
+     * @throws NullPointerException if the collection or any of its collections is null
+     * @see #intersection(Iterable...)
+     * @since 4.5
+     */
+    public static <O> Collection<O> intersection(final Collection<? extends Iterable<? extends O>> inputs) {
+        return naryOperation(inputs, SetOperationEngine.Operation.INTERSECTION);
+    }
+
+    /**
+     * Returns a {@link List} containing the intersection of the given {@link Iterable}s,
+     * which must both be sorted according to the given {@link Comparator}.
+     * <p>
+     * The cardinality of each element in the returned {@link List} will be
+     * equal to the minimum of the cardinality of that element in the two given
+     * {@link Iterable}s, where elements are considered equal if the comparator
+     * returns zero for them.
+     * <p>
+     * Instead of hashing the elements, this method merges the two inputs in a
+     * single linear pass. If both inputs are {@link java.util.RandomAccess} lists
+     * and one is much smaller than the other, the larger one is skipped through
+     * with galloping search. The returned list is sorted as well. The result is
+     * undefined if an input is not sorted.
+     *
+     * @param a the first sorted collection, must not be null
+     * @param b the second sorted collection, must not be null
+     * @param c the comparator both collections are sorted by, must not be null
+     * @param <O> the generic type that is able to represent the types contained
+     *        in both input collections.
+     * @return the sorted intersection of the two collections
+     * @throws NullPointerException if either collection or the comparator is null
+     * @see #intersection(Iterable, Iterable)
+     * @since 4.5
+     */
+    public static <O> List<O> intersection(final Iterable<? extends O> a, final Iterable<? extends O> b,
+                                           final Comparator<? super O> c) {
+        return SortedSetOperations.apply(a, b, c, SetOperationEngine.Operation.INTERSECTION, false);
     }
 
     /**
@@ -271,7 +334,10 @@ public class CollectionUtils {
      * {@code {@link #subtract subtract}({@link #union union(a,b)},{@link #intersection intersection(a,b)})}
      * or
      * {@code {@link #union union}({@link #subtract subtract(a,b)},{@link #subtract subtract(b,a)})}.
-
+     * <p>
+     * If both inputs are {@link RoaringIntSet}s, the result is a new
+     * {@link RoaringIntSet}, computed container by container without boxing.
+     *
      * @param a the first collection, must not be null
      * @param b the second collection, must not be null
      * @param <O> the generic type that is able to represent the types contained
@@ -279,11 +345,87 @@ public class CollectionUtils {
      * @return the symmetric difference of the two collections
      */
     public static <O> Collection<O> disjunction(final Iterable<? extends O> a, final Iterable<? extends O> b) {
-        final SetOperationCardinalityHelper<O> helper = new SetOperationCardinalityHelper<>(a, b);
-        for (final O obj : helper) {
-            helper.setCardinality(obj, helper.max(obj) - helper.min(obj));
+        if (a instanceof RoaringIntSet && b instanceof RoaringIntSet) {
+            return bitmapOperation(a, b, SetOperationEngine.Operation.DISJUNCTION);
+        }
+        final List<O> dense = DenseSetOperations.apply(a, b, SetOperationEngine.Operation.DISJUNCTION);
+        return dense != null ? dense : SetOperationEngine.<O>of(a, b).emit(SetOperationEngine.Operation.DISJUNCTION);
+    }
+
+    /**
+     * Returns a {@link Collection} containing the exclusive disjunction of the given {@link Iterable}s.
+     * <p>
+     * The cardinality of each element in the returned {@link Collection} will be
+     * equal to the maximum minus the minimum of the cardinality of that element in
+     * all the given {@link Iterable}s, where an {@link Iterable} that does not hold
+     * the element counts as zero.
+     * <p>
+     * All the inputs are counted into a single table in one pass and the result
+     * is emitted once, so the cost is linear in the total number of elements,
+     * whereas chaining {@link #disjunction(Iterable, Iterable)} rebuilds the table and
+     * the intermediate result for every input. If all the inputs are
+     * {@link RoaringIntSet}s, the result is a new {@link RoaringIntSet}.
+     *
+     * @param inputs the collections, must not be null or contain null
+     * @param <O> the generic type that is able to represent the types contained
+     *        in all the input collections.
+     * @return the exclusive disjunction of the collections, empty if there are none
+     * @throws NullPointerException if the array or any of the collections is null
+     * @see #disjunction(Iterable, Iterable)
+     * @since 4.5
+     */
+    @SafeVarargs
+    @SuppressWarnings("varargs") // the array is only read, through a list that does not escape
+    public static <O> Collection<O> disjunction(final Iterable<? extends O>... inputs) {
+        if (inputs == null) {
+            throw new NullPointerException("The collections must not be null");
         }
-        return helper.list();
+        return disjunction(Arrays.asList(inputs));
+    }
+
+    /**
+     * Returns a {@link Collection} containing the exclusive disjunction of the {@link Iterable}s
+     * in the given {@link Collection}, as defined by {@link #disjunction(Iterable...)}.
+     *
+     * @param inputs the collections, must not be null or contain null
+     * @param <O> the generic type that is able to represent the types contained
+     *        in all the input collections.
+     * @return the exclusive disjunction of the collections, empty if there are none
+     * @throws NullPointerException if the collection or any of its collections is null
+     * @see #disjunction(Iterable...)
+     * @since 4.5
+     */
+    public static <O> Collection<O> disjunction(final Collection<? extends Iterable<? extends O>> inputs) {
+        return naryOperation(inputs, SetOperationEngine.Operation.DISJUNCTION);
+    }
+
+    /**
+     * Returns a {@link List} containing the exclusive disjunction (symmetric difference)
+     * of the given {@link Iterable}s, which must both be sorted according to the given
+     * {@link Comparator}.
+     * <p>
+     * The cardinality of each element <i>e</i> in the returned {@link List} will be
+     * equal to <code>max(cardinality(<i>e</i>,<i>a</i>),cardinality(<i>e</i>,<i>b</i>)) -
+     * min(cardinality(<i>e</i>,<i>a</i>),cardinality(<i>e</i>,<i>b</i>))</code>,
+     * where elements are considered equal if the comparator returns zero for them.
+     * <p>
+     * Instead of hashing the elements, this method merges the two inputs in a
+     * single linear pass. The returned list is sorted as well. The result is
+     * undefined if an input is not sorted.
+     *
+     * @param a the first sorted collection, must not be null
+     * @param b the second sorted collection, must not be null
+     * @param c the comparator both collections are sorted by, must not be null
+     * @param <O> the generic type that is able to represent the types contained
+     *        in both input collections.
+     * @return the sorted symmetric difference of the two collections
+     * @throws NullPointerException if either collection or the comparator is null
+     * @see #disjunction(Iterable, Iterable)
+     * @since 4.5
+     */
+    public static <O> List<O> disjunction(final Iterable<? extends O> a, final Iterable<? extends O> b,
+                                          final Comparator<? super O> c) {
+        return SortedSetOperations.apply(a, b, c, SetOperationEngine.Operation.DISJUNCTION, false);
     }
 
     /**
@@ -291,6 +433,9 @@ public class CollectionUtils {
      * The cardinality of each element <i>e</i> in the returned {@link Collection}
      * will be the cardinality of <i>e</i> in <i>a</i> minus the cardinality
      * of <i>e</i> in <i>b</i>, or zero, whichever is greater.
+     * <p>
+     * If both inputs are {@link RoaringIntSet}s, the result is a new
+     * {@link RoaringIntSet}, computed container by container without boxing.
      *
      * @param a  the collection to subtract from, must not be null
      * @param b  the collection to subtract, must not be null
@@ -300,10 +445,398 @@ public class CollectionUtils {
      * @see Collection#removeAll
      */
     public static <O> Collection<O> subtract(final Iterable<? extends O> a, final Iterable<? extends O> b) {
+        if (a instanceof RoaringIntSet && b instanceof RoaringIntSet) {
+            return bitmapOperation(a, b, SetOperationEngine.Operation.SUBTRACT);
+        }
+        final List<O> dense = DenseSetOperations.subtract(a, b);
+        if (dense != null) {
+            return dense;
+        }
         final Predicate<O> p = TruePredicate.truePredicate();
         return subtract(a, b, p);
     }
 
+    /**
+     * Applies a set operation to any number of collections, combining them
+     * container by container if they are all {@link RoaringIntSet}s.
+     */
+    private static <O> Collection<O> naryOperation(final Collection<? extends Iterable<? extends O>> inputs,
+                                                   final SetOperationEngine.Operation op) {
+        if (inputs == null) {
+            throw new NullPointerException("The collections must not be null");
+        }
+        boolean bitmaps = !inputs.isEmpty();
+        for (final Iterable<? extends O> input : inputs) {
+            bitmaps &= input instanceof RoaringIntSet;
+        }
+        return bitmaps ? bitmapOperation(inputs, op) : SetOperationEngine.<O>ofAll(inputs).emit(op);
+    }
+
+    /**
+     * Applies a set operation to a non-empty collection of {@link RoaringIntSet}s.
+     * As every cardinality is zero or one, the maximum minus the minimum is one
+     * exactly for the values in the union but not in the intersection.
+     */
+    @SuppressWarnings("unchecked") // all inputs only hold integers
+    private static <O> Collection<O> bitmapOperation(final Collection<? extends Iterable<? extends O>> inputs,
+                                                     final SetOperationEngine.Operation op) {
+        final RoaringIntSet union = new RoaringIntSet();
+        RoaringIntSet intersection = null;
+        for (final Iterable<? extends O> input : inputs) {
+            final RoaringIntSet set = (RoaringIntSet) input;
+            if (op != SetOperationEngine.Operation.INTERSECTION) {
+                union.or(set);
+            }
+            if (op != SetOperationEngine.Operation.UNION) {
+                if (intersection == null) {
+                    intersection = new RoaringIntSet(set);
+                } else {
+                    intersection.and(set);
+                }
+            }
+        }
+        switch (op) {
+        case UNION:
+            return (Collection<O>) union;
+        case INTERSECTION:
+            return (Collection<O>) intersection;
+        default:
+            union.andNot(intersection);
+            return (Collection<O>) union;
+        }
+    }
+
+    /**
+     * Applies a set operation to two {@link RoaringIntSet}s, whose cardinalities
+     * are all zero or one, so that the set algebra gives the same elements.
+     */
+    @SuppressWarnings("unchecked") // both inputs only hold integers
+    private static <O> Collection<O> bitmapOperation(final Iterable<? extends O> a, final Iterable<? extends O> b,
+                                                     final SetOperationEngine.Operation op) {
+        final RoaringIntSet x = (RoaringIntSet) a;
+        final RoaringIntSet y = (RoaringIntSet) b;
+        switch (op) {
+        case UNION:
+            return (Collection<O>) RoaringIntSet.or(x, y);
+        case INTERSECTION:
+            return (Collection<O>) RoaringIntSet.and(x, y);
+        case DISJUNCTION:
+            return (Collection<O>) RoaringIntSet.xor(x, y);
+        default:
+            return (Collection<O>) RoaringIntSet.andNot(x, y);
+        }
+    }
+
+    /**
+     * Returns a new {@link List} containing {@code <i>a</i> - <i>b</i>}, where
+     * both {@link Iterable}s must be sorted according to the given {@link Comparator}.
+     * <p>
+     * The cardinality of each element <i>e</i> in the returned {@link List}
+     * will be the cardinality of <i>e</i> in <i>a</i> minus the cardinality
+     * of <i>e</i> in <i>b</i>, or zero, whichever is greater, where elements
+     * are considered equal if the comparator returns zero for them.
+     * <p>
+     * Instead of hashing the elements, this method merges the two inputs in a
+     * single linear pass. If both inputs are {@link java.util.RandomAccess} lists
+     * and one is much smaller than the other, the larger one is skipped through
+     * with galloping search. The returned list is sorted as well. The result is
+     * undefined if an input is not sorted.
+     *
+     * @param a  the sorted collection to subtract from, must not be null
+     * @param b  the sorted collection to subtract, must not be null
+     * @param c  the comparator both collections are sorted by, must not be null
+     * @param <O> the generic type that is able to represent the types contained
+     *        in both input collections.
+     * @return a new sorted list with the results
+     * @throws NullPointerException if either collection or the comparator is null
+     * @see #subtract(Iterable, Iterable)
+     * @since 4.5
+     */
+    public static <O> List<O> subtract(final Iterable<? extends O> a, final Iterable<? extends O> b,
+                                       final Comparator<? super O> c) {
+        return SortedSetOperations.apply(a, b, c, SetOperationEngine.Operation.SUBTRACT, false);
+    }
+
+    /**
+     * Returns a {@link Collection} containing the union of the given {@link Iterable}s, computed in parallel.
+     * <p>
+     * The cardinality of each element in the returned {@link Collection} is the
+     * same as for {@link #union(Iterable, Iterable)}.
+     * <p>
+     * Inputs with fewer than 32768 elements in total are handled sequentially.
+     * Larger inputs are hash-partitioned and each partition is counted in a
+     * separate task on the common {@link java.util.concurrent.ForkJoinPool}.
+     * Elements are grouped by partition in the result, so the order differs from
+     * the sequential method, but it is deterministic as long as the input order
+     * and the hash codes of the elements are.
+     *
+     * @param a the first collection, must not be null
+     * @param b the second collection, must not be null
+     * @param <O> the generic type that is able to represent the types contained
+     *        in both input collections.
+     * @return the union of the two collections
+     * @throws NullPointerException if either collection is null
+     * @see #union(Iterable, Iterable)
+     * @since 4.5
+     */
+    public static <O> Collection<O> parallelUnion(final Iterable<? extends O> a, final Iterable<? extends O> b) {
+        return ParallelSetOperations.apply(a, b, SetOperationEngine.Operation.UNION);
+    }
+
+    /**
+     * Returns a {@link Collection} containing the intersection of the given {@link Iterable}s, computed in parallel.
+     * <p>
+     * The cardinality of each element in the returned {@link Collection} is the
+     * same as for {@link #intersection(Iterable, Iterable)}, and the work is split as
+     * described for {@link #parallelUnion(Iterable, Iterable)}.
+     *
+     * @param a the first collection, must not be null
+     * @param b the second collection, must not be null
+     * @param <O> the generic type that is able to represent the types contained
+     *        in both input collections.
+     * @return the intersection of the two collections
+     * @throws NullPointerException if either collection is null
+     * @see #intersection(Iterable, Iterable)
+     * @since 4.5
+     */
+    public static <O> Collection<O> parallelIntersection(final Iterable<? extends O> a, final Iterable<? extends O> b) {
+        return ParallelSetOperations.apply(a, b, SetOperationEngine.Operation.INTERSECTION);
+    }
+
+    /**
+     * Returns a {@link Collection} containing the exclusive disjunction
+     * (symmetric difference) of the given {@link Iterable}s, computed in parallel.
+     * <p>
+     * The cardinality of each element in the returned {@link Collection} is the
+     * same as for {@link #disjunction(Iterable, Iterable)}, and the work is split as
+     * described for {@link #parallelUnion(Iterable, Iterable)}.
+     *
+     * @param a the first collection, must not be null
+     * @param b the second collection, must not be null
+     * @param <O> the generic type that is able to represent the types contained
+     *        in both input collections.
+     * @return the symmetric difference of the two collections
+     * @throws NullPointerException if either collection is null
+     * @see #disjunction(Iterable, Iterable)
+     * @since 4.5
+     */
+    public static <O> Collection<O> parallelDisjunction(final Iterable<? extends O> a, final Iterable<? extends O> b) {
+        return ParallelSetOperations.apply(a, b, SetOperationEngine.Operation.DISJUNCTION);
+    }
+
+    /**
+     * Returns a {@link Collection} containing {@code <i>a</i> - <i>b</i>}, computed in parallel.
+     * <p>
+     * The cardinality of each element in the returned {@link Collection} is the
+     * same as for {@link #subtract(Iterable, Iterable)}, and the work is split as
+     * described for {@link #parallelUnion(Iterable, Iterable)}.
+     *
+     * @param a the first collection, must not be null
+     * @param b the second collection, must not be null
+     * @param <O> the generic type that is able to represent the types contained
+     *        in both input collections.
+     * @return a new collection with the results
+     * @throws NullPointerException if either collection is null
+     * @see #subtract(Iterable, Iterable)
+     * @since 4.5
+     */
+    public static <O> Collection<O> parallelSubtract(final Iterable<? extends O> a, final Iterable<? extends O> b) {
+        return ParallelSetOperations.apply(a, b, SetOperationEngine.Operation.SUBTRACT);
+    }
+
+    /**
+     * Returns an unmodifiable {@link MultiSet} view of the union of the given
+     * {@link Iterable}s.
+     * <p>
+     * The cardinality of each element in the view is the same as in the result of
+     * {@link #union(Iterable, Iterable)}, but the result is not materialized: both
+     * inputs are counted into a single table when this method is called, and
+     * {@link MultiSet#getCount(Object)}, {@code size()}, {@code contains} and the
+     * iterator are answered from that table. The view does not reflect later
+     * changes to the inputs.
+     *
+     * @param a the first collection, must not be null
+     * @param b the second collection, must not be null
+     * @param <O> the generic type that is able to represent the types contained
+     *        in both input collections.
+     * @return an unmodifiable view of the result
+     * @throws NullPointerException if either collection is null
+     * @see #union(Iterable, Iterable)
+     * @since 4.5
+     */
+    public static <O> MultiSet<O> unionView(final Iterable<? extends O> a, final Iterable<? extends O> b) {
+        return new SetOperationView<>(SetOperationEngine.<O>of(a, b), SetOperationEngine.Operation.UNION);
+    }
+
+    /**
+     * Returns an unmodifiable {@link MultiSet} view of the intersection of the given
+     * {@link Iterable}s.
+     * <p>
+     * The cardinality of each element in the view is the same as in the result of
+     * {@link #intersection(Iterable, Iterable)}, but the result is not materialized: both
+     * inputs are counted into a single table when this method is called, and
+     * {@link MultiSet#getCount(Object)}, {@code size()}, {@code contains} and the
+     * iterator are answered from that table. The view does not reflect later
+     * changes to the inputs.
+     *
+     * @param a the first collection, must not be null
+     * @param b the second collection, must not be null
+     * @param <O> the generic type that is able to represent the types contained
+     *        in both input collections.
+     * @return an unmodifiable view of the result
+     * @throws NullPointerException if either collection is null
+     * @see #intersection(Iterable, Iterable)
+     * @since 4.5
+     */
+    public static <O> MultiSet<O> intersectionView(final Iterable<? extends O> a, final Iterable<? extends O> b) {
+        return new SetOperationView<>(SetOperationEngine.<O>of(a, b), SetOperationEngine.Operation.INTERSECTION);
+    }
+
+    /**
+     * Returns an unmodifiable {@link MultiSet} view of the exclusive disjunction (symmetric difference) of the given
+     * {@link Iterable}s.
+     * <p>
+     * The cardinality of each element in the view is the same as in the result of
+     * {@link #disjunction(Iterable, Iterable)}, but the result is not materialized: both
+     * inputs are counted into a single table when this method is called, and
+     * {@link MultiSet#getCount(Object)}, {@code size()}, {@code contains} and the
+     * iterator are answered from that table. The view does not reflect later
+     * changes to the inputs.
+     *
+     * @param a the first collection, must not be null
+     * @param b the second collection, must not be null
+     * @param <O> the generic type that is able to represent the types contained
+     *        in both input collections.
+     * @return an unmodifiable view of the result
+     * @throws NullPointerException if either collection is null
+     * @see #disjunction(Iterable, Iterable)
+     * @since 4.5
+     */
+    public static <O> MultiSet<O> disjunctionView(final Iterable<? extends O> a, final Iterable<? extends O> b) {
+        return new SetOperationView<>(SetOperationEngine.<O>of(a, b), SetOperationEngine.Operation.DISJUNCTION);
+    }
+
+    /**
+     * Returns an unmodifiable {@link MultiSet} view of {@code <i>a</i> - <i>b</i>}.
+     * <p>
+     * The cardinality of each element in the view is the same as in the result of
+     * {@link #subtract(Iterable, Iterable)}, but the result is not materialized: both
+     * inputs are counted into a single table when this method is called, and
+     * {@link MultiSet#getCount(Object)}, {@code size()}, {@code contains} and the
+     * iterator are answered from that table. The view does not reflect later
+     * changes to the inputs.
+     *
+     * @param a the first collection, must not be null
+     * @param b the second collection, must not be null
+     * @param <O> the generic type that is able to represent the types contained
+     *        in both input collections.
+     * @return an unmodifiable view of the result
+     * @throws NullPointerException if either collection is null
+     * @see #subtract(Iterable, Iterable)
+     * @since 4.5
+     */
+    public static <O> MultiSet<O> subtractView(final Iterable<? extends O> a, final Iterable<? extends O> b) {
+        return new SetOperationView<>(SetOperationEngine.<O>of(a, b), SetOperationEngine.Operation.SUBTRACT);
+    }
+
+    /**
+     * Returns the number of elements in the intersection of the given {@link Iterable}s,
+     * that is, the size of the result of {@link #intersection(Iterable, Iterable)}.
+     * <p>
+     * Only one collection, the smaller one if both sizes are known, is counted
+     * into a table, and the other is streamed against it; no output collection
+     * is built.
+     *
+     * @param a the first collection, must not be null
+     * @param b the second collection, must not be null
+     * @return the number of elements in the intersection
+     * @throws NullPointerException if either collection is null
+     * @see #intersection(Iterable, Iterable)
+     * @since 4.5
+     */
+    public static long intersectionCardinality(final Iterable<?> a, final Iterable<?> b) {
+        return countIntersection(a, b)[0];
+    }
+
+    /**
+     * Returns the number of elements in the union of the given {@link Iterable}s,
+     * that is, the size of the result of {@link #union(Iterable, Iterable)}.
+     * <p>
+     * Only one collection, the smaller one if both sizes are known, is counted
+     * into a table, and the other is streamed against it; no output collection
+     * is built.
+     *
+     * @param a the first collection, must not be null
+     * @param b the second collection, must not be null
+     * @return the number of elements in the union
+     * @throws NullPointerException if either collection is null
+     * @see #union(Iterable, Iterable)
+     * @since 4.5
+     */
+    public static long unionCardinality(final Iterable<?> a, final Iterable<?> b) {
+        final long[] counts = countIntersection(a, b);
+        return counts[1] + counts[2] - counts[0];
+    }
+
+    /**
+     * Returns the number of elements in the exclusive disjunction of the given
+     * {@link Iterable}s, that is, the size of the result of
+     * {@link #disjunction(Iterable, Iterable)}.
+     * <p>
+     * Only one collection, the smaller one if both sizes are known, is counted
+     * into a table, and the other is streamed against it; no output collection
+     * is built.
+     *
+     * @param a the first collection, must not be null
+     * @param b the second collection, must not be null
+     * @return the number of elements in the symmetric difference
+     * @throws NullPointerException if either collection is null
+     * @see #disjunction(Iterable, Iterable)
+     * @since 4.5
+     */
+    public static long disjunctionCardinality(final Iterable<?> a, final Iterable<?> b) {
+        final long[] counts = countIntersection(a, b);
+        return counts[1] + counts[2] - 2 * counts[0];
+    }
+
+    /**
+     * Counts one collection into a table and streams the other against it,
+     * consuming one occurrence per match. The smaller collection is counted
+     * if both sizes are known.
+     *
+     * @return the size of the intersection, of <i>a</i> and of <i>b</i>
+     */
+    private static long[] countIntersection(final Iterable<?> a, final Iterable<?> b) {
+        if (a == null || b == null) {
+            throw new NullPointerException("The collections must not be null");
+        }
+        if (a instanceof RoaringIntSet && b instanceof RoaringIntSet) {
+            final RoaringIntSet x = (RoaringIntSet) a;
+            final RoaringIntSet y = (RoaringIntSet) b;
+            return new long[] {RoaringIntSet.andCardinality(x, y), x.longSize(), y.longSize()};
+        }
+        final boolean swap = a instanceof Collection<?> && b instanceof Collection<?> &&
+                ((Collection<?>) b).size() < ((Collection<?>) a).size();
+        final Iterable<?> counted = swap ? b : a;
+        final Iterable<?> streamed = swap ? a : b;
+        final ObjectIntHashMap<Object> table = new ObjectIntHashMap<>();
+        long countedSize = 0;
+        for (final Object obj : counted) {
+            table.increment(obj);
+            countedSize++;
+        }
+        long streamedSize = 0;
+        long common = 0;
+        for (final Object obj : streamed) {
+            streamedSize++;
+            if (table.get(obj) > 0) {
+                table.addTo(obj, -1);
+                common++;
+            }
+        }
+        return swap ? new long[] {common, streamedSize, countedSize} : new long[] {common, countedSize, streamedSize};
+    }
+
     /**
      * Returns a new {@link Collection} containing <i>a</i> minus a subset of
      * <i>b</i>.  Only the elements of <i>b</i> that satisfy the predicate
@@ -329,14 +862,16 @@ public class CollectionUtils {
                                              final Iterable<? extends O> b,
                                              final Predicate<O> p) {
         final ArrayList<O> list = new ArrayList<>();
-        final HashBag<O> bag = new HashBag<>();
+        final ObjectIntHashMap<O> bag = new ObjectIntHashMap<>();
         for (final O element : b) {
             if (p.evaluate(element)) {
-                bag.add(element);
+                bag.increment(element);
             }
         }
         for (final O element : a) {
-            if (!bag.remove(element, 1)) {
+            if (bag.get(element) > 0) {
+                bag.addTo(element, -1);
+            } else {
                 list.add(element);
             }
         }
@@ -358,6 +893,12 @@ public class CollectionUtils {
      * {@link Collection} provided, this method will be much faster than calling
      * {@link Collection#containsAll(Collection)} instead, though this will come at the
      * cost of an additional space complexity O(n).
+     * <p>
+     * If {@code coll1} is a {@link BloomFilterSet}, an {@link EnumSet} or a
+     * {@link RoaringIntSet}, it is probed directly with each element of {@code coll2},
+     * and no additional space is needed; two {@link RoaringIntSet}s are compared
+     * container by container. If {@code coll1} only holds constants of one enum type, or integers
+     * of a dense range, a bit set is used instead of a hash set.
      *
      * @param coll1  the first collection, must not be null
      * @param coll2  the second collection, must not be null
@@ -369,6 +910,21 @@ public class CollectionUtils {
         if (coll2.isEmpty()) {
             return true;
         }
+        if (coll1 instanceof RoaringIntSet && coll2 instanceof RoaringIntSet) {
+            return RoaringIntSet.andNotCardinality((RoaringIntSet) coll2, (RoaringIntSet) coll1) == 0;
+        }
+        if (isIndex(coll1)) {
+            for (final Object obj : coll2) {
+                if (!coll1.contains(obj)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        final Boolean dense = DenseSetOperations.containsAll(coll1, coll2);
+        if (dense != null) {
+            return dense.booleanValue();
+        }
         final Iterator<?> it = coll1.iterator();
         final Set<Object> elementsAlreadySeen = new HashSet<>();
         for (final Object nextElement : coll2) {
@@ -398,6 +954,11 @@ public class CollectionUtils {
      * <p>
      * In other words, this method returns <code>true</code> iff the
      * {@link #intersection} of <i>coll1</i> and <i>coll2</i> is not empty.
+     * <p>
+     * If {@code coll1} is a {@link Set}, such as a {@link BloomFilterSet} or an
+     * {@link EnumSet}, it is probed with each element of {@code coll2} whatever the
+     * sizes. If not, and it is smaller than {@code coll2} and only holds constants
+     * of one enum type or integers of a dense range, it is probed through a bit set.
      *
      * @param <T> the type of object to lookup in <code>coll1</code>.
      * @param coll1  the first collection, must not be null
@@ -407,7 +968,11 @@ public class CollectionUtils {
      * @see #intersection
      */
     public static <T> boolean containsAny(final Collection<?> coll1, @SuppressWarnings("unchecked") final T... coll2) {
-        if (coll1.size() < coll2.length) {
+        if (coll1.size() < coll2.length && !(coll1 instanceof Set<?>)) {
+            final Boolean dense = DenseSetOperations.containsAny(coll1, Arrays.asList(coll2));
+            if (dense != null) {
+                return dense.booleanValue();
+            }
             for (final Object aColl1 : coll1) {
                 if (ArrayUtils.contains(coll2, aColl1)) {
                     return true;
@@ -428,6 +993,13 @@ public class CollectionUtils {
      * <p>
      * In other words, this method returns <code>true</code> iff the
      * {@link #intersection} of <i>coll1</i> and <i>coll2</i> is not empty.
+     * <p>
+     * If either collection is a {@link BloomFilterSet}, an {@link EnumSet} or a
+     * {@link RoaringIntSet}, it is probed with each element of the other collection
+     * whatever the sizes, and two {@link RoaringIntSet}s are intersected container
+     * by container. If
+     * neither collection is a {@link Set} and the first one only holds constants
+     * of one enum type or integers of a dense range, it is probed through a bit set.
      *
      * @param coll1  the first collection, must not be null
      * @param coll2  the second collection, must not be null
@@ -436,7 +1008,18 @@ public class CollectionUtils {
      * @see #intersection
      */
     public static boolean containsAny(final Collection<?> coll1, final Collection<?> coll2) {
-        if (coll1.size() < coll2.size()) {
+        if (coll1 instanceof RoaringIntSet && coll2 instanceof RoaringIntSet) {
+            return RoaringIntSet.intersects((RoaringIntSet) coll1, (RoaringIntSet) coll2);
+        }
+        final boolean index1 = isIndex(coll1);
+        final boolean index2 = isIndex(coll2);
+        if (!index1 && !index2 && !(coll1 instanceof Set<?>) && !(coll2 instanceof Set<?>)) {
+            final Boolean dense = DenseSetOperations.containsAny(coll1, coll2);
+            if (dense != null) {
+                return dense.booleanValue();
+            }
+        }
+        if (index1 != index2 ? index2 : coll1.size() < coll2.size()) {
             for (final Object aColl1 : coll1) {
                 if (coll2.contains(aColl1)) {
                     return true;
@@ -452,6 +1035,14 @@ public class CollectionUtils {
         return false;
     }
 
+    /**
+     * Tests whether a collection is a membership index that is cheaper to probe
+     * than to hash the other collection.
+     */
+    private static boolean isIndex(final Collection<?> coll) {
+        return coll instanceof BloomFilterSet<?> || coll instanceof EnumSet<?> || coll instanceof RoaringIntSet;
+    }
+
     /**
      * Returns a {@link Map} mapping each unique element in the given
      * {@link Collection} to an {@link Integer} representing the number
@@ -465,14 +1056,36 @@ public class CollectionUtils {
      * @return the populated cardinality map
      */
     public static <O> Map<O, Integer> getCardinalityMap(final Iterable<? extends O> coll) {
-        final Map<O, Integer> count = new HashMap<>();
-        for (final O obj : coll) {
-            final Integer c = count.get(obj);
-            if (c == null) {
-                count.put(obj, Integer.valueOf(1));
-            } else {
-                count.put(obj, Integer.valueOf(c.intValue() + 1));
+        final ObjectIntHashMap<O> table = getCardinalityTable(coll);
+        // only box one count per distinct element
+        final Map<O, Integer> count = new HashMap<>((int) (table.size() / 0.75f) + 1);
+        table.forEach(new ObjIntConsumer<O>() {
+            @Override
+            public void accept(final O obj, final int c) {
+                count.put(obj, Integer.valueOf(c));
             }
+        });
+        return count;
+    }
+
+    /**
+     * Returns an {@link ObjectIntHashMap} mapping each unique element in the given
+     * {@link Iterable} to the number of occurrences of that element.
+     * <p>
+     * Unlike {@link #getCardinalityMap(Iterable)}, the counts are stored as primitive
+     * {@code int} values and are incremented in place, so no {@link Integer} is
+     * allocated per element. The returned table may be updated further by the caller.
+     *
+     * @param <O>  the type of object in the returned table. This is a super type of &lt;I&gt;.
+     * @param coll  the collection to get the cardinality table for, must not be null
+     * @return the populated cardinality table
+     * @throws NullPointerException if coll is null
+     * @since 4.5
+     */
+    public static <O> ObjectIntHashMap<O> getCardinalityTable(final Iterable<? extends O> coll) {
+        final ObjectIntHashMap<O> count = new ObjectIntHashMap<>();
+        for (final O obj : coll) {
+            count.increment(obj);
         }
         return count;
     }
@@ -482,6 +1095,12 @@ public class CollectionUtils {
      * that is, iff the cardinality of <i>e</i> in <i>a</i> is less than or
      * equal to the cardinality of <i>e</i> in <i>b</i>, for each element <i>e</i>
      * in <i>a</i>.
+     * <p>
+     * Only <i>b</i> is counted into a table. The elements of <i>a</i> are then
+     * counted down against it, stopping at the first element of <i>a</i> that
+     * is missing from <i>b</i> or has run out. If <i>b</i> only holds constants
+     * of one enum type or integers of a dense range, the table is an array
+     * indexed by ordinal or value.
      *
      * @param a the first (sub?) collection, must not be null
      * @param b the second (super?) collection, must not be null
@@ -490,13 +1109,36 @@ public class CollectionUtils {
      * @see Collection#containsAll
      */
     public static boolean isSubCollection(final Collection<?> a, final Collection<?> b) {
-        final CardinalityHelper<Object> helper = new CardinalityHelper<>(a, b);
-        for (final Object obj : a) {
-            if (helper.freqA(obj) > helper.freqB(obj)) {
-                return false;
-            }
+        if (a.size() > b.size()) {
+            return false;
         }
-        return true;
+        if (a instanceof RoaringIntSet && b instanceof RoaringIntSet) {
+            return RoaringIntSet.andNotCardinality((RoaringIntSet) a, (RoaringIntSet) b) == 0;
+        }
+        final Boolean dense = DenseSetOperations.isSubCollection(a, b);
+        if (dense != null) {
+            return dense.booleanValue();
+        }
+        return countDown(CollectionUtils.<Object>getCardinalityTable(b), a);
+    }
+
+    /**
+     * Returns {@code true} iff <i>a</i> is a sub-collection of <i>b</i>,
+     * as defined by {@link #isSubCollection(Collection, Collection)}, computed in parallel.
+     * <p>
+     * The work is split as described for {@link #parallelUnion(Iterable, Iterable)}.
+     * Once one partition is found to have an element with a greater cardinality
+     * in <i>a</i>, partitions that have not been examined yet are skipped.
+     *
+     * @param a the first (sub?) collection, must not be null
+     * @param b the second (super?) collection, must not be null
+     * @return <code>true</code> iff <i>a</i> is a sub-collection of <i>b</i>
+     * @throws NullPointerException if either collection is null
+     * @see #isSubCollection(Collection, Collection)
+     * @since 4.5
+     */
+    public static boolean parallelIsSubCollection(final Collection<?> a, final Collection<?> b) {
+        return ParallelSetOperations.isEmpty(a, b, SetOperationEngine.Operation.SUBTRACT);
     }
 
     /**
@@ -513,6 +1155,8 @@ public class CollectionUtils {
      *    total cardinality of <i>a</i> and <i>b</i>, resp. </li>
      *    <li><code>a.size() &lt; Integer.MAXVALUE</code></li>
      * </ul>
+     * so the sizes are compared first, and the cardinalities are then checked
+     * with the same single table as {@link #isSubCollection(Collection, Collection)}.
      *
      * @param a  the first (sub?) collection, must not be null
      * @param b  the second (super?) collection, must not be null
@@ -540,18 +1184,55 @@ public class CollectionUtils {
         if(a.size() != b.size()) {
             return false;
         }
-        final CardinalityHelper<Object> helper = new CardinalityHelper<>(a, b);
-        if(helper.cardinalityA.size() != helper.cardinalityB.size()) {
-            return false;
+        if (a instanceof RoaringIntSet && b instanceof RoaringIntSet) {
+            return a.equals(b);
         }
-        for( final Object obj : helper.cardinalityA.keySet()) {
-            if(helper.freqA(obj) != helper.freqB(obj)) {
+        // as the sizes are equal, the counts all end at zero iff none goes negative
+        return countDown(CollectionUtils.<Object>getCardinalityTable(a), b);
+    }
+
+    /**
+     * Counts the elements of a collection down in a cardinality table.
+     *
+     * @param count  the cardinality table to count down
+     * @param coll  the collection to count down
+     * @return false as soon as a count goes negative, true if none does
+     */
+    private static boolean countDown(final ObjectIntHashMap<Object> count, final Iterable<?> coll) {
+        for (final Object obj : coll) {
+            if (count.addTo(obj, -1) < 0) {
                 return false;
             }
         }
         return true;
     }
 
+    /**
+     * Returns {@code true} iff the given {@link Collection}s contain
+     * exactly the same elements with exactly the same cardinalities,
+     * as defined by {@link #isEqualCollection(Collection, Collection)}, computed in parallel.
+     * <p>
+     * The work is split as described for {@link #parallelUnion(Iterable, Iterable)}.
+     * Once one partition is found to differ, partitions that have not been
+     * examined yet are skipped.
+     *
+     * @param a  the first collection, must not be null
+     * @param b  the second collection, must not be null
+     * @return <code>true</code> iff the collections contain the same elements with the same cardinalities.
+     * @throws NullPointerException if either collection is null
+     * @see #isEqualCollection(Collection, Collection)
+     * @since 4.5
+     */
+    public static boolean parallelIsEqualCollection(final Collection<?> a, final Collection<?> b) {
+        if (a == null || b == null) {
+            throw new NullPointerException("The collections must not be null");
+        }
+        if (a.size() != b.size()) {
+            return false;
+        }
+        return ParallelSetOperations.isEmpty(a, b, SetOperationEngine.Operation.DISJUNCTION);
+    }
+
     /**
      * Returns {@code true} iff the given {@link Collection}s contain
      * exactly the same elements with exactly the same cardinalities.
@@ -584,53 +1265,17 @@ public class CollectionUtils {
             return false;
         }
 
-        @SuppressWarnings({ "unchecked", "rawtypes" })
-        final Transformer<E, ?> transformer = new Transformer() {
-            @Override
-            public EquatorWrapper<?> transform(final Object input) {
-                return new EquatorWrapper(equator, input);
-            }
-        };
-
-        return isEqualCollection(collect(a, transformer), collect(b, transformer));
-    }
-
-    /**
-     * Wraps another object and uses the provided Equator to implement
-     * {@link #equals(Object)} and {@link #hashCode()}.
-     * <p>
-     * This class can be used to store objects into a Map.
-     *
-     * @param <O>  the element type
-     * @since 4.0
-     */
-    private static class EquatorWrapper<O> {
-        private final Equator<? super O> equator;
-        private final O object;
-
-        public EquatorWrapper(final Equator<? super O> equator, final O object) {
-            this.equator = equator;
-            this.object = object;
+        // count a up and b down; as the sizes are equal, no count may go negative
+        final ObjectIntHashMap<E> count = new ObjectIntHashMap<>(a.size(), equator);
+        for (final E obj : a) {
+            count.increment(obj);
         }
-
-        public O getObject() {
-            return object;
-        }
-
-        @Override
-        public boolean equals(final Object obj) {
-            if (!(obj instanceof EquatorWrapper)) {
+        for (final E obj : b) {
+            if (count.addTo(obj, -1) < 0) {
                 return false;
             }
-            @SuppressWarnings("unchecked")
-            final EquatorWrapper<O> otherObj = (EquatorWrapper<O>) obj;
-            return equator.equate(object, otherObj.getObject());
-        }
-
-        @Override
-        public int hashCode() {
-            return equator.hash(object);
         }
+        return true;
     }
 
     /**
@@ -752,6 +1397,15 @@ public class CollectionUtils {
      * predicate returns false, remove the element.
      * <p>
      * If the input collection or predicate is null, there is no change made.
+     * <p>
+     * Collections are filtered with {@link Collection#removeIf}, which
+     * {@link ArrayList}, {@link java.util.Vector} and
+     * {@link java.util.concurrent.CopyOnWriteArrayList} implement in a single
+     * pass, and synchronized collections under their lock. A {@link RandomAccess}
+     * list that only inherits the iterator-based default is compacted in a
+     * single pass instead, moving each kept element to its final position, and
+     * then truncated once, rather than shifting its tail for every removed
+     * element. Any other iterable uses {@link Iterator#remove()}.
      *
      * @param <T>  the type of object the {@link Iterable} contains
      * @param collection  the collection to get the input from, may be null
@@ -759,16 +1413,7 @@ public class CollectionUtils {
      * @return true if the collection is modified by this call, false otherwise.
      */
     public static <T> boolean filter(final Iterable<T> collection, final Predicate<? super T> predicate) {
-        boolean result = false;
-        if (collection != null && predicate != null) {
-            for (final Iterator<T> it = collection.iterator(); it.hasNext();) {
-                if (!predicate.evaluate(it.next())) {
-                    it.remove();
-                    result = true;
-                }
-            }
-        }
-        return result;
+        return collection != null && predicate != null && removeMatching(collection, predicate, false);
     }
 
     /**
@@ -779,6 +1424,8 @@ public class CollectionUtils {
      * if predicate is != null.
      * <p>
      * If the input collection or predicate is null, there is no change made.
+     * <p>
+     * Elements are removed in the same way as by {@link #filter(Iterable, Predicate)}.
      *
      * @param <T>  the type of object the {@link Iterable} contains
      * @param collection  the collection to get the input from, may be null
@@ -786,7 +1433,79 @@ public class CollectionUtils {
      * @return true if the collection is modified by this call, false otherwise.
      */
     public static <T> boolean filterInverse(final Iterable<T> collection, final Predicate<? super T> predicate) {
-        return filter(collection, predicate == null ? null : PredicateUtils.notPredicate(predicate));
+        return collection != null && predicate != null && removeMatching(collection, predicate, true);
+    }
+
+    /**
+     * Removes the elements for which the predicate returns the given result,
+     * using the cheapest bulk removal the collection supports.
+     *
+     * @param <T>  the type of object the {@link Iterable} contains
+     * @param collection  the collection to remove from, not null
+     * @param predicate  the predicate to evaluate, not null
+     * @param result  the predicate result of the elements to remove
+     * @return true if the collection is modified by this call, false otherwise.
+     */
+    private static <T> boolean removeMatching(final Iterable<T> collection, final Predicate<? super T> predicate,
+                                              final boolean result) {
+        if (collection instanceof List<?> && collection instanceof RandomAccess
+                && INHERITS_REMOVE_IF.get(collection.getClass()).booleanValue()) {
+            return compact((List<T>) collection, predicate, result);
+        }
+        if (collection instanceof Collection<?>) {
+            return ((Collection<T>) collection).removeIf(obj -> predicate.evaluate(obj) == result);
+        }
+        boolean modified = false;
+        for (final Iterator<T> it = collection.iterator(); it.hasNext();) {
+            if (predicate.evaluate(it.next()) == result) {
+                it.remove();
+                modified = true;
+            }
+        }
+        return modified;
+    }
+
+    /**
+     * Removes the matching elements of a random access list with a read pointer
+     * and a write pointer, then truncates the list once. Only used for lists
+     * without a {@link Collection#removeIf} of their own, as every
+     * {@link List#set(int, Object)} may be costly, for instance copying a
+     * copy-on-write array.
+     * <p>
+     * The first match is removed with {@link List#remove(int)} before anything
+     * is moved, so that a list which cannot shrink fails unchanged. If the
+     * predicate throws, the elements not examined yet are kept.
+     */
+    private static <T> boolean compact(final List<T> list, final Predicate<? super T> predicate,
+                                       final boolean result) {
+        final int size = list.size();
+        int read = 0;
+        while (read < size && predicate.evaluate(list.get(read)) != result) {
+            read++;
+        }
+        if (read == size) {
+            return false;
+        }
+        list.remove(read);
+        final int end = size - 1;
+        int write = read;
+        try {
+            for (; read < end; read++) {
+                final T obj = list.get(read);
+                if (predicate.evaluate(obj) != result) {
+                    if (write != read) {
+                        list.set(write, obj);
+                    }
+                    write++;
+                }
+            }
+        } finally {
+            for (; read < end; read++) {
+                list.set(write++, list.get(read));
+            }
+            list.subList(write, end).clear();
+        }
+        return true;
     }
 
     /**
@@ -1611,6 +2330,171 @@ public class CollectionUtils {
                 Math.max(1, ((Collection<?>) a).size() + ((Collection<?>) b).size()) : 10;
 
         final Iterator<O> iterator = new CollatingIterator<>(c, a.iterator(), b.iterator());
+        return collate(iterator, totalSize, includeDuplicates);
+    }
+
+    /**
+     * Merges any number of sorted Collections into a single, sorted List
+     * such that the natural ordering of the elements is retained.
+     * <p>
+     * The next element of every collection is kept in a binary heap, so the
+     * merge costs O(log k) comparisons per element for k collections.
+     *
+     * @param <O>  the element type
+     * @param inputs  the collections to merge, must not be null or contain null
+     * @return a new sorted List, containing the elements of all the collections
+     * @throws NullPointerException if the collection of inputs or any input is null
+     * @since 4.5
+     */
+    public static <O extends Comparable<? super O>> List<O> collate(
+            final Collection<? extends Iterable<? extends O>> inputs) {
+        return collate(inputs, ComparatorUtils.<O>naturalComparator(), true);
+    }
+
+    /**
+     * Merges any number of sorted Collections into a single, sorted List
+     * such that the natural ordering of the elements is retained.
+     * <p>
+     * The next element of every collection is kept in a binary heap, so the
+     * merge costs O(log k) comparisons per element for k collections.
+     *
+     * @param <O>  the element type
+     * @param inputs  the collections to merge, must not be null or contain null
+     * @param includeDuplicates  if {@code true} duplicate elements will be retained, otherwise
+     *   they will be removed in the output collection
+     * @return a new sorted List, containing the elements of all the collections
+     * @throws NullPointerException if the collection of inputs or any input is null
+     * @since 4.5
+     */
+    public static <O extends Comparable<? super O>> List<O> collate(
+            final Collection<? extends Iterable<? extends O>> inputs, final boolean includeDuplicates) {
+        return collate(inputs, ComparatorUtils.<O>naturalComparator(), includeDuplicates);
+    }
+
+    /**
+     * Merges any number of sorted Collections into a single, sorted List
+     * such that the ordering of the elements according to Comparator c is retained.
+     * <p>
+     * The next element of every collection is kept in a binary heap, so the
+     * merge costs O(log k) comparisons per element for k collections.
+     *
+     * @param <O>  the element type
+     * @param inputs  the collections to merge, must not be null or contain null
+     * @param c  the comparator to use for the merge.
+     * @return a new sorted List, containing the elements of all the collections
+     * @throws NullPointerException if the collection of inputs, any input or the comparator is null
+     * @since 4.5
+     */
+    public static <O> List<O> collate(final Collection<? extends Iterable<? extends O>> inputs,
+                                      final Comparator<? super O> c) {
+        return collate(inputs, c, true);
+    }
+
+    /**
+     * Merges any number of sorted Collections into a single, sorted List
+     * such that the ordering of the elements according to Comparator c is retained.
+     * <p>
+     * The next element of every collection is kept in a binary heap, so the
+     * merge costs O(log k) comparisons per element for k collections. Equal
+     * elements from different collections are returned in the order of the
+     * collections.
+     *
+     * @param <O>  the element type
+     * @param inputs  the collections to merge, must not be null or contain null
+     * @param c  the comparator to use for the merge.
+     * @param includeDuplicates  if {@code true} duplicate elements will be retained, otherwise
+     *   they will be removed in the output collection
+     * @return a new sorted List, containing the elements of all the collections
+     * @throws NullPointerException if the collection of inputs, any input or the comparator is null
+     * @since 4.5
+     */
+    public static <O> List<O> collate(final Collection<? extends Iterable<? extends O>> inputs,
+                                      final Comparator<? super O> c, final boolean includeDuplicates) {
+        if (inputs == null) {
+            throw new NullPointerException("The collections must not be null");
+        }
+        if (c == null) {
+            throw new NullPointerException("The comparator must not be null");
+        }
+
+        // if all Iterables are a Collection, we can estimate the size
+        final CollatingIterator<O> iterator = new CollatingIterator<>(c, inputs.size());
+        boolean sized = true;
+        long totalSize = 0;
+        for (final Iterable<? extends O> input : inputs) {
+            if (input == null) {
+                throw new NullPointerException("The collections must not be null");
+            }
+            iterator.addIterator(input.iterator());
+            if (input instanceof Collection<?>) {
+                totalSize += ((Collection<?>) input).size();
+            } else {
+                sized = false;
+            }
+        }
+        return collate(iterator, sized ? (int) Math.max(1, Math.min(Integer.MAX_VALUE - 8, totalSize)) : 10,
+                includeDuplicates);
+    }
+
+    /**
+     * Merges two sorted Collections, a and b, into a single, sorted List
+     * such that the ordering of the elements according to Comparator c is retained,
+     * using several threads for large inputs.
+     * <p>
+     * The result is the same as for {@link #collate(Iterable, Iterable, Comparator)}.
+     * Inputs with fewer than 32768 elements in total are merged sequentially.
+     * Larger inputs are split into slices of the output whose bounds in both
+     * inputs are found by binary search, and each slice is merged in a separate
+     * task on the common {@link java.util.concurrent.ForkJoinPool}. Inputs that
+     * are not {@link java.util.RandomAccess} lists are copied first. The slices
+     * are merged straight into their ranges of the resulting {@link ArrayList}.
+     *
+     * @param <O>  the element type
+     * @param a  the first collection, must not be null
+     * @param b  the second collection, must not be null
+     * @param c  the comparator to use for the merge.
+     * @return a new sorted List, containing the elements of Collection a and b
+     * @throws NullPointerException if either collection or the comparator is null
+     * @see #collate(Iterable, Iterable, Comparator)
+     * @since 4.5
+     */
+    public static <O> List<O> parallelCollate(final Iterable<? extends O> a, final Iterable<? extends O> b,
+                                              final Comparator<? super O> c) {
+        return ParallelCollator.collate(a, b, c, true);
+    }
+
+    /**
+     * Merges two sorted Collections, a and b, into a single, sorted List
+     * such that the ordering of the elements according to Comparator c is retained,
+     * using several threads for large inputs.
+     * <p>
+     * The result is the same as for {@link #collate(Iterable, Iterable, Comparator, boolean)}:
+     * when duplicates are removed, an element is dropped if it is equal to the
+     * element merged just before it. See {@link #parallelCollate(Iterable, Iterable, Comparator)}
+     * for how the merge is split.
+     *
+     * @param <O>  the element type
+     * @param a  the first collection, must not be null
+     * @param b  the second collection, must not be null
+     * @param c  the comparator to use for the merge.
+     * @param includeDuplicates  if {@code true} duplicate elements will be retained, otherwise
+     *   they will be removed in the output collection
+     * @return a new sorted List, containing the elements of Collection a and b
+     * @throws NullPointerException if either collection or the comparator is null
+     * @see #collate(Iterable, Iterable, Comparator, boolean)
+     * @since 4.5
+     */
+    public static <O> List<O> parallelCollate(final Iterable<? extends O> a, final Iterable<? extends O> b,
+                                              final Comparator<? super O> c, final boolean includeDuplicates) {
+        return ParallelCollator.collate(a, b, c, includeDuplicates);
+    }
+
+    /**
+     * Copies a collating iterator into a new list, skipping an element equal
+     * to the previous one unless duplicates are included.
+     */
+    private static <O> List<O> collate(final Iterator<O> iterator, final int totalSize,
+                                       final boolean includeDuplicates) {
         if (includeDuplicates) {
             return IteratorUtils.toList(iterator, totalSize);
         }
@@ -1639,9 +2523,11 @@ public class CollectionUtils {
      * <b>very</b> large for collections &gt; 10 (e.g. 10! = 3628800, 15! = 1307674368000).
      * <p>
      * For larger collections it is advised to use a {@link PermutationIterator} to
-     * iterate over all permutations.
+     * iterate over all permutations, or a {@link PermutationCursor}, which reuses a
+     * single list and can split the permutations between threads.
      *
      * @see PermutationIterator
+     * @see PermutationCursor
      *
      * @param <E>  the element type
      * @param collection  the collection to create permutations for, may not be null
@@ -1671,7 +2557,9 @@ public class CollectionUtils {
      * turn to see if it's contained in <code>retain</code>. If it's contained, it's added
      * to the returned list. As a consequence, it is advised to use a collection type for
      * <code>retain</code> that provides a fast (e.g. O(1)) implementation of
-     * {@link Collection#contains(Object)}.
+     * {@link Collection#contains(Object)}. If the same <code>retain</code> collection
+     * is used many times, a {@link BloomFilterSet} rejects most absent elements
+     * without a full hash lookup.
      *
      * @param <C>  the type of object the {@link Collection} contains
      * @param collection  the collection whose contents are the target of the #retailAll operation
@@ -1713,20 +2601,18 @@ public class CollectionUtils {
     public static <E> Collection<E> retainAll(final Iterable<E> collection,
                                               final Iterable<? extends E> retain,
                                               final Equator<? super E> equator) {
+        if (equator == null) {
+            throw new NullPointerException("Equator must not be null.");
+        }
 
-        final Transformer<E, EquatorWrapper<E>> transformer = new Transformer<E, EquatorWrapper<E>>() {
-            @Override
-            public EquatorWrapper<E> transform(final E input) {
-                return new EquatorWrapper<>(equator, input);
-            }
-        };
-
-        final Set<EquatorWrapper<E>> retainSet =
-                collect(retain, transformer, new HashSet<EquatorWrapper<E>>());
+        final ObjectIntHashMap<E> retainSet = new ObjectIntHashMap<>(equator);
+        for (final E element : retain) {
+            retainSet.put(element, 1);
+        }
 
         final List<E> list = new ArrayList<>();
         for (final E element : collection) {
-            if (retainSet.contains(new EquatorWrapper<>(equator, element))) {
+            if (retainSet.containsKey(element)) {
                 list.add(element);
             }
         }
@@ -1746,7 +2632,9 @@ public class CollectionUtils {
      * turn to see if it's contained in <code>remove</code>. If it's not contained, it's added
      * to the returned list. As a consequence, it is advised to use a collection type for
      * <code>remove</code> that provides a fast (e.g. O(1)) implementation of
-     * {@link Collection#contains(Object)}.
+     * {@link Collection#contains(Object)}. If the same <code>remove</code> collection
+     * is used many times, a {@link BloomFilterSet} rejects most absent elements
+     * without a full hash lookup.
      *
      * @param <E>  the type of object the {@link Collection} contains
      * @param collection  the collection from which items are removed (in the returned collection)
@@ -1789,20 +2677,18 @@ public class CollectionUtils {
     public static <E> Collection<E> removeAll(final Iterable<E> collection,
                                               final Iterable<? extends E> remove,
                                               final Equator<? super E> equator) {
+        if (equator == null) {
+            throw new NullPointerException("Equator must not be null.");
+        }
 
-        final Transformer<E, EquatorWrapper<E>> transformer = new Transformer<E, EquatorWrapper<E>>() {
-            @Override
-            public EquatorWrapper<E> transform(final E input) {
-                return new EquatorWrapper<>(equator, input);
-            }
-        };
-
-        final Set<EquatorWrapper<E>> removeSet =
-                collect(remove, transformer, new HashSet<EquatorWrapper<E>>());
+        final ObjectIntHashMap<E> removeSet = new ObjectIntHashMap<>(equator);
+        for (final E element : remove) {
+            removeSet.put(element, 1);
+        }
 
         final List<E> list = new ArrayList<>();
         for (final E element : collection) {
-            if (!removeSet.contains(new EquatorWrapper<>(equator, element))) {
+            if (!removeSet.containsKey(element)) {
                 list.add(element);
             }
         }
@@ -0,0 +1,463 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.collections4;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+
+import org.apache.commons.collections4.SetOperationEngine.Operation;
+
+/**
+ * Set operations over elements that map densely onto small indexes: the
+ * constants of a single {@link Enum} type, indexed by ordinal, or
+ * {@link Integer}s whose range is not much larger than the number of elements.
+ * <p>
+ * Cardinalities are kept in {@code int[]} arrays and membership in
+ * {@code long[]} bit sets indexed by position in the universe, so no element is
+ * hashed and nothing is boxed. Two {@link EnumSet}s are combined with the bulk
+ * operations of {@link EnumSet} itself, which work on its bit vector.
+ * <p>
+ * Every method returns {@code null} if its inputs are not dense, in which case
+ * the caller falls back to the general algorithm. Results are identical to those
+ * of the general algorithms, including the order of the elements.
+ *
+ * @since 4.5
+ */
+final class DenseSetOperations {
+
+    /** Slack allowed in the range of an integer universe beyond the number of elements */
+    private static final int INTEGER_RANGE_SLACK = 64;
+    /** The largest integer universe considered dense */
+    private static final int MAX_INTEGER_RANGE = 1 << 24;
+
+    /**
+     * <code>DenseSetOperations</code> should not be instantiated.
+     */
+    private DenseSetOperations() {}
+
+    /**
+     * Applies a set operation to two dense collections.
+     *
+     * @param <O> the element type
+     * @param a  the first collection, not null
+     * @param b  the second collection, not null
+     * @param op  the operation
+     * @return the result in the same order as {@link SetOperationEngine#emit}, or null if not dense
+     */
+    static <O> List<O> apply(final Iterable<? extends O> a, final Iterable<? extends O> b, final Operation op) {
+        if (a instanceof EnumSet<?> && b instanceof EnumSet<?>) {
+            return applyToEnumSets((EnumSet<?>) a, (EnumSet<?>) b, op);
+        }
+        final Universe universe = Universe.of(a, b);
+        if (universe == null) {
+            return null;
+        }
+        final int[] countA = universe.count(a);
+        final int[] countB = countA == null ? null : universe.count(b);
+        if (countB == null) {
+            return null;
+        }
+        long total = 0;
+        for (int i = 0; i < countA.length; i++) {
+            total += op.cardinality(countA[i], countB[i]);
+        }
+        if (total > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Result has more than Integer.MAX_VALUE elements");
+        }
+        // emit each element at its first appearance, marking it done with a negative count
+        final List<O> result = new ArrayList<>((int) total);
+        emitInOrder(a, universe, countA, countB, op, result);
+        emitInOrder(b, universe, countA, countB, op, result);
+        return result;
+    }
+
+    /**
+     * Subtracts <i>b</i> from <i>a</i>, removing the earliest occurrences in <i>a</i>.
+     *
+     * @param <O> the element type
+     * @param a  the collection to subtract from, not null
+     * @param b  the collection to subtract, not null
+     * @return the result in the order of <i>a</i>, or null if not dense
+     */
+    static <O> List<O> subtract(final Iterable<? extends O> a, final Iterable<? extends O> b) {
+        if (a instanceof EnumSet<?> && b instanceof EnumSet<?>) {
+            return applyToEnumSets((EnumSet<?>) a, (EnumSet<?>) b, Operation.SUBTRACT);
+        }
+        final Universe universe = Universe.of(a, b);
+        final int[] countB = universe == null ? null : universe.count(b);
+        if (countB == null) {
+            return null;
+        }
+        final List<O> result = new ArrayList<>();
+        for (final O obj : a) {
+            final int index = universe.indexOf(obj);
+            if (index < 0) {
+                return null;
+            }
+            if (countB[index] > 0) {
+                countB[index]--;
+            } else {
+                result.add(obj);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Checks whether <i>a</i> is a sub-collection of <i>b</i>.
+     *
+     * @param a  the first collection, not null
+     * @param b  the second collection, not null
+     * @return the result, or null if not dense
+     */
+    static Boolean isSubCollection(final Collection<?> a, final Collection<?> b) {
+        if (a instanceof EnumSet<?> && b instanceof EnumSet<?>) {
+            return b.containsAll(a);
+        }
+        final Universe universe = Universe.of(b, null);
+        if (universe == null) {
+            return null;
+        }
+        final int[] count = universe.count(b);
+        if (count == null) {
+            return null;
+        }
+        for (final Object obj : a) {
+            final int index = universe.indexOf(obj);
+            if (index < 0 || --count[index] < 0) {
+                return Boolean.FALSE;
+            }
+        }
+        return Boolean.TRUE;
+    }
+
+    /**
+     * Checks whether every element of the probes is contained in the indexed collection.
+     *
+     * @param indexed  the collection to build a bit set of, not null
+     * @param probes  the elements to look up, not null
+     * @return the result, or null if the indexed collection is not dense
+     */
+    static Boolean containsAll(final Collection<?> indexed, final Iterable<?> probes) {
+        final Bits bits = Bits.of(indexed);
+        if (bits == null) {
+            return null;
+        }
+        for (final Object obj : probes) {
+            if (!bits.contains(obj)) {
+                return Boolean.FALSE;
+            }
+        }
+        return Boolean.TRUE;
+    }
+
+    /**
+     * Checks whether any element of the probes is contained in the indexed collection.
+     *
+     * @param indexed  the collection to build a bit set of, not null
+     * @param probes  the elements to look up, not null
+     * @return the result, or null if the indexed collection is not dense
+     */
+    static Boolean containsAny(final Collection<?> indexed, final Iterable<?> probes) {
+        final Bits bits = Bits.of(indexed);
+        if (bits == null) {
+            return null;
+        }
+        for (final Object obj : probes) {
+            if (bits.contains(obj)) {
+                return Boolean.TRUE;
+            }
+        }
+        return Boolean.FALSE;
+    }
+
+    /**
+     * Returns each element of the larger list that is also in the smaller one, once,
+     * in order of first appearance in the larger list.
+     *
+     * @param <E> the element type
+     * @param smaller  the list to build a bit set of, not null
+     * @param larger  the list to walk, not null
+     * @return the result, or null if the smaller list is not dense
+     */
+    static <E> List<E> distinctIntersection(final List<? extends E> smaller, final List<? extends E> larger) {
+        final Bits bits = Bits.of(smaller);
+        if (bits == null) {
+            return null;
+        }
+        final List<E> result = new ArrayList<>();
+        for (final E obj : larger) {
+            if (bits.remove(obj)) {
+                result.add(obj);
+            }
+        }
+        return result;
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Combines two enum sets with the bulk operations of {@link EnumSet}, which
+     * also handle sets of different enum types.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static <O> List<O> applyToEnumSets(final EnumSet a, final EnumSet b, final Operation op) {
+        final List<O> result = new ArrayList<>();
+        switch (op) {
+        case UNION:
+            result.addAll(a);
+            result.addAll(difference(b, a));
+            break;
+        case INTERSECTION:
+            final EnumSet common = EnumSet.copyOf(a);
+            common.retainAll(b);
+            result.addAll(common);
+            break;
+        case DISJUNCTION:
+            result.addAll(difference(a, b));
+            result.addAll(difference(b, a));
+            break;
+        default:
+            result.addAll(difference(a, b));
+            break;
+        }
+        return result;
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static EnumSet difference(final EnumSet a, final EnumSet b) {
+        final EnumSet result = EnumSet.copyOf(a);
+        result.removeAll(b);
+        return result;
+    }
+
+    /**
+     * Emits the elements of a collection that have not been emitted yet.
+     */
+    private static <O> void emitInOrder(final Iterable<? extends O> coll, final Universe universe,
+                                        final int[] countA, final int[] countB, final Operation op,
+                                        final List<O> result) {
+        for (final O obj : coll) {
+            final int index = universe.indexOf(obj);
+            if (countA[index] >= 0) {
+                for (int c = op.cardinality(countA[index], countB[index]); c > 0; c--) {
+                    result.add(obj);
+                }
+                countA[index] = -1;
+            }
+        }
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * A dense universe of elements, each mapped to an index below {@link #size}.
+     */
+    abstract static class Universe {
+
+        /** The number of indexes */
+        final int size;
+
+        Universe(final int size) {
+            this.size = size;
+        }
+
+        /**
+         * Returns the index of an element.
+         *
+         * @param obj  the element, may be null
+         * @return the index, or -1 if the element is not in the universe
+         */
+        abstract int indexOf(Object obj);
+
+        /**
+         * Counts the elements of a collection by index.
+         *
+         * @param coll  the collection to count
+         * @return the counts, or null if an element is not in the universe
+         */
+        int[] count(final Iterable<?> coll) {
+            final int[] count = new int[size];
+            for (final Object obj : coll) {
+                final int index = indexOf(obj);
+                if (index < 0) {
+                    return null;
+                }
+                count[index]++;
+            }
+            return count;
+        }
+
+        /**
+         * Finds the dense universe of one or two collections.
+         *
+         * @param a  the first collection, not null
+         * @param b  the second collection, may be null
+         * @return the universe, or null if the elements are not all enum constants
+         *   of one type or integers of a dense range
+         */
+        static Universe of(final Iterable<?> a, final Iterable<?> b) {
+            // an iterable that is not a collection may only be iterable once
+            if (!(a instanceof Collection<?>) || b != null && !(b instanceof Collection<?>)) {
+                return null;
+            }
+            Object first = null;
+            if (!((Collection<?>) a).isEmpty()) {
+                first = a.iterator().next();
+            } else if (b != null && !((Collection<?>) b).isEmpty()) {
+                first = b.iterator().next();
+            }
+            if (first instanceof Enum<?>) {
+                return new EnumUniverse(((Enum<?>) first).getDeclaringClass());
+            }
+            if (first instanceof Integer) {
+                return IntegerUniverse.of((Collection<?>) a, (Collection<?>) b);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * The constants of an enum type, indexed by ordinal.
+     */
+    private static final class EnumUniverse extends Universe {
+
+        private final Class<?> type;
+
+        EnumUniverse(final Class<?> type) {
+            super(type.getEnumConstants().length);
+            this.type = type;
+        }
+
+        @Override
+        int indexOf(final Object obj) {
+            return type.isInstance(obj) ? ((Enum<?>) obj).ordinal() : -1;
+        }
+    }
+
+    /**
+     * A range of integers, indexed by offset from the smallest one.
+     */
+    private static final class IntegerUniverse extends Universe {
+
+        private final int min;
+
+        IntegerUniverse(final int min, final int size) {
+            super(size);
+            this.min = min;
+        }
+
+        @Override
+        int indexOf(final Object obj) {
+            if (obj instanceof Integer) {
+                final int index = (Integer) obj - min;
+                // a negative difference wraps to a large unsigned value
+                if (Integer.compareUnsigned(index, size) < 0) {
+                    return index;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Scans for the range of the integers, which must not be much larger than their number.
+         * The bound follows from the sizes of the collections, so the scan stops at the first
+         * element that is not an integer or widens the range beyond it.
+         */
+        static Universe of(final Collection<?> a, final Collection<?> b) {
+            final long elements = (long) a.size() + (b == null ? 0 : b.size());
+            final long bound = Math.min(MAX_INTEGER_RANGE, 2 * elements + INTEGER_RANGE_SLACK);
+            int min = Integer.MAX_VALUE;
+            int max = Integer.MIN_VALUE;
+            for (final Collection<?> coll : Arrays.asList(a, b)) {
+                if (coll == null) {
+                    continue;
+                }
+                for (final Object obj : coll) {
+                    if (!(obj instanceof Integer)) {
+                        return null;
+                    }
+                    final int value = (Integer) obj;
+                    if (value < min || value > max) {
+                        min = Math.min(min, value);
+                        max = Math.max(max, value);
+                        if ((long) max - min + 1 > bound) {
+                            return null;
+                        }
+                    }
+                }
+            }
+            return new IntegerUniverse(min, max - min + 1);
+        }
+    }
+
+    /**
+     * A bit set over a universe.
+     */
+    private static final class Bits {
+
+        private final Universe universe;
+        private final long[] words;
+
+        private Bits(final Universe universe, final long[] words) {
+            this.universe = universe;
+            this.words = words;
+        }
+
+        /**
+         * Builds the bit set of a collection.
+         *
+         * @return the bit set, or null if the collection is not dense
+         */
+        static Bits of(final Collection<?> coll) {
+            final Universe universe = Universe.of(coll, null);
+            if (universe == null) {
+                return null;
+            }
+            final long[] words = new long[universe.size + 63 >>> 6];
+            for (final Object obj : coll) {
+                final int index = universe.indexOf(obj);
+                if (index < 0) {
+                    return null;
+                }
+                words[index >>> 6] |= 1L << index;
+            }
+            return new Bits(universe, words);
+        }
+
+        boolean contains(final Object obj) {
+            final int index = universe.indexOf(obj);
+            return index >= 0 && (words[index >>> 6] & 1L << index) != 0;
+        }
+
+        /**
+         * Clears the bit of an element.
+         *
+         * @return true if the bit was set
+         */
+        boolean remove(final Object obj) {
+            final int index = universe.indexOf(obj);
+            if (index < 0 || (words[index >>> 6] & 1L << index) == 0) {
+                return false;
+            }
+            words[index >>> 6] &= ~(1L << index);
+            return true;
+        }
+    }
+
+}
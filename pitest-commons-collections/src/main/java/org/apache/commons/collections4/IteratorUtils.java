@@ -28,6 +28,9 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.function.ToDoubleFunction;
 
 import org.apache.commons.collections4.functors.EqualPredicate;
 import org.apache.commons.collections4.iterators.ArrayIterator;
@@ -54,6 +57,7 @@ import org.apache.commons.collections4.iterators.ObjectArrayListIterator;
 import org.apache.commons.collections4.iterators.ObjectGraphIterator;
 import org.apache.commons.collections4.iterators.PeekingIterator;
 import org.apache.commons.collections4.iterators.PushbackIterator;
+import org.apache.commons.collections4.iterators.ShuffleIterator;
 import org.apache.commons.collections4.iterators.SingletonIterator;
 import org.apache.commons.collections4.iterators.SingletonListIterator;
 import org.apache.commons.collections4.iterators.SkippingIterator;
@@ -894,6 +898,163 @@ public class IteratorUtils {
         return new SkippingIterator<>(iterator, offset);
     }
 
+    // Shuffling
+    //-----------------------------------------------------------------------
+    /**
+     * Gets an iterator over the elements of a list in a pseudo-random order
+     * given by a seed, without copying the list.
+     * <p>
+     * Every element is returned exactly once, the same seed always gives the
+     * same order, and the iterator uses constant memory whatever the size of
+     * the list.
+     *
+     * @param <E> the element type
+     * @param list  the list to iterate over, should be {@link java.util.RandomAccess}, not null
+     * @param seed  the seed of the order
+     * @return a new shuffle iterator
+     * @throws NullPointerException if the list is null
+     * @see ShuffleIterator
+     * @since 4.5
+     */
+    public static <E> ShuffleIterator<E> shuffleIterator(final List<? extends E> list, final long seed) {
+        return new ShuffleIterator<>(list, seed);
+    }
+
+    // Sampling
+    //-----------------------------------------------------------------------
+    /**
+     * Draws a uniform random sample of up to k elements of an iterator, in a
+     * single pass and without knowing the number of elements in advance.
+     * <p>
+     * The iterator is consumed entirely and every subset of k of its elements
+     * is equally likely. When the iterator has k elements or fewer, all of them
+     * are returned. The sample is kept in a reservoir of k elements, and the
+     * number of elements to skip before the next replacement is drawn directly
+     * (Li's algorithm L), so only O(k log(n / k)) random numbers are drawn for
+     * n elements. The order of the returned list is not significant.
+     *
+     * @param <E> the element type
+     * @param iterator  the iterator to sample, not null
+     * @param k  the size of the sample, not negative
+     * @param random  the source of randomness, not null
+     * @return a new list holding the sample
+     * @throws NullPointerException if the iterator or random is null
+     * @throws IllegalArgumentException if k is negative
+     * @since 4.5
+     */
+    public static <E> List<E> sample(final Iterator<? extends E> iterator, final int k, final Random random) {
+        if (iterator == null) {
+            throw new NullPointerException("Iterator must not be null");
+        }
+        if (random == null) {
+            throw new NullPointerException("Random must not be null");
+        }
+        if (k < 0) {
+            throw new IllegalArgumentException("Sample size must not be negative");
+        }
+        final List<E> reservoir = new ArrayList<>(Math.min(k, 10));
+        while (reservoir.size() < k && iterator.hasNext()) {
+            reservoir.add(iterator.next());
+        }
+        if (k == 0) {
+            while (iterator.hasNext()) {
+                iterator.next();
+            }
+            return reservoir;
+        }
+        // w is the largest of k uniform keys, the elements with a smaller key replacing one of the sample
+        double w = Math.exp(Math.log(1 - random.nextDouble()) / k);
+        while (iterator.hasNext()) {
+            long skip = (long) Math.floor(Math.log(1 - random.nextDouble()) / Math.log1p(-w));
+            while (skip > 0 && iterator.hasNext()) {
+                iterator.next();
+                skip--;
+            }
+            if (!iterator.hasNext()) {
+                break;
+            }
+            reservoir.set(random.nextInt(k), iterator.next());
+            w *= Math.exp(Math.log(1 - random.nextDouble()) / k);
+        }
+        return reservoir;
+    }
+
+    /**
+     * Draws a weighted random sample of up to k elements of an iterator, without
+     * replacement, in a single pass and without knowing the number of elements
+     * in advance.
+     * <p>
+     * The iterator is consumed entirely. Each element gets the key
+     * {@code u^(1/weight)} for a uniform u, and the k elements with the largest
+     * keys are kept in a heap (the A-Res algorithm of Efraimidis and Spirakis),
+     * so an element is more likely to be in the sample the larger its weight
+     * is. Elements with a weight of zero are never sampled. The order of the
+     * returned list is not significant.
+     *
+     * @param <E> the element type
+     * @param iterator  the iterator to sample, not null
+     * @param k  the size of the sample, not negative
+     * @param weigher  the function giving the weight of each element, not null
+     * @param random  the source of randomness, not null
+     * @return a new list holding the sample
+     * @throws NullPointerException if the iterator, the weigher or random is null
+     * @throws IllegalArgumentException if k is negative, or a weight is negative or not a number
+     * @since 4.5
+     */
+    public static <E> List<E> weightedSample(final Iterator<? extends E> iterator, final int k,
+                                             final ToDoubleFunction<? super E> weigher, final Random random) {
+        if (iterator == null) {
+            throw new NullPointerException("Iterator must not be null");
+        }
+        if (weigher == null) {
+            throw new NullPointerException("Weigher must not be null");
+        }
+        if (random == null) {
+            throw new NullPointerException("Random must not be null");
+        }
+        if (k < 0) {
+            throw new IllegalArgumentException("Sample size must not be negative");
+        }
+        // the keys are compared through their logarithms, log(u) / weight
+        final PriorityQueue<WeightedKey<E>> heap =
+                new PriorityQueue<>(Math.max(1, Math.min(k, 10)), Comparator.comparingDouble(key -> key.key));
+        while (iterator.hasNext()) {
+            final E element = iterator.next();
+            final double weight = weigher.applyAsDouble(element);
+            if (!(weight >= 0)) {
+                throw new IllegalArgumentException("Weight must not be negative: " + weight);
+            }
+            if (weight == 0 || k == 0) {
+                continue;
+            }
+            final double key = Math.log(1 - random.nextDouble()) / weight;
+            if (heap.size() < k) {
+                heap.add(new WeightedKey<>(element, key));
+            } else if (key > heap.peek().key) {
+                heap.poll();
+                heap.add(new WeightedKey<>(element, key));
+            }
+        }
+        final List<E> sample = new ArrayList<>(heap.size());
+        for (final WeightedKey<E> key : heap) {
+            sample.add(key.element);
+        }
+        return sample;
+    }
+
+    /**
+     * An element of a weighted sample with its key.
+     */
+    private static final class WeightedKey<E> {
+        final E element;
+        final double key;
+
+        WeightedKey(final E element, final double key) {
+            this.element = element;
+            this.key = key;
+        }
+    }
+
     // Zipping
     //-----------------------------------------------------------------------
     /**
@@ -17,12 +17,18 @@
 package org.apache.commons.collections4;
 
 import java.util.AbstractList;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
 
 import org.apache.commons.collections4.bag.HashBag;
 import org.apache.commons.collections4.functors.DefaultEquator;
@@ -42,6 +48,20 @@ import org.apache.commons.collections4.sequence.SequencesComparator;
  */
 public class ListUtils {
 
+    /**
+     * The size from which an equals-based probe collection is copied into
+     * a temporary hash index by {@link #retainAll} and {@link #removeAll}.
+     */
+    private static final int HASH_INDEX_THRESHOLD = 16;
+
+    /**
+     * The probe collection classes whose {@link Collection#contains(Object)} is
+     * based on {@link Object#equals(Object)}, so that they may be copied into a
+     * temporary hash index without changing the result.
+     */
+    private static final Set<Class<?>> EQUALS_BASED = new HashSet<>(Arrays.<Class<?>>asList(
+            ArrayList.class, LinkedList.class, ArrayDeque.class, Arrays.asList().getClass()));
+
     /**
      * <code>ListUtils</code> should not normally be instantiated.
      */
@@ -95,6 +115,11 @@ public class ListUtils {
             larger = list1;
         }
 
+        final List<E> dense = DenseSetOperations.distinctIntersection(smaller, larger);
+        if (dense != null) {
+            return dense;
+        }
+
         final HashSet<E> hashSet = new HashSet<>(smaller);
 
         for (final E e : larger) {
@@ -106,6 +131,30 @@ public class ListUtils {
         return result;
     }
 
+    /**
+     * Returns a new list containing all elements that are contained in
+     * both given lists, which must both be sorted according to the given
+     * {@link Comparator}.
+     * <p>
+     * As with {@link #intersection(List, List)}, each element common to both
+     * lists is contained once in the result. Elements are considered equal if
+     * the comparator returns zero for them. Instead of hashing the elements, the
+     * lists are merged in a single linear pass, galloping through the larger list
+     * if it is much larger than the other one. The returned list is sorted as well.
+     *
+     * @param <E> the element type
+     * @param list1  the first sorted list
+     * @param list2  the second sorted list
+     * @param comparator  the comparator both lists are sorted by
+     * @return  the sorted intersection of those two lists
+     * @throws NullPointerException if either list or the comparator is null
+     * @since 4.5
+     */
+    public static <E> List<E> intersection(final List<? extends E> list1, final List<? extends E> list2,
+                                           final Comparator<? super E> comparator) {
+        return SortedSetOperations.apply(list1, list2, comparator, SetOperationEngine.Operation.INTERSECTION, true);
+    }
+
     /**
      * Subtracts all elements in the second list from the first list,
      * placing the results in a new list.
@@ -133,6 +182,30 @@ public class ListUtils {
         return result;
     }
 
+    /**
+     * Subtracts all elements in the second list from the first list,
+     * placing the results in a new list. Both lists must be sorted according
+     * to the given {@link Comparator}.
+     * <p>
+     * As with {@link #subtract(List, List)}, cardinality is respected.
+     * Elements are considered equal if the comparator returns zero for them.
+     * Instead of hashing the elements, the lists are merged in a single linear
+     * pass, galloping through the larger list if it is much larger than the
+     * other one. The returned list is sorted as well.
+     *
+     * @param <E> the element type
+     * @param list1  the sorted list to subtract from
+     * @param list2  the sorted list to subtract
+     * @param comparator  the comparator both lists are sorted by
+     * @return a new sorted list containing the results
+     * @throws NullPointerException if either list or the comparator is null
+     * @since 4.5
+     */
+    public static <E> List<E> subtract(final List<E> list1, final List<? extends E> list2,
+                                       final Comparator<? super E> comparator) {
+        return SortedSetOperations.apply(list1, list2, comparator, SetOperationEngine.Operation.SUBTRACT, false);
+    }
+
     /**
      * Returns the sum of the given lists.  This is their intersection
      * subtracted from their union.
@@ -296,7 +369,12 @@ public class ListUtils {
      * <p>
      * This implementation iterates over <code>collection</code>, checking each element in
      * turn to see if it's contained in <code>retain</code>. If it's contained, it's added
-     * to the returned list. As a consequence, it is advised to use a collection type for
+     * to the returned list. If <code>retain</code> is a large {@link ArrayList},
+     * {@link LinkedList}, {@link ArrayDeque} or {@link Arrays#asList(Object...)}
+     * list, it is first copied into a temporary hash index, or a bit set if it
+     * only holds constants of one {@link Enum} type, so that each check is O(1).
+     * Other collections are probed as they are, so that their own notion of
+     * equality is kept; it is then advised to use a collection type for
      * <code>retain</code> that provides a fast (e.g. O(1)) implementation of
      * {@link Collection#contains(Object)}.
      *
@@ -310,9 +388,10 @@ public class ListUtils {
      */
     public static <E> List<E> retainAll(final Collection<E> collection, final Collection<?> retain) {
         final List<E> list = new ArrayList<>(Math.min(collection.size(), retain.size()));
+        final Collection<?> lookup = lookupFor(retain, collection.size());
 
         for (final E obj : collection) {
-            if (retain.contains(obj)) {
+            if (lookup.contains(obj)) {
                 list.add(obj);
             }
         }
@@ -330,7 +409,12 @@ public class ListUtils {
      * <p>
      * This implementation iterates over <code>collection</code>, checking each element in
      * turn to see if it's contained in <code>remove</code>. If it's not contained, it's added
-     * to the returned list. As a consequence, it is advised to use a collection type for
+     * to the returned list. If <code>remove</code> is a large {@link ArrayList},
+     * {@link LinkedList}, {@link ArrayDeque} or {@link Arrays#asList(Object...)}
+     * list, it is first copied into a temporary hash index, or a bit set if it
+     * only holds constants of one {@link Enum} type, so that each check is O(1).
+     * Other collections are probed as they are, so that their own notion of
+     * equality is kept; it is then advised to use a collection type for
      * <code>remove</code> that provides a fast (e.g. O(1)) implementation of
      * {@link Collection#contains(Object)}.
      *
@@ -344,14 +428,62 @@ public class ListUtils {
      */
     public static <E> List<E> removeAll(final Collection<E> collection, final Collection<?> remove) {
         final List<E> list = new ArrayList<>();
+        final Collection<?> lookup = lookupFor(remove, collection.size());
         for (final E obj : collection) {
-            if (!remove.contains(obj)) {
+            if (!lookup.contains(obj)) {
                 list.add(obj);
             }
         }
         return list;
     }
 
+    /**
+     * Returns a collection with the same elements as the given one that is
+     * cheap to probe with {@link Collection#contains(Object)}.
+     * <p>
+     * Only the collection classes in {@link #EQUALS_BASED} are copied, as their
+     * containment test is the same as that of a hash index; any other collection
+     * may compare its elements by a comparator or by identity, and is returned as
+     * it is, as are small collections and collections that are probed at most
+     * once. The elements are copied into an {@link EnumSet} if they are all
+     * constants of one enum type, and into a {@link HashSet} if not.
+     *
+     * @param coll  the collection to probe
+     * @param probes  the number of times the collection will be probed
+     * @return the collection to probe instead
+     */
+    private static Collection<?> lookupFor(final Collection<?> coll, final int probes) {
+        if (!EQUALS_BASED.contains(coll.getClass()) || coll.size() < HASH_INDEX_THRESHOLD || probes <= 1) {
+            return coll;
+        }
+        final Object first = coll.iterator().next();
+        if (first instanceof Enum<?>) {
+            final Set<?> enums = enumSetOf(coll, ((Enum<?>) first).getDeclaringClass());
+            if (enums != null) {
+                return enums;
+            }
+        }
+        return new HashSet<>(coll);
+    }
+
+    /**
+     * Copies the given elements into an {@link EnumSet} of the given type.
+     *
+     * @return the set, or null if an element is not a constant of the type
+     */
+    private static <T extends Enum<T>> Set<T> enumSetOf(final Collection<?> coll, final Class<?> type) {
+        @SuppressWarnings("unchecked") // checked against each element below
+        final Class<T> enumType = (Class<T>) type;
+        final Set<T> set = EnumSet.noneOf(enumType);
+        for (final Object obj : coll) {
+            if (!enumType.isInstance(obj)) {
+                return null;
+            }
+            set.add(enumType.cast(obj));
+        }
+        return set;
+    }
+
     //-----------------------------------------------------------------------
     /**
      * Returns a synchronized list backed by the given list.
@@ -19,6 +19,7 @@ package org.apache.commons.collections4;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.Set;
+import java.util.function.ObjIntConsumer;
 
 /**
  * Defines a collection that counts the number of times an object appears in
@@ -139,6 +140,27 @@ public interface MultiSet<E> extends Collection<E> {
      */
     Set<Entry<E>> entrySet();
 
+    /**
+     * Performs the given action for each distinct element of the MultiSet and
+     * its number of occurrences, visiting every element once whatever its count.
+     * <p>
+     * The default implementation traverses the {@link #entrySet()};
+     * implementations backed by a table of counts read them as they traverse
+     * it, without creating entries. The action must not modify the multiset.
+     *
+     * @param action  the action to perform, must not be null
+     * @throws NullPointerException if the action is null
+     * @since 4.5
+     */
+    default void forEachEntry(final ObjIntConsumer<? super E> action) {
+        if (action == null) {
+            throw new NullPointerException("Action must not be null.");
+        }
+        for (final Entry<E> entry : entrySet()) {
+            action.accept(entry.getElement(), entry.getCount());
+        }
+    }
+
     /**
      * Returns an {@link Iterator} over the entire set of members,
      * including copies due to cardinality. This iterator is fail-fast
@@ -0,0 +1,232 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.collections4;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Merges two sorted lists by splitting the output into slices that are merged
+ * independently on the common {@link ForkJoinPool}.
+ * <p>
+ * The start of every slice in both inputs is found by a binary search for the
+ * split that puts exactly the elements before the slice's output position in
+ * front of it, with ties going to the first list as in {@link CollectionUtils#collate}.
+ * Every task then merges its slice of both inputs straight into its range of a
+ * single output list of the exact total size. When duplicates are removed,
+ * each slice starts from the element merged just before it, so the result is
+ * the same as the sequential merge.
+ *
+ * @since 4.5
+ */
+final class ParallelCollator {
+
+    /** Total input size below which the sequential merge is used */
+    static final int THRESHOLD = 1 << 15;
+
+    /** Minimum number of output elements per slice */
+    private static final int MIN_SLICE_SIZE = 1 << 13;
+
+    /**
+     * <code>ParallelCollator</code> should not be instantiated.
+     */
+    private ParallelCollator() {}
+
+    /**
+     * Merges two sorted iterables, in parallel if they are large enough.
+     *
+     * @param <O> the element type
+     * @param a  the first collection, must not be null
+     * @param b  the second collection, must not be null
+     * @param c  the comparator both collections are sorted by, must not be null
+     * @param includeDuplicates  whether to keep elements equal to the previous one
+     * @return a new sorted {@link ArrayList}
+     * @throws NullPointerException if either collection or the comparator is null
+     */
+    static <O> List<O> collate(final Iterable<? extends O> a, final Iterable<? extends O> b,
+                               final Comparator<? super O> c, final boolean includeDuplicates) {
+        if (a == null || b == null) {
+            throw new NullPointerException("The collections must not be null");
+        }
+        if (c == null) {
+            throw new NullPointerException("The comparator must not be null");
+        }
+        final List<? extends O> listA = toRandomAccess(a);
+        final List<? extends O> listB = toRandomAccess(b);
+        final long total = (long) listA.size() + listB.size();
+        if (total < THRESHOLD) {
+            return CollectionUtils.collate(listA, listB, c, includeDuplicates);
+        }
+        if (total > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("Result has more than Integer.MAX_VALUE elements");
+        }
+
+        // split the output into slices and find where each one starts in a
+        final int slices = (int) Math.min(ForkJoinPool.getCommonPoolParallelism() << 2, total / MIN_SLICE_SIZE);
+        final int[] startsA = new int[slices + 1];
+        final int[] outputStarts = new int[slices + 1];
+        IntStream.rangeClosed(0, slices).parallel().forEach(s -> {
+            final int k = (int) (total * s / slices);
+            outputStarts[s] = k;
+            startsA[s] = split(listA, listB, k, c);
+        });
+
+        final List<O> result = new ArrayList<>(Collections.<O>nCopies((int) total, null));
+        final int[] sizes = new int[slices];
+        IntStream.range(0, slices).parallel().forEach(s -> {
+            final int fromA = startsA[s];
+            final int fromB = outputStarts[s] - fromA;
+            final int toA = startsA[s + 1];
+            final int toB = outputStarts[s + 1] - toA;
+            merge(listA, fromA, toA, listB, fromB, toB, c, result, outputStarts[s]);
+            sizes[s] = includeDuplicates ? toA - fromA + toB - fromB :
+                    removeDuplicates(result, outputStarts[s], outputStarts[s + 1],
+                            previous(listA, fromA, listB, fromB, c));
+        });
+
+        if (!includeDuplicates) {
+            // close the gaps left by the removed duplicates, in slice order
+            int size = sizes[0];
+            for (int s = 1; s < slices; s++) {
+                for (int k = outputStarts[s]; k < outputStarts[s] + sizes[s]; k++) {
+                    result.set(size++, result.get(k));
+                }
+            }
+            result.subList(size, (int) total).clear();
+        }
+        return result;
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Returns the number of elements of {@code a} among the first {@code k}
+     * elements of the merge. An element of {@code a} comes before an equal
+     * element of {@code b}.
+     */
+    private static <O> int split(final List<? extends O> a, final List<? extends O> b, final int k,
+                                 final Comparator<? super O> c) {
+        // find the smallest i such that the element of b just before the split
+        // is strictly before the first element of a after it
+        int lo = Math.max(0, k - b.size());
+        int hi = Math.min(k, a.size());
+        while (lo < hi) {
+            final int i = lo + hi >>> 1;
+            final int j = k - i;
+            if (j == 0 || c.compare(b.get(j - 1), a.get(i)) < 0) {
+                hi = i;
+            } else {
+                lo = i + 1;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Merges a slice of both lists into a range of the result.
+     */
+    private static <O> void merge(final List<? extends O> a, final int fromA, final int toA,
+                                  final List<? extends O> b, final int fromB, final int toB,
+                                  final Comparator<? super O> c, final List<? super O> result, final int offset) {
+        int i = fromA;
+        int j = fromB;
+        int k = offset;
+        if (i < toA && j < toB) {
+            O x = a.get(i);
+            O y = b.get(j);
+            while (true) {
+                if (c.compare(x, y) <= 0) {
+                    result.set(k++, x);
+                    if (++i == toA) {
+                        break;
+                    }
+                    x = a.get(i);
+                } else {
+                    result.set(k++, y);
+                    if (++j == toB) {
+                        break;
+                    }
+                    y = b.get(j);
+                }
+            }
+        }
+        while (i < toA) {
+            result.set(k++, a.get(i++));
+        }
+        while (j < toB) {
+            result.set(k++, b.get(j++));
+        }
+    }
+
+    /**
+     * Returns the element merged just before the given split of both lists,
+     * or null at the start of the merge.
+     */
+    private static <O> O previous(final List<? extends O> a, final int i, final List<? extends O> b, final int j,
+                                  final Comparator<? super O> c) {
+        if (i == 0) {
+            return j == 0 ? null : b.get(j - 1);
+        }
+        if (j == 0) {
+            return a.get(i - 1);
+        }
+        final O x = a.get(i - 1);
+        final O y = b.get(j - 1);
+        return c.compare(x, y) <= 0 ? y : x;
+    }
+
+    /**
+     * Removes the elements of a range equal to the element before them, moving
+     * the kept elements to the start of the range, and returns how many were kept.
+     */
+    private static <O> int removeDuplicates(final List<O> result, final int from, final int to, final O previous) {
+        O lastItem = previous;
+        int size = from;
+        for (int k = from; k < to; k++) {
+            final O item = result.get(k);
+            if (lastItem == null || !lastItem.equals(item)) {
+                result.set(size++, item);
+            }
+            lastItem = item;
+        }
+        return size - from;
+    }
+
+    /**
+     * Returns an iterable itself if it is a random access list, or its elements
+     * copied into a list otherwise.
+     */
+    private static <O> List<? extends O> toRandomAccess(final Iterable<? extends O> coll) {
+        if (coll instanceof List<?> && coll instanceof RandomAccess) {
+            return (List<? extends O>) coll;
+        }
+        if (coll instanceof Collection<?>) {
+            return new ArrayList<>((Collection<? extends O>) coll);
+        }
+        final List<O> list = new ArrayList<>();
+        for (final O obj : coll) {
+            list.add(obj);
+        }
+        return list;
+    }
+
+}
@@ -0,0 +1,266 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.collections4;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.apache.commons.collections4.SetOperationEngine.Operation;
+
+/**
+ * Set operations that hash-partition both inputs and count each partition
+ * on the common {@link ForkJoinPool}.
+ * <p>
+ * Both inputs are copied into arrays and scattered by the top bits of their
+ * spread hash codes into partitions, keeping the input order within each
+ * partition. The number of partitions follows from the total input size alone;
+ * the pool decides how many tasks count them. Equal elements always land in
+ * the same partition, so each partition is counted by its own
+ * {@link SetOperationEngine} without any synchronization. The partition results
+ * are then written, in partition order, into a single list of the exact result
+ * size.
+ * <p>
+ * The order of the result therefore only depends on the input order and the
+ * hash codes of the elements, not on the machine or the scheduling of the tasks.
+ *
+ * @since 4.5
+ */
+final class ParallelSetOperations {
+
+    /** Total input size below which the sequential engine is used */
+    static final int THRESHOLD = 1 << 15;
+
+    /** Upper bound on the number of partitions */
+    private static final int MAX_PARTITIONS = 1 << 10;
+
+    /** Number of input elements per partition, before the bound */
+    private static final int PARTITION_SIZE = 1 << 12;
+
+    /**
+     * <code>ParallelSetOperations</code> should not be instantiated.
+     */
+    private ParallelSetOperations() {}
+
+    /**
+     * Applies a set operation, in parallel if the inputs are large enough.
+     *
+     * @param <O> the element type
+     * @param a  the first collection, must not be null
+     * @param b  the second collection, must not be null
+     * @param op  the operation
+     * @return a new list with the result
+     * @throws NullPointerException if either collection is null
+     */
+    static <O> List<O> apply(final Iterable<? extends O> a, final Iterable<? extends O> b, final Operation op) {
+        final Object[] arrayA = toArray(a);
+        final Object[] arrayB = toArray(b);
+        if (arrayA.length + arrayB.length < THRESHOLD) {
+            final SetOperationEngine<O> engine = new SetOperationEngine<>(Math.max(arrayA.length, arrayB.length));
+            engine.count(arrayA, 0, arrayA.length, 0);
+            engine.count(arrayB, 0, arrayB.length, 1);
+            return engine.emit(op);
+        }
+        final List<SetOperationEngine<O>> engines = countPartitions(arrayA, arrayB);
+        final int[] offsets = new int[engines.size() + 1];
+        for (int p = 0; p < engines.size(); p++) {
+            final long end = (long) offsets[p] + engines.get(p).size(op);
+            if (end > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Result has more than Integer.MAX_VALUE elements");
+            }
+            offsets[p + 1] = (int) end;
+        }
+        // the tasks set disjoint ranges of a list of the exact size
+        final List<O> result = new ArrayList<>(Collections.<O>nCopies(offsets[engines.size()], null));
+        IntStream.range(0, engines.size()).parallel().forEach(p -> engines.get(p).emit(op, result, offsets[p]));
+        return result;
+    }
+
+    /**
+     * Returns whether the result of a set operation is empty, in parallel if
+     * the inputs are large enough. Partitions that have not been examined yet
+     * are skipped as soon as one partition has a non-empty result.
+     *
+     * @param a  the first collection, must not be null
+     * @param b  the second collection, must not be null
+     * @param op  the operation
+     * @return true if the result has no elements
+     * @throws NullPointerException if either collection is null
+     */
+    static boolean isEmpty(final Collection<?> a, final Collection<?> b, final Operation op) {
+        final Object[] arrayA = toArray(a);
+        final Object[] arrayB = toArray(b);
+        if (arrayA.length + arrayB.length < THRESHOLD) {
+            final SetOperationEngine<Object> engine =
+                    new SetOperationEngine<>(Math.max(arrayA.length, arrayB.length));
+            engine.count(arrayA, 0, arrayA.length, 0);
+            engine.count(arrayB, 0, arrayB.length, 1);
+            return engine.isEmpty(op);
+        }
+        final int bits = partitionBits((long) arrayA.length + arrayB.length);
+        final PartitionedArray partsA = PartitionedArray.of(arrayA, bits);
+        final PartitionedArray partsB = PartitionedArray.of(arrayB, partsA.bits);
+        return IntStream.range(0, partsA.partitions()).parallel().allMatch(p -> {
+            final SetOperationEngine<Object> engine = engineFor(partsA, partsB, p);
+            return engine.isEmpty(op);
+        });
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Partitions both arrays and counts every partition into its own engine.
+     */
+    private static <O> List<SetOperationEngine<O>> countPartitions(final Object[] arrayA, final Object[] arrayB) {
+        final int bits = partitionBits((long) arrayA.length + arrayB.length);
+        final PartitionedArray partsA = PartitionedArray.of(arrayA, bits);
+        final PartitionedArray partsB = PartitionedArray.of(arrayB, partsA.bits);
+        return IntStream.range(0, partsA.partitions()).parallel()
+                .mapToObj(p -> ParallelSetOperations.<O>engineFor(partsA, partsB, p))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Counts one partition of both inputs.
+     */
+    private static <O> SetOperationEngine<O> engineFor(final PartitionedArray partsA, final PartitionedArray partsB,
+                                                       final int p) {
+        final int fromA = partsA.starts[p];
+        final int toA = partsA.starts[p + 1];
+        final int fromB = partsB.starts[p];
+        final int toB = partsB.starts[p + 1];
+        final SetOperationEngine<O> engine = new SetOperationEngine<>(Math.max(toA - fromA, toB - fromB));
+        engine.count(partsA.elements, fromA, toA, 0);
+        engine.count(partsB.elements, fromB, toB, 1);
+        return engine;
+    }
+
+    /**
+     * Returns the number of hash bits used to pick a partition, giving one
+     * partition per {@link #PARTITION_SIZE} input elements, up to
+     * {@link #MAX_PARTITIONS}. Many more partitions than workers let uneven
+     * partitions even out.
+     */
+    private static int partitionBits(final long total) {
+        final int target = (int) Math.min(MAX_PARTITIONS, Math.max(2, total / PARTITION_SIZE));
+        return 32 - Integer.numberOfLeadingZeros(target - 1);
+    }
+
+    /**
+     * Copies the elements of an iterable into a new array.
+     */
+    private static Object[] toArray(final Iterable<?> coll) {
+        if (coll == null) {
+            throw new NullPointerException("The collections must not be null");
+        }
+        if (coll instanceof Collection<?>) {
+            return ((Collection<?>) coll).toArray();
+        }
+        final List<Object> list = new ArrayList<>();
+        for (final Object obj : coll) {
+            list.add(obj);
+        }
+        return list.toArray();
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * An array whose elements are grouped by partition, in input order within
+     * each partition, built with a parallel two-pass radix scatter.
+     */
+    private static final class PartitionedArray {
+
+        /** The number of hash bits selecting the partition */
+        final int bits;
+        /** The elements, grouped by partition */
+        final Object[] elements;
+        /** The start index of each partition, followed by the total length */
+        final int[] starts;
+
+        private PartitionedArray(final int bits, final Object[] elements, final int[] starts) {
+            this.bits = bits;
+            this.elements = elements;
+            this.starts = starts;
+        }
+
+        /**
+         * Scatters an array into {@code 2^bits} partitions.
+         */
+        static PartitionedArray of(final Object[] array, final int bits) {
+            final int partitions = 1 << bits;
+            final int n = array.length;
+            final int chunkSize = Math.max(1, (n + partitions - 1) / partitions);
+            final int chunks = (n + chunkSize - 1) / chunkSize;
+
+            // first pass: histogram of every chunk
+            final int[][] offsets = new int[chunks][];
+            IntStream.range(0, chunks).parallel().forEach(chunk -> {
+                final int[] histogram = new int[partitions];
+                final int end = Math.min(n, (chunk + 1) * chunkSize);
+                for (int k = chunk * chunkSize; k < end; k++) {
+                    histogram[partition(array[k], bits)]++;
+                }
+                offsets[chunk] = histogram;
+            });
+
+            // turn the histograms into write offsets, partition-major then chunk order
+            final int[] starts = new int[partitions + 1];
+            int total = 0;
+            for (int p = 0; p < partitions; p++) {
+                starts[p] = total;
+                for (int chunk = 0; chunk < chunks; chunk++) {
+                    final int count = offsets[chunk][p];
+                    offsets[chunk][p] = total;
+                    total += count;
+                }
+            }
+            starts[partitions] = total;
+
+            // second pass: every chunk writes to its own slice of each partition
+            final Object[] elements = new Object[n];
+            IntStream.range(0, chunks).parallel().forEach(chunk -> {
+                final int[] next = offsets[chunk];
+                final int end = Math.min(n, (chunk + 1) * chunkSize);
+                for (int k = chunk * chunkSize; k < end; k++) {
+                    final Object obj = array[k];
+                    elements[next[partition(obj, bits)]++] = obj;
+                }
+            });
+            return new PartitionedArray(bits, elements, starts);
+        }
+
+        int partitions() {
+            return starts.length - 1;
+        }
+
+        /**
+         * Picks the partition from the top bits of the spread hash code, leaving
+         * the low bits to the open-addressing index of each engine.
+         */
+        private static int partition(final Object obj, final int bits) {
+            if (obj == null) {
+                return 0;
+            }
+            final int h = obj.hashCode() * 0x9E3779B9;
+            return (h ^ h >>> 16) >>> 32 - bits;
+        }
+    }
+
+}
@@ -0,0 +1,450 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.collections4;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Counts the elements of two collections into a single hash table holding
+ * two counters per distinct element, and emits the result of a set operation
+ * from it in one sweep.
+ * <p>
+ * Distinct elements are kept in dense arrays in order of first appearance
+ * (elements of A first, then those only in B), and a separate open-addressing
+ * index of {@code int} slots maps hash codes to positions in those arrays.
+ * As the counts of every element are known before anything is emitted, the
+ * output can be sized exactly.
+ *
+ * @param <O> the element type
+ * @since 4.5
+ */
+final class SetOperationEngine<O> {
+
+    /**
+     * The set operations supported by the engine, each defined by the
+     * cardinality of an element in the result given its cardinality in A and B.
+     */
+    enum Operation {
+        /** max(a, b) */
+        UNION {
+            @Override
+            int cardinality(final int a, final int b) {
+                return Math.max(a, b);
+            }
+        },
+        /** min(a, b) */
+        INTERSECTION {
+            @Override
+            int cardinality(final int a, final int b) {
+                return Math.min(a, b);
+            }
+        },
+        /** max(a, b) - min(a, b) */
+        DISJUNCTION {
+            @Override
+            int cardinality(final int a, final int b) {
+                return Math.abs(a - b);
+            }
+        },
+        /** max(a - b, 0) */
+        SUBTRACT {
+            @Override
+            int cardinality(final int a, final int b) {
+                return Math.max(a - b, 0);
+            }
+        };
+
+        /**
+         * Returns the cardinality of an element in the result.
+         *
+         * @param a  the cardinality of the element in A
+         * @param b  the cardinality of the element in B
+         * @return the cardinality in the result
+         */
+        abstract int cardinality(int a, int b);
+    }
+
+    /** Marker stored in place of a {@code null} element */
+    private static final Object NULL = new Object();
+
+    /** The smallest capacity of the dense arrays */
+    private static final int MIN_CAPACITY = 8;
+
+    /** Open-addressing index: position in the dense arrays plus one, zero meaning free */
+    private int[] slots;
+    /** Distinct elements in order of first appearance */
+    private Object[] elements;
+    /** Spread hash codes, parallel to {@link #elements} */
+    private int[] hashes;
+    /** Counters, two per distinct element: A at {@code 2i} and B at {@code 2i + 1} */
+    private int[] counts;
+    /** The number of distinct elements */
+    private int size;
+
+    /**
+     * Counts both collections into a new engine.
+     *
+     * @param <O> the element type
+     * @param a  the first collection, must not be null
+     * @param b  the second collection, must not be null
+     * @return the populated engine
+     * @throws NullPointerException if either collection is null
+     */
+    static <O> SetOperationEngine<O> of(final Iterable<? extends O> a, final Iterable<? extends O> b) {
+        final SetOperationEngine<O> engine = new SetOperationEngine<>(Math.max(distinctSizeOf(a), distinctSizeOf(b)));
+        engine.count(a, 0);
+        engine.count(b, 1);
+        return engine;
+    }
+
+    /**
+     * Counts any number of collections into a new engine, in one pass over
+     * each of them.
+     * <p>
+     * The first counter of each element holds its maximum cardinality over all
+     * the collections, and the second one its minimum cardinality, a collection
+     * that does not hold the element counting as zero. {@link Operation#UNION},
+     * {@link Operation#INTERSECTION} and {@link Operation#DISJUNCTION} then give
+     * the maximum, the minimum and the maximum minus the minimum, which for two
+     * collections are the same as counting them into A and B.
+     *
+     * @param <O> the element type
+     * @param inputs  the collections, must not be null or contain null
+     * @return the populated engine
+     * @throws NullPointerException if the collection of inputs or any input is null
+     */
+    static <O> SetOperationEngine<O> ofAll(final Collection<? extends Iterable<? extends O>> inputs) {
+        if (inputs == null) {
+            throw new NullPointerException("The collections must not be null");
+        }
+        int expectedSize = 0;
+        for (final Iterable<? extends O> input : inputs) {
+            if (input == null) {
+                throw new NullPointerException("The collections must not be null");
+            }
+            expectedSize = Math.max(expectedSize, distinctSizeOf(input));
+        }
+        final SetOperationEngine<O> engine = new SetOperationEngine<>(expectedSize);
+        // the count of each element in the input being read, and the number of that input plus one
+        int[] pending = new int[engine.elements.length];
+        int[] pendingInput = new int[engine.elements.length];
+        int input = 0;
+        for (final Iterable<? extends O> coll : inputs) {
+            for (final O obj : coll) {
+                final int index = engine.indexFor(obj);
+                if (index >= pending.length) {
+                    pending = Arrays.copyOf(pending, engine.elements.length);
+                    pendingInput = Arrays.copyOf(pendingInput, engine.elements.length);
+                }
+                if (pendingInput[index] == input + 1) {
+                    pending[index]++;
+                    continue;
+                }
+                engine.fold(index, pending[index], pendingInput[index] - 1, input);
+                pending[index] = 1;
+                pendingInput[index] = input + 1;
+            }
+            input++;
+        }
+        for (int i = 0; i < engine.size; i++) {
+            engine.fold(i, pending[i], pendingInput[i] - 1, input);
+        }
+        return engine;
+    }
+
+    /**
+     * Folds the count of an element in one input into its maximum and minimum
+     * before the element is met in a later input.
+     *
+     * @param index  the position of the element
+     * @param count  the count of the element in the previous input
+     * @param previous  the previous input holding the element, or -1 if there is none
+     * @param next  the next input holding the element, or the number of inputs
+     */
+    private void fold(final int index, final int count, final int previous, final int next) {
+        final int i = index << 1;
+        if (previous < 0) {
+            // before the first input holding the element, the minimum is zero unless there is none
+            counts[i + 1] = next == 0 ? Integer.MAX_VALUE : 0;
+            return;
+        }
+        counts[i] = Math.max(counts[i], count);
+        counts[i + 1] = next > previous + 1 ? 0 : Math.min(counts[i + 1], count);
+    }
+
+    /**
+     * Constructs an empty engine.
+     *
+     * @param expectedSize  the expected number of distinct elements
+     */
+    SetOperationEngine(final int expectedSize) {
+        final int capacity = Math.max(MIN_CAPACITY, expectedSize);
+        elements = new Object[capacity];
+        hashes = new int[capacity];
+        counts = new int[capacity << 1];
+        slots = new int[slotCapacityFor(capacity)];
+    }
+
+    /**
+     * Adds every element of the given collection to one side of the engine.
+     *
+     * @param coll  the collection to count, must not be null
+     * @param side  0 for A, 1 for B
+     */
+    void count(final Iterable<? extends O> coll, final int side) {
+        for (final O obj : coll) {
+            // find the index first, as it may grow the counts array
+            final int index = indexFor(obj);
+            counts[(index << 1) + side]++;
+        }
+    }
+
+    /**
+     * Adds a range of an array to one side of the engine.
+     *
+     * @param array  the array holding the elements
+     * @param from  the first index to count, inclusive
+     * @param to  the last index to count, exclusive
+     * @param side  0 for A, 1 for B
+     */
+    void count(final Object[] array, final int from, final int to, final int side) {
+        for (int k = from; k < to; k++) {
+            final int index = indexFor(array[k]);
+            counts[(index << 1) + side]++;
+        }
+    }
+
+    /**
+     * Returns the number of distinct elements counted so far.
+     *
+     * @return the number of distinct elements
+     */
+    int uniqueElements() {
+        return size;
+    }
+
+    /**
+     * Returns the exact size of the result of an operation.
+     *
+     * @param op  the operation
+     * @return the number of elements in the result
+     * @throws IllegalStateException if the result has more than {@link Integer#MAX_VALUE} elements
+     */
+    int size(final Operation op) {
+        final long total = longSize(op);
+        if (total > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Result has more than Integer.MAX_VALUE elements");
+        }
+        return (int) total;
+    }
+
+    /**
+     * Returns the exact size of the result of an operation, without overflowing.
+     *
+     * @param op  the operation
+     * @return the number of elements in the result
+     */
+    long longSize(final Operation op) {
+        long total = 0;
+        for (int i = 0; i < size; i++) {
+            total += cardinality(i, op);
+        }
+        return total;
+    }
+
+    /**
+     * Returns whether the result of an operation is empty, stopping at the
+     * first element that would be emitted.
+     *
+     * @param op  the operation
+     * @return true if the result has no elements
+     */
+    boolean isEmpty(final Operation op) {
+        for (int i = 0; i < size; i++) {
+            if (cardinality(i, op) > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Emits the result of an operation into a new, exactly sized list.
+     *
+     * @param op  the operation
+     * @return the result
+     */
+    List<O> emit(final Operation op) {
+        final ArrayList<O> result = new ArrayList<>(size(op));
+        for (int i = 0; i < size; i++) {
+            final O obj = element(i);
+            for (int c = cardinality(i, op); c > 0; c--) {
+                result.add(obj);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Emits the result of an operation by setting the elements of a list,
+     * which must have room for {@link #size(Operation)} elements from the
+     * given offset on.
+     *
+     * @param op  the operation
+     * @param dest  the list to write to
+     * @param offset  the index of the first element to write
+     * @return the index after the last element written
+     */
+    int emit(final Operation op, final List<? super O> dest, final int offset) {
+        int k = offset;
+        for (int i = 0; i < size; i++) {
+            final O obj = element(i);
+            for (int c = cardinality(i, op); c > 0; c--) {
+                dest.set(k++, obj);
+            }
+        }
+        return k;
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Returns the position of an element without adding it.
+     *
+     * @param obj  the element, may be null
+     * @return the position in order of first appearance, or -1 if the element was not counted
+     */
+    int indexOf(final Object obj) {
+        final Object key = obj == null ? NULL : obj;
+        final int hash = hash(key);
+        final int mask = slots.length - 1;
+        int i = hash & mask;
+        int slot;
+        while ((slot = slots[i]) != 0) {
+            final Object cur = elements[slot - 1];
+            if (hashes[slot - 1] == hash && (cur == key || key.equals(cur))) {
+                return slot - 1;
+            }
+            i = i + 1 & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the cardinality in the result of an operation of the distinct element at the given position.
+     *
+     * @param index  the position in order of first appearance
+     * @param op  the operation
+     * @return the cardinality in the result
+     */
+    int cardinality(final int index, final Operation op) {
+        return op.cardinality(counts[index << 1], counts[(index << 1) + 1]);
+    }
+
+    /**
+     * Returns the distinct element at the given position.
+     *
+     * @param index  the position in order of first appearance
+     * @return the element
+     */
+    @SuppressWarnings("unchecked")
+    O element(final int index) {
+        final Object obj = elements[index];
+        return obj == NULL ? null : (O) obj;
+    }
+
+    /**
+     * Returns the position of an element, adding it with zero counts if needed.
+     *
+     * @param obj  the element, may be null
+     * @return the position in the dense arrays
+     */
+    private int indexFor(final Object obj) {
+        final Object key = obj == null ? NULL : obj;
+        final int hash = hash(key);
+        final int mask = slots.length - 1;
+        int i = hash & mask;
+        int slot;
+        while ((slot = slots[i]) != 0) {
+            final Object cur = elements[slot - 1];
+            if (hashes[slot - 1] == hash && (cur == key || key.equals(cur))) {
+                return slot - 1;
+            }
+            i = i + 1 & mask;
+        }
+        if (size == elements.length) {
+            grow();
+            return indexFor(obj);
+        }
+        elements[size] = key;
+        hashes[size] = hash;
+        slots[i] = ++size;
+        return size - 1;
+    }
+
+    /**
+     * Doubles the capacity of the dense arrays and rebuilds the index.
+     */
+    private void grow() {
+        final int capacity = elements.length << 1;
+        elements = Arrays.copyOf(elements, capacity);
+        hashes = Arrays.copyOf(hashes, capacity);
+        counts = Arrays.copyOf(counts, capacity << 1);
+        slots = new int[slotCapacityFor(capacity)];
+        final int mask = slots.length - 1;
+        for (int j = 0; j < size; j++) {
+            int i = hashes[j] & mask;
+            while (slots[i] != 0) {
+                i = i + 1 & mask;
+            }
+            slots[i] = j + 1;
+        }
+    }
+
+    private static int hash(final Object key) {
+        final int h = key.hashCode() * 0x9E3779B9;
+        return h ^ h >>> 16;
+    }
+
+    /**
+     * Returns the index capacity for the given number of elements, keeping the load at or below one half.
+     */
+    private static int slotCapacityFor(final int capacity) {
+        return (int) Math.min(1L << 30, (long) Integer.highestOneBit(capacity - 1) << 2);
+    }
+
+    /**
+     * Returns the number of distinct elements of a collection if it is known
+     * without counting them, or zero to let the engine grow as it counts.
+     */
+    private static int distinctSizeOf(final Iterable<?> coll) {
+        if (coll instanceof Set<?>) {
+            return ((Set<?>) coll).size();
+        }
+        if (coll instanceof Bag<?>) {
+            return ((Bag<?>) coll).uniqueSet().size();
+        }
+        if (coll instanceof MultiSet<?>) {
+            return ((MultiSet<?>) coll).uniqueSet().size();
+        }
+        return 0;
+    }
+
+}
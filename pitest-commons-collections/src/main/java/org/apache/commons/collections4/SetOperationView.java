@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.collections4;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.apache.commons.collections4.SetOperationEngine.Operation;
+import org.apache.commons.collections4.multiset.AbstractMultiSet;
+
+/**
+ * An unmodifiable {@link MultiSet} view of the result of a set operation,
+ * backed by the count table of a {@link SetOperationEngine}.
+ * <p>
+ * The cardinality of an element is computed from its two counters when it is
+ * asked for, and the iterator repeats each element on demand, so the result
+ * is never materialized. The view reflects the inputs as they were when it
+ * was created.
+ *
+ * @param <O> the element type
+ * @since 4.5
+ */
+final class SetOperationView<O> extends AbstractMultiSet<O> {
+
+    /** The count table of both inputs */
+    private final SetOperationEngine<O> engine;
+    /** The operation applied to the counts */
+    private final Operation op;
+    /** The number of elements, computed on first use */
+    private int size = -1;
+    /** The number of distinct elements, computed on first use */
+    private int uniqueElements = -1;
+
+    /**
+     * Constructs a view of the result of an operation.
+     *
+     * @param engine  the populated engine
+     * @param op  the operation
+     */
+    SetOperationView(final SetOperationEngine<O> engine, final Operation op) {
+        this.engine = engine;
+        this.op = op;
+    }
+
+    //-----------------------------------------------------------------------
+    @Override
+    public int size() {
+        if (size < 0) {
+            size = (int) Math.min(Integer.MAX_VALUE, engine.longSize(op));
+        }
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size < 0 ? engine.isEmpty(op) : size == 0;
+    }
+
+    @Override
+    public int getCount(final Object object) {
+        final int index = engine.indexOf(object);
+        return index < 0 ? 0 : engine.cardinality(index, op);
+    }
+
+    @Override
+    public Iterator<O> iterator() {
+        return new Iterator<O>() {
+            private int index = nextIndex(0);
+            private int remaining = index < engine.uniqueElements() ? engine.cardinality(index, op) : 0;
+
+            @Override
+            public boolean hasNext() {
+                return remaining > 0;
+            }
+
+            @Override
+            public O next() {
+                if (remaining == 0) {
+                    throw new NoSuchElementException();
+                }
+                final O obj = engine.element(index);
+                if (--remaining == 0) {
+                    index = nextIndex(index + 1);
+                    remaining = index < engine.uniqueElements() ? engine.cardinality(index, op) : 0;
+                }
+                return obj;
+            }
+        };
+    }
+
+    @Override
+    protected int uniqueElements() {
+        if (uniqueElements < 0) {
+            int count = 0;
+            for (int i = nextIndex(0); i < engine.uniqueElements(); i = nextIndex(i + 1)) {
+                count++;
+            }
+            uniqueElements = count;
+        }
+        return uniqueElements;
+    }
+
+    @Override
+    protected Iterator<Entry<O>> createEntrySetIterator() {
+        return new Iterator<Entry<O>>() {
+            private int index = nextIndex(0);
+
+            @Override
+            public boolean hasNext() {
+                return index < engine.uniqueElements();
+            }
+
+            @Override
+            public Entry<O> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                final int current = index;
+                index = nextIndex(index + 1);
+                return new AbstractEntry<O>() {
+                    @Override
+                    public O getElement() {
+                        return engine.element(current);
+                    }
+
+                    @Override
+                    public int getCount() {
+                        return engine.cardinality(current, op);
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * Returns the first position from the given one on whose element occurs
+     * in the result, or the number of distinct elements if there is none.
+     */
+    private int nextIndex(final int from) {
+        int i = from;
+        while (i < engine.uniqueElements() && engine.cardinality(i, op) == 0) {
+            i++;
+        }
+        return i;
+    }
+
+}
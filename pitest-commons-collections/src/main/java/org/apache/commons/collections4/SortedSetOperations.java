@@ -0,0 +1,317 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.collections4;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.RandomAccess;
+
+import org.apache.commons.collections4.SetOperationEngine.Operation;
+
+/**
+ * Merge-based set operations over inputs that are sorted by a {@link Comparator}.
+ * <p>
+ * Both inputs are walked once in step. Elements that compare as equal form a
+ * run on each side, and the run lengths play the role of the cardinalities used
+ * by the hash-based operations. When both inputs are {@link RandomAccess} lists
+ * of very different sizes, the larger one is skipped through with galloping
+ * (exponential) search, so the cost is close to {@code O(k log(n / k))} for the
+ * smaller size {@code k}. Apart from the output list, nothing is allocated except
+ * a buffer for the current run of equal elements when an input is not random access.
+ *
+ * @since 4.5
+ */
+final class SortedSetOperations {
+
+    /** Size ratio from which the larger input is skipped through with galloping search */
+    private static final int GALLOP_RATIO = 8;
+
+    /**
+     * <code>SortedSetOperations</code> should not be instantiated.
+     */
+    private SortedSetOperations() {}
+
+    /**
+     * Applies a set operation to two sorted inputs.
+     *
+     * @param <O> the element type
+     * @param a  the first input, sorted by the comparator, must not be null
+     * @param b  the second input, sorted by the comparator, must not be null
+     * @param c  the comparator the inputs are sorted by, must not be null
+     * @param op  the operation
+     * @param distinct  whether to emit at most one element per run of equal elements
+     * @return a new sorted list with the result
+     * @throws NullPointerException if either input or the comparator is null
+     */
+    static <O> List<O> apply(final Iterable<? extends O> a, final Iterable<? extends O> b,
+                             final Comparator<? super O> c, final Operation op, final boolean distinct) {
+        if (a == null || b == null) {
+            throw new NullPointerException("The collections must not be null");
+        }
+        if (c == null) {
+            throw new NullPointerException("The comparator must not be null");
+        }
+        if (a instanceof List<?> && a instanceof RandomAccess && b instanceof List<?> && b instanceof RandomAccess) {
+            return merge((List<? extends O>) a, (List<? extends O>) b, c, op, distinct);
+        }
+        return merge(a.iterator(), b.iterator(), c, op, distinct);
+    }
+
+    /**
+     * Merges two random access lists, galloping through the larger one if the sizes are lopsided.
+     */
+    private static <O> List<O> merge(final List<? extends O> a, final List<? extends O> b,
+                                     final Comparator<? super O> c, final Operation op, final boolean distinct) {
+        final int n = a.size();
+        final int m = b.size();
+        final boolean keepA = op != Operation.INTERSECTION;
+        final boolean keepB = op == Operation.UNION || op == Operation.DISJUNCTION;
+        final boolean gallopA = n / GALLOP_RATIO > m;
+        final boolean gallopB = m / GALLOP_RATIO > n;
+        final List<O> result = new ArrayList<>(initialCapacity(n, m, op));
+
+        int i = 0;
+        int j = 0;
+        while (i < n && j < m) {
+            final O x = a.get(i);
+            final O y = b.get(j);
+            final int cmp = c.compare(x, y);
+            if (cmp < 0) {
+                final int k = gallopA ? gallop(a, i + 1, n, y, c) : i + 1;
+                if (keepA) {
+                    addRange(result, a, i, k, c, distinct);
+                }
+                i = k;
+            } else if (cmp > 0) {
+                final int k = gallopB ? gallop(b, j + 1, m, x, c) : j + 1;
+                if (keepB) {
+                    addRange(result, b, j, k, c, distinct);
+                }
+                j = k;
+            } else {
+                final int ra = runLength(a, i, n, x, c);
+                final int rb = runLength(b, j, m, x, c);
+                addRun(result, a, i, ra, b, j, rb, op, distinct);
+                i += ra;
+                j += rb;
+            }
+        }
+        if (keepA) {
+            addRange(result, a, i, n, c, distinct);
+        }
+        if (keepB) {
+            addRange(result, b, j, m, c, distinct);
+        }
+        return result;
+    }
+
+    /**
+     * Merges two iterators in a single pass. Only the run of equal elements
+     * currently examined in {@code b} is buffered.
+     */
+    private static <O> List<O> merge(final Iterator<? extends O> a, final Iterator<? extends O> b,
+                                     final Comparator<? super O> c, final Operation op, final boolean distinct) {
+        final boolean keepA = op != Operation.INTERSECTION;
+        final boolean keepB = op == Operation.UNION || op == Operation.DISJUNCTION;
+        final List<O> result = new ArrayList<>();
+        final List<O> runB = new ArrayList<>();
+
+        boolean hasX = a.hasNext();
+        O x = hasX ? a.next() : null;
+        boolean hasY = b.hasNext();
+        O y = hasY ? b.next() : null;
+        while (hasX && hasY) {
+            final int cmp = c.compare(x, y);
+            if (cmp < 0) {
+                if (keepA) {
+                    addDistinct(result, x, c, distinct);
+                }
+                hasX = a.hasNext();
+                x = hasX ? a.next() : null;
+            } else if (cmp > 0) {
+                if (keepB) {
+                    addDistinct(result, y, c, distinct);
+                }
+                hasY = b.hasNext();
+                y = hasY ? b.next() : null;
+            } else {
+                final O key = x;
+                // buffer the run in b, then stream the run in a
+                do {
+                    runB.add(y);
+                    hasY = b.hasNext();
+                    y = hasY ? b.next() : null;
+                } while (hasY && c.compare(y, key) == 0);
+                final int rb = runB.size();
+                int ra = 0;
+                do {
+                    // the first rb elements of the run in a are matched by the run in b
+                    if (op == Operation.UNION || (ra < rb) == (op == Operation.INTERSECTION)) {
+                        addDistinct(result, x, c, distinct);
+                    }
+                    ra++;
+                    hasX = a.hasNext();
+                    x = hasX ? a.next() : null;
+                } while (hasX && c.compare(x, key) == 0);
+                if (keepB) {
+                    for (int k = ra; k < rb; k++) {
+                        addDistinct(result, runB.get(k), c, distinct);
+                    }
+                }
+                runB.clear();
+            }
+        }
+        while (keepA && hasX) {
+            addDistinct(result, x, c, distinct);
+            hasX = a.hasNext();
+            x = hasX ? a.next() : null;
+        }
+        while (keepB && hasY) {
+            addDistinct(result, y, c, distinct);
+            hasY = b.hasNext();
+            y = hasY ? b.next() : null;
+        }
+        return result;
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Adds the elements of a matched pair of runs to the result.
+     */
+    private static <O> void addRun(final List<O> result,
+                                   final List<? extends O> a, final int i, final int ra,
+                                   final List<? extends O> b, final int j, final int rb,
+                                   final Operation op, final boolean distinct) {
+        final int count = op.cardinality(ra, rb);
+        if (count == 0) {
+            return;
+        }
+        if (distinct) {
+            result.add(ra >= rb || op == Operation.INTERSECTION ? a.get(i) : b.get(j));
+            return;
+        }
+        switch (op) {
+        case UNION:
+            // all of the run in a, followed by the excess of the run in b
+            addAll(result, a, i, i + ra);
+            addAll(result, b, j + ra, j + count);
+            break;
+        case INTERSECTION:
+            addAll(result, a, i, i + count);
+            break;
+        default:
+            // disjunction and subtract keep the excess of the longer run
+            if (ra > rb) {
+                addAll(result, a, i + rb, i + ra);
+            } else {
+                addAll(result, b, j + ra, j + rb);
+            }
+            break;
+        }
+    }
+
+    /**
+     * Adds a range of elements that has no counterpart in the other input.
+     */
+    private static <O> void addRange(final List<O> result, final List<? extends O> list, final int from,
+                                     final int to, final Comparator<? super O> c, final boolean distinct) {
+        if (!distinct) {
+            addAll(result, list, from, to);
+            return;
+        }
+        for (int k = from; k < to; k++) {
+            addDistinct(result, list.get(k), c, true);
+        }
+    }
+
+    private static <O> void addAll(final List<O> result, final List<? extends O> list, final int from, final int to) {
+        for (int k = from; k < to; k++) {
+            result.add(list.get(k));
+        }
+    }
+
+    /**
+     * Adds an element, skipping it in distinct mode if it equals the last element added.
+     */
+    private static <O> void addDistinct(final List<O> result, final O obj, final Comparator<? super O> c,
+                                        final boolean distinct) {
+        if (distinct && !result.isEmpty() && c.compare(result.get(result.size() - 1), obj) == 0) {
+            return;
+        }
+        result.add(obj);
+    }
+
+    /**
+     * Returns the number of elements from {@code from} on that compare as equal to the key.
+     */
+    private static <O> int runLength(final List<? extends O> list, final int from, final int to, final O key,
+                                     final Comparator<? super O> c) {
+        int k = from + 1;
+        while (k < to && c.compare(list.get(k), key) == 0) {
+            k++;
+        }
+        return k - from;
+    }
+
+    /**
+     * Finds the first index in {@code [from, to)} whose element is not less than the key,
+     * probing at exponentially growing distances before a binary search.
+     *
+     * @return the index found, or {@code to} if every element is less than the key
+     */
+    static <O> int gallop(final List<? extends O> list, final int from, final int to, final O key,
+                          final Comparator<? super O> c) {
+        int lo = from;
+        int hi = from;
+        int step = 1;
+        while (hi < to && c.compare(list.get(hi), key) < 0) {
+            lo = hi + 1;
+            hi = lo + step;
+            step <<= 1;
+        }
+        if (hi > to) {
+            hi = to;
+        }
+        // every element before lo is less than the key, and hi is to or not less than the key
+        while (lo < hi) {
+            final int mid = lo + hi >>> 1;
+            if (c.compare(list.get(mid), key) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Estimates the size of the result, without exceeding its upper bound.
+     */
+    private static int initialCapacity(final int n, final int m, final Operation op) {
+        switch (op) {
+        case INTERSECTION:
+            return Math.min(n, m);
+        case SUBTRACT:
+            return n;
+        default:
+            return Math.max(n, m);
+        }
+    }
+
+}
@@ -26,6 +26,7 @@ import java.util.Iterator;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.function.ObjIntConsumer;
 
 import org.apache.commons.collections4.Bag;
 import org.apache.commons.collections4.set.UnmodifiableSet;
@@ -276,12 +277,19 @@ public abstract class AbstractMapBag<E> implements Bag<E> {
 
     /**
      * Invokes {@link #add(Object)} for each element in the given collection.
+     * <p>
+     * The occurrences of a bag are added per distinct element instead, in
+     * O(u) for u distinct elements whatever their counts.
      *
      * @param coll the collection to add
-     * @return <code>true</code> if this call changed the bag
+     * @return <code>true</code> if this call added an element that was not already
+     *   in the <code>uniqueSet</code>
      */
     @Override
     public boolean addAll(final Collection<? extends E> coll) {
+        if (coll instanceof Bag) {
+            return addAll((Bag<? extends E>) coll);
+        }
         boolean changed = false;
         final Iterator<? extends E> i = coll.iterator();
         while (i.hasNext()) {
@@ -291,6 +299,68 @@ public abstract class AbstractMapBag<E> implements Bag<E> {
         return changed;
     }
 
+    /**
+     * Adds the occurrences of the elements of a bag, per distinct element.
+     * @see #addAll(Collection)
+     *
+     * @param other the bag to add
+     * @return <code>true</code> if this call added an element that was not already
+     *   in the <code>uniqueSet</code>
+     */
+    boolean addAll(final Bag<? extends E> other) {
+        final int unique = map.size();
+        final int before = size;
+        // counts of elements already present are raised in place, so this bag may be the other one
+        other.forEachEntry((element, count) -> {
+            final MutableInteger mut = map.get(element);
+            if (mut == null) {
+                map.put(element, new MutableInteger(count));
+            } else {
+                mut.value += count;
+            }
+            size += count;
+        });
+        if (size != before) {
+            modCount++;
+        }
+        return map.size() != unique;
+    }
+
+    /**
+     * Raises the count of each element of this bag to its count in the given
+     * bag, making this bag the union of both, which takes the larger count of
+     * every element.
+     * <p>
+     * This runs in O(u) for the u distinct elements of the given bag, whose
+     * counts are read by {@link Bag#forEachEntry(ObjIntConsumer)}.
+     *
+     * @param other the bag to merge into this bag, must not be null
+     * @return <code>true</code> if this call changed the bag
+     * @throws NullPointerException if the other bag is null
+     * @since 4.5
+     */
+    public boolean union(final Bag<? extends E> other) {
+        if (other == null) {
+            throw new NullPointerException("The bag must not be null");
+        }
+        final int before = size;
+        other.forEachEntry((element, count) -> {
+            final MutableInteger mut = map.get(element);
+            if (mut == null) {
+                map.put(element, new MutableInteger(count));
+                size += count;
+            } else if (mut.value < count) {
+                size += count - mut.value;
+                mut.value = count;
+            }
+        });
+        if (size != before) {
+            modCount++;
+            return true;
+        }
+        return false;
+    }
+
     //-----------------------------------------------------------------------
     /**
      * Clears the bag by clearing the underlying map.
@@ -350,12 +420,18 @@ public abstract class AbstractMapBag<E> implements Bag<E> {
     /**
      * Removes objects from the bag according to their count in the specified
      * collection.
+     * <p>
+     * The counts of a bag are subtracted per distinct element instead, in
+     * O(u) for u distinct elements whatever their counts.
      *
      * @param coll the collection to use
      * @return true if the bag changed
      */
     @Override
     public boolean removeAll(final Collection<?> coll) {
+        if (coll instanceof Bag) {
+            return removeAll((Bag<?>) coll);
+        }
         boolean result = false;
         if (coll != null) {
             final Iterator<?> i = coll.iterator();
@@ -367,6 +443,42 @@ public abstract class AbstractMapBag<E> implements Bag<E> {
         return result;
     }
 
+    /**
+     * Subtracts the count of each element of the given bag from its count in
+     * this bag, per distinct element.
+     * @see #removeAll(Collection)
+     *
+     * @param other the bag to subtract
+     * @return <code>true</code> if this call changed the bag
+     */
+    boolean removeAll(final Bag<?> other) {
+        if (other == this) {
+            if (map.isEmpty()) {
+                return false;
+            }
+            clear();
+            return true;
+        }
+        final int before = size;
+        other.forEachEntry((element, count) -> {
+            final MutableInteger mut = map.get(element);
+            if (mut != null) {
+                if (count < mut.value) {
+                    mut.value -= count;
+                    size -= count;
+                } else {
+                    map.remove(element);
+                    size -= mut.value;
+                }
+            }
+        });
+        if (size != before) {
+            modCount++;
+            return true;
+        }
+        return false;
+    }
+
     /**
      * Remove any members of the bag that are not in the given bag, respecting
      * cardinality.
@@ -391,23 +503,27 @@ public abstract class AbstractMapBag<E> implements Bag<E> {
      * @return <code>true</code> if this call changed the collection
      */
     boolean retainAll(final Bag<?> other) {
-        boolean result = false;
-        final Bag<E> excess = new HashBag<>();
-        final Iterator<E> i = uniqueSet().iterator();
-        while (i.hasNext()) {
-            final E current = i.next();
-            final int myCount = getCount(current);
-            final int otherCount = other.getCount(current);
-            if (1 <= otherCount && otherCount <= myCount) {
-                excess.add(current, myCount - otherCount);
-            } else {
-                excess.add(current, myCount);
+        final int before = size;
+        // lower the counts in place, making this bag the intersection of both
+        final Iterator<Entry<E, MutableInteger>> it = map.entrySet().iterator();
+        while (it.hasNext()) {
+            final Entry<E, MutableInteger> entry = it.next();
+            final MutableInteger mut = entry.getValue();
+            final int otherCount = other.getCount(entry.getKey());
+            if (otherCount < mut.value) {
+                size -= mut.value - otherCount;
+                if (otherCount == 0) {
+                    it.remove();
+                } else {
+                    mut.value = otherCount;
+                }
             }
         }
-        if (!excess.isEmpty()) {
-            result = removeAll(excess);
+        if (size != before) {
+            modCount++;
+            return true;
         }
-        return result;
+        return false;
     }
 
     //-----------------------------------------------------------------------
@@ -450,10 +566,9 @@ public abstract class AbstractMapBag<E> implements Bag<E> {
     public Object[] toArray() {
         final Object[] result = new Object[size()];
         int i = 0;
-        final Iterator<E> it = map.keySet().iterator();
-        while (it.hasNext()) {
-            final E current = it.next();
-            for (int index = getCount(current); index > 0; index--) {
+        for (final Entry<E, MutableInteger> entry : map.entrySet()) {
+            final E current = entry.getKey();
+            for (int index = entry.getValue().value; index > 0; index--) {
                 result[i++] = current;
             }
         }
@@ -482,10 +597,9 @@ public abstract class AbstractMapBag<E> implements Bag<E> {
         }
 
         int i = 0;
-        final Iterator<E> it = map.keySet().iterator();
-        while (it.hasNext()) {
-            final E current = it.next();
-            for (int index = getCount(current); index > 0; index--) {
+        for (final Entry<E, MutableInteger> entry : map.entrySet()) {
+            final E current = entry.getKey();
+            for (int index = entry.getValue().value; index > 0; index--) {
                 // unsafe, will throw ArrayStoreException if types are not compatible, see javadoc
                 @SuppressWarnings("unchecked")
                 final T unchecked = (T) current;
@@ -511,6 +625,29 @@ public abstract class AbstractMapBag<E> implements Bag<E> {
         return uniqueSet;
     }
 
+    /**
+     * Performs the given action for each distinct element of the bag and its
+     * count, read from the entries of the underlying map.
+     *
+     * @param action  the action to perform, must not be null
+     * @throws NullPointerException if the action is null
+     * @throws ConcurrentModificationException if the action modifies the bag
+     * @since 4.5
+     */
+    @Override
+    public void forEachEntry(final ObjIntConsumer<? super E> action) {
+        if (action == null) {
+            throw new NullPointerException("The action must not be null");
+        }
+        final int mods = modCount;
+        for (final Entry<E, MutableInteger> entry : map.entrySet()) {
+            action.accept(entry.getKey(), entry.getValue().value);
+        }
+        if (mods != modCount) {
+            throw new ConcurrentModificationException();
+        }
+    }
+
     //-----------------------------------------------------------------------
     /**
      * Write the map out using a custom routine.
@@ -566,8 +703,8 @@ public abstract class AbstractMapBag<E> implements Bag<E> {
         if (other.size() != size()) {
             return false;
         }
-        for (final E element : map.keySet()) {
-            if (other.getCount(element) != getCount(element)) {
+        for (final Entry<E, MutableInteger> entry : map.entrySet()) {
+            if (other.getCount(entry.getKey()) != entry.getValue().value) {
                 return false;
             }
         }
@@ -606,13 +743,12 @@ public abstract class AbstractMapBag<E> implements Bag<E> {
         }
         final StringBuilder buf = new StringBuilder();
         buf.append('[');
-        final Iterator<E> it = uniqueSet().iterator();
+        final Iterator<Entry<E, MutableInteger>> it = map.entrySet().iterator();
         while (it.hasNext()) {
-            final Object current = it.next();
-            final int count = getCount(current);
-            buf.append(count);
+            final Entry<E, MutableInteger> entry = it.next();
+            buf.append(entry.getValue().value);
             buf.append(':');
-            buf.append(current);
+            buf.append(entry.getKey());
             if (it.hasNext()) {
                 buf.append(',');
             }
@@ -0,0 +1,659 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.collections4.bag;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.lang.reflect.Array;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.function.ObjIntConsumer;
+
+import org.apache.commons.collections4.Bag;
+import org.apache.commons.collections4.map.ObjectIntHashMap;
+import org.apache.commons.collections4.map.ObjectIntHashMap.EntryIterator;
+import org.apache.commons.collections4.set.UnmodifiableSet;
+
+/**
+ * Implements {@code Bag}, using an {@link ObjectIntHashMap} to provide the
+ * data storage.
+ * <p>
+ * A {@link HashBag} keeps a map entry and a separate count object for every
+ * distinct element. This bag keeps the elements and their counts in two
+ * parallel arrays instead, so a distinct element costs about a dozen bytes and
+ * adding a new element allocates nothing. It is intended for bags holding many
+ * distinct elements; the {@link #CompactHashBag(int)} constructor avoids
+ * resizing when their number is known.
+ * <p>
+ * Apart from its storage, this bag behaves like a {@link HashBag}, including its
+ * fail-fast iterators. It is important to read the interface javadoc carefully
+ * as several methods violate the {@link Collection} interface specification.
+ *
+ * @param <E> the type of elements in this bag
+ * @since 4.5
+ */
+public class CompactHashBag<E> implements Bag<E>, Serializable {
+
+    /** Serial version lock */
+    private static final long serialVersionUID = 20261018L;
+
+    /** The counts of the distinct elements */
+    private transient ObjectIntHashMap<E> map;
+    /** The current total size of the bag */
+    private transient int size;
+    /** The modification count for fail fast iterators */
+    private transient int modCount;
+    /** Unique view of the elements */
+    private transient Set<E> uniqueSet;
+
+    /**
+     * Constructs an empty {@link CompactHashBag}.
+     */
+    public CompactHashBag() {
+        map = new ObjectIntHashMap<>();
+    }
+
+    /**
+     * Constructs an empty {@link CompactHashBag} able to hold the given number
+     * of distinct elements without resizing.
+     *
+     * @param expectedSize  the expected number of distinct elements
+     * @throws IllegalArgumentException if the expected size is negative
+     */
+    public CompactHashBag(final int expectedSize) {
+        map = new ObjectIntHashMap<>(expectedSize);
+    }
+
+    /**
+     * Constructs a bag containing all the members of the given collection,
+     * sized for the collection up front.
+     *
+     * @param coll  a collection to copy into this bag
+     */
+    public CompactHashBag(final Collection<? extends E> coll) {
+        this(coll instanceof Bag ? ((Bag<?>) coll).uniqueSet().size() : coll.size());
+        if (coll instanceof Bag) {
+            final Bag<? extends E> bag = (Bag<? extends E>) coll;
+            for (final E element : bag.uniqueSet()) {
+                add(element, bag.getCount(element));
+            }
+        } else {
+            addAll(coll);
+        }
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Returns the number of elements in this bag.
+     *
+     * @return current size of the bag
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns true if the underlying table is empty.
+     *
+     * @return true if bag is empty
+     */
+    @Override
+    public boolean isEmpty() {
+        return map.isEmpty();
+    }
+
+    /**
+     * Returns the number of occurrence of the given element in this bag by
+     * looking up its count in the underlying table.
+     *
+     * @param object the object to search for
+     * @return the number of occurrences of the object, zero if not found
+     */
+    @Override
+    public int getCount(final Object object) {
+        return map.get(object);
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Determines if the bag contains the given element by checking if the
+     * underlying table contains the element as a key.
+     *
+     * @param object the object to search for
+     * @return true if the bag contains the given element
+     */
+    @Override
+    public boolean contains(final Object object) {
+        return map.containsKey(object);
+    }
+
+    /**
+     * Determines if the bag contains the given elements.
+     *
+     * @param coll the collection to check against
+     * @return <code>true</code> if the Bag contains all the collection
+     */
+    @Override
+    public boolean containsAll(final Collection<?> coll) {
+        if (coll instanceof Bag) {
+            return containsAll((Bag<?>) coll);
+        }
+        return containsAll(new CompactHashBag<>(coll));
+    }
+
+    /**
+     * Returns <code>true</code> if the bag contains all elements in the given
+     * collection, respecting cardinality.
+     *
+     * @param other the bag to check against
+     * @return <code>true</code> if the Bag contains all the collection
+     */
+    boolean containsAll(final Bag<?> other) {
+        final Iterator<?> it = other.uniqueSet().iterator();
+        while (it.hasNext()) {
+            final Object current = it.next();
+            if (getCount(current) < other.getCount(current)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Gets an iterator over the bag elements. Elements present in the Bag more
+     * than once will be returned repeatedly.
+     *
+     * @return the iterator
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return new BagIterator<>(this);
+    }
+
+    /**
+     * Inner class iterator for the Bag.
+     */
+    private static class BagIterator<E> implements Iterator<E> {
+        private final CompactHashBag<E> parent;
+        private final EntryIterator<E> entryIterator;
+        private int itemCount;
+        private final int mods;
+        private boolean canRemove;
+
+        /**
+         * Constructor.
+         *
+         * @param parent the parent bag
+         */
+        BagIterator(final CompactHashBag<E> parent) {
+            this.parent = parent;
+            this.entryIterator = parent.map.entryIterator();
+            this.mods = parent.modCount;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean hasNext() {
+            return itemCount > 0 || entryIterator.hasNext();
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public E next() {
+            if (parent.modCount != mods) {
+                throw new ConcurrentModificationException();
+            }
+            if (itemCount == 0) {
+                entryIterator.next();
+                itemCount = entryIterator.getValue();
+            }
+            canRemove = true;
+            itemCount--;
+            return entryIterator.getKey();
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void remove() {
+            if (parent.modCount != mods) {
+                throw new ConcurrentModificationException();
+            }
+            if (canRemove == false) {
+                throw new IllegalStateException();
+            }
+            final int count = entryIterator.getValue();
+            if (count > 1) {
+                entryIterator.setValue(count - 1);
+            } else {
+                entryIterator.remove();
+            }
+            parent.size--;
+            canRemove = false;
+        }
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Adds a new element to the bag, incrementing its count in the underlying table.
+     *
+     * @param object the object to add
+     * @return <code>true</code> if the object was not already in the <code>uniqueSet</code>
+     */
+    @Override
+    public boolean add(final E object) {
+        return add(object, 1);
+    }
+
+    /**
+     * Adds a new element to the bag, incrementing its count in the underlying table.
+     *
+     * @param object the object to search for
+     * @param nCopies the number of copies to add
+     * @return <code>true</code> if the object was not already in the <code>uniqueSet</code>
+     */
+    @Override
+    public boolean add(final E object, final int nCopies) {
+        modCount++;
+        if (nCopies > 0) {
+            size += nCopies;
+            return map.addTo(object, nCopies) == nCopies;
+        }
+        return false;
+    }
+
+    /**
+     * Invokes {@link #add(Object)} for each element in the given collection.
+     *
+     * @param coll the collection to add
+     * @return <code>true</code> if this call changed the bag
+     */
+    @Override
+    public boolean addAll(final Collection<? extends E> coll) {
+        boolean changed = false;
+        final Iterator<? extends E> i = coll.iterator();
+        while (i.hasNext()) {
+            final boolean added = add(i.next());
+            changed = changed || added;
+        }
+        return changed;
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Clears the bag by clearing the underlying table.
+     */
+    @Override
+    public void clear() {
+        modCount++;
+        map.clear();
+        size = 0;
+    }
+
+    /**
+     * Removes all copies of the specified object from the bag.
+     *
+     * @param object the object to remove
+     * @return true if the bag changed
+     */
+    @Override
+    public boolean remove(final Object object) {
+        if (!map.containsKey(object)) {
+            return false;
+        }
+        modCount++;
+        size -= map.remove(object);
+        return true;
+    }
+
+    /**
+     * Removes a specified number of copies of an object from the bag.
+     *
+     * @param object the object to remove
+     * @param nCopies the number of copies to remove
+     * @return true if the bag changed
+     */
+    @Override
+    public boolean remove(final Object object, final int nCopies) {
+        final int count = map.get(object);
+        if (count == 0) {
+            return false;
+        }
+        if (nCopies <= 0) {
+            return false;
+        }
+        modCount++;
+        if (nCopies < count) {
+            @SuppressWarnings("unchecked") // the object has a count, so it is an element
+            final E element = (E) object;
+            map.addTo(element, -nCopies);
+            size -= nCopies;
+        } else {
+            map.remove(object);
+            size -= count;
+        }
+        return true;
+    }
+
+    /**
+     * Removes objects from the bag according to their count in the specified
+     * collection.
+     *
+     * @param coll the collection to use
+     * @return true if the bag changed
+     */
+    @Override
+    public boolean removeAll(final Collection<?> coll) {
+        boolean result = false;
+        if (coll != null) {
+            final Iterator<?> i = coll.iterator();
+            while (i.hasNext()) {
+                final boolean changed = remove(i.next(), 1);
+                result = result || changed;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Remove any members of the bag that are not in the given bag, respecting
+     * cardinality.
+     *
+     * @param coll the collection to retain
+     * @return true if this call changed the collection
+     */
+    @Override
+    public boolean retainAll(final Collection<?> coll) {
+        if (coll instanceof Bag) {
+            return retainAll((Bag<?>) coll);
+        }
+        return retainAll(new CompactHashBag<>(coll));
+    }
+
+    /**
+     * Remove any members of the bag that are not in the given bag, respecting
+     * cardinality.
+     * @see #retainAll(Collection)
+     *
+     * @param other the bag to retain
+     * @return <code>true</code> if this call changed the collection
+     */
+    boolean retainAll(final Bag<?> other) {
+        boolean changed = false;
+        // the counts are lowered in place, which is not a structural change of the table
+        final EntryIterator<E> it = map.entryIterator();
+        while (it.hasNext()) {
+            final E current = it.next();
+            final int myCount = it.getValue();
+            final int otherCount = other.getCount(current);
+            if (otherCount < myCount) {
+                if (otherCount > 0) {
+                    it.setValue(otherCount);
+                } else {
+                    it.remove();
+                }
+                size -= myCount - otherCount;
+                changed = true;
+            }
+        }
+        if (changed) {
+            modCount++;
+        }
+        return changed;
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Returns an array of all of this bag's elements.
+     *
+     * @return an array of all of this bag's elements
+     */
+    @Override
+    public Object[] toArray() {
+        final Object[] result = new Object[size()];
+        int i = 0;
+        final EntryIterator<E> it = map.entryIterator();
+        while (it.hasNext()) {
+            final E current = it.next();
+            for (int index = it.getValue(); index > 0; index--) {
+                result[i++] = current;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns an array of all of this bag's elements.
+     * If the input array has more elements than are in the bag,
+     * trailing elements will be set to null.
+     *
+     * @param <T> the type of the array elements
+     * @param array the array to populate
+     * @return an array of all of this bag's elements
+     * @throws ArrayStoreException if the runtime type of the specified array is not
+     *   a supertype of the runtime type of the elements in this list
+     * @throws NullPointerException if the specified array is null
+     */
+    @Override
+    public <T> T[] toArray(T[] array) {
+        final int size = size();
+        if (array.length < size) {
+            @SuppressWarnings("unchecked") // safe as both are of type T
+            final T[] unchecked = (T[]) Array.newInstance(array.getClass().getComponentType(), size);
+            array = unchecked;
+        }
+
+        int i = 0;
+        final EntryIterator<E> it = map.entryIterator();
+        while (it.hasNext()) {
+            final E current = it.next();
+            for (int index = it.getValue(); index > 0; index--) {
+                // unsafe, will throw ArrayStoreException if types are not compatible, see javadoc
+                @SuppressWarnings("unchecked")
+                final T unchecked = (T) current;
+                array[i++] = unchecked;
+            }
+        }
+        while (i < array.length) {
+            array[i++] = null;
+        }
+        return array;
+    }
+
+    /**
+     * Returns an unmodifiable view of the distinct elements of this bag.
+     *
+     * @return the set of unique elements in this bag
+     */
+    @Override
+    public Set<E> uniqueSet() {
+        if (uniqueSet == null) {
+            uniqueSet = UnmodifiableSet.<E> unmodifiableSet(new KeySet<>(map));
+        }
+        return uniqueSet;
+    }
+
+    /**
+     * Performs the given action for each distinct element of the bag and its
+     * count, read from the underlying table.
+     *
+     * @param action  the action to perform, must not be null
+     * @throws NullPointerException if the action is null
+     * @throws ConcurrentModificationException if the action modifies the bag
+     */
+    @Override
+    public void forEachEntry(final ObjIntConsumer<? super E> action) {
+        if (action == null) {
+            throw new NullPointerException("The action must not be null");
+        }
+        final int mods = modCount;
+        map.forEach(action);
+        if (mods != modCount) {
+            throw new ConcurrentModificationException();
+        }
+    }
+
+    /**
+     * Inner class KeySet, a view of the keys of the underlying table.
+     */
+    private static class KeySet<E> extends AbstractSet<E> {
+
+        private final ObjectIntHashMap<E> map;
+
+        /**
+         * Constructor.
+         * @param map  the table to view
+         */
+        KeySet(final ObjectIntHashMap<E> map) {
+            this.map = map;
+        }
+
+        @Override
+        public Iterator<E> iterator() {
+            return map.keyIterator();
+        }
+
+        @Override
+        public boolean contains(final Object key) {
+            return map.containsKey(key);
+        }
+
+        @Override
+        public int size() {
+            return map.size();
+        }
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Write the bag out using a custom routine.
+     *
+     * @param out  the output stream
+     * @throws IOException if an error occurs while writing to the stream
+     */
+    private void writeObject(final ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(map.size());
+        final EntryIterator<E> it = map.entryIterator();
+        while (it.hasNext()) {
+            out.writeObject(it.next());
+            out.writeInt(it.getValue());
+        }
+    }
+
+    /**
+     * Read the bag in using a custom routine.
+     *
+     * @param in  the input stream
+     * @throws IOException if an error occurs while reading from the stream
+     * @throws ClassNotFoundException if an object read from the stream can not be loaded
+     */
+    private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        final int entrySize = in.readInt();
+        map = new ObjectIntHashMap<>(entrySize);
+        for (int i = 0; i < entrySize; i++) {
+            @SuppressWarnings("unchecked") // This will fail at runtime if the stream is incorrect
+            final E obj = (E) in.readObject();
+            final int count = in.readInt();
+            map.put(obj, count);
+            size += count;
+        }
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Compares this Bag to another. This Bag equals another Bag if it contains
+     * the same number of occurrences of the same elements.
+     *
+     * @param object the Bag to compare to
+     * @return true if equal
+     */
+    @Override
+    public boolean equals(final Object object) {
+        if (object == this) {
+            return true;
+        }
+        if (object instanceof Bag == false) {
+            return false;
+        }
+        final Bag<?> other = (Bag<?>) object;
+        if (other.size() != size()) {
+            return false;
+        }
+        final EntryIterator<E> it = map.entryIterator();
+        while (it.hasNext()) {
+            if (other.getCount(it.next()) != it.getValue()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets a hash code for the Bag compatible with the definition of equals.
+     * The hash code is defined as the sum total of a hash code for each
+     * element. The per element hash code is defined as
+     * <code>(e==null ? 0 : e.hashCode()) ^ noOccurances)</code>. This hash code
+     * is compatible with the Set interface.
+     *
+     * @return the hash code of the Bag
+     */
+    @Override
+    public int hashCode() {
+        int total = 0;
+        final EntryIterator<E> it = map.entryIterator();
+        while (it.hasNext()) {
+            final E element = it.next();
+            total += (element == null ? 0 : element.hashCode()) ^ it.getValue();
+        }
+        return total;
+    }
+
+    /**
+     * Implement a toString() method suitable for debugging.
+     *
+     * @return a debugging toString
+     */
+    @Override
+    public String toString() {
+        if (size() == 0) {
+            return "[]";
+        }
+        final StringBuilder buf = new StringBuilder();
+        buf.append('[');
+        final EntryIterator<E> it = map.entryIterator();
+        while (it.hasNext()) {
+            final E current = it.next();
+            buf.append(it.getValue());
+            buf.append(':');
+            buf.append(current);
+            if (it.hasNext()) {
+                buf.append(',');
+            }
+        }
+        buf.append(']');
+        return buf.toString();
+    }
+
+}
@@ -17,6 +17,7 @@
 package org.apache.commons.collections4.bag;
 
 import java.util.Set;
+import java.util.function.ObjIntConsumer;
 
 import org.apache.commons.collections4.Bag;
 import org.apache.commons.collections4.Predicate;
@@ -122,4 +123,9 @@ public class PredicatedBag<E> extends PredicatedCollection<E> implements Bag<E>
         return decorated().getCount(object);
     }
 
+    @Override
+    public void forEachEntry(final ObjIntConsumer<? super E> action) {
+        decorated().forEachEntry(action);
+    }
+
 }
@@ -0,0 +1,312 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.collections4.bitmap;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * A container of at most {@link #MAX_ARRAY_SIZE} values, kept in a sorted array.
+ *
+ * @since 4.5
+ */
+final class ArrayContainer extends Container {
+
+    /** The initial capacity of the array */
+    private static final int INITIAL_CAPACITY = 4;
+
+    /** The sorted values */
+    private char[] values;
+    /** The number of values */
+    private int size;
+
+    ArrayContainer() {
+        this(new char[INITIAL_CAPACITY], 0);
+    }
+
+    ArrayContainer(final char[] values, final int size) {
+        this.values = values;
+        this.size = size;
+    }
+
+    /**
+     * Copies the values of a container that holds at most {@link #MAX_ARRAY_SIZE} values.
+     */
+    static ArrayContainer of(final Container container) {
+        final ArrayContainer array = new ArrayContainer(new char[container.cardinality()], 0);
+        container.forEach(0, array::append);
+        return array;
+    }
+
+    static int sizeInBytes(final int cardinality) {
+        return 2 * cardinality;
+    }
+
+    //-----------------------------------------------------------------------
+    @Override
+    int cardinality() {
+        return size;
+    }
+
+    @Override
+    boolean contains(final int low) {
+        return Arrays.binarySearch(values, 0, size, (char) low) >= 0;
+    }
+
+    @Override
+    Container add(final int low) {
+        int index = Arrays.binarySearch(values, 0, size, (char) low);
+        if (index >= 0) {
+            return this;
+        }
+        if (size == MAX_ARRAY_SIZE) {
+            return toBitmap().add(low);
+        }
+        index = -index - 1;
+        if (size == values.length) {
+            values = Arrays.copyOf(values, Math.min(MAX_ARRAY_SIZE, size + (size >> 1) + 1));
+        }
+        System.arraycopy(values, index, values, index + 1, size - index);
+        values[index] = (char) low;
+        size++;
+        return this;
+    }
+
+    @Override
+    Container remove(final int low) {
+        final int index = Arrays.binarySearch(values, 0, size, (char) low);
+        if (index >= 0) {
+            System.arraycopy(values, index + 1, values, index, size - index - 1);
+            size--;
+        }
+        return this;
+    }
+
+    /**
+     * Appends a value greater than all the values held.
+     */
+    void append(final int low) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, Math.min(MAX_ARRAY_SIZE, size + (size >> 1) + 1));
+        }
+        values[size++] = (char) low;
+    }
+
+    /**
+     * Returns the value at an index of the sorted array.
+     */
+    int value(final int index) {
+        return values[index];
+    }
+
+    @Override
+    int nextValue(final int from) {
+        if (from >= MAX_VALUES) {
+            return -1;
+        }
+        int index = Arrays.binarySearch(values, 0, size, (char) from);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return index < size ? values[index] : -1;
+    }
+
+    @Override
+    void forEach(final int high, final IntConsumer action) {
+        for (int i = 0; i < size; i++) {
+            action.accept(high | values[i]);
+        }
+    }
+
+    @Override
+    int numberOfRuns() {
+        int runs = 0;
+        for (int i = 0; i < size; i++) {
+            if (i == 0 || values[i] != values[i - 1] + 1) {
+                runs++;
+            }
+        }
+        return runs;
+    }
+
+    @Override
+    int sizeInBytes() {
+        return sizeInBytes(size);
+    }
+
+    @Override
+    BitmapContainer toBitmap() {
+        final BitmapContainer bitmap = new BitmapContainer();
+        for (int i = 0; i < size; i++) {
+            bitmap.set(values[i]);
+        }
+        return bitmap;
+    }
+
+    @Override
+    Container copy() {
+        return new ArrayContainer(Arrays.copyOf(values, Math.max(size, INITIAL_CAPACITY)), size);
+    }
+
+    //-----------------------------------------------------------------------
+    @Override
+    int andCardinality(final Container other) {
+        if (other instanceof ArrayContainer) {
+            final ArrayContainer that = (ArrayContainer) other;
+            int count = 0;
+            int i = 0;
+            int j = 0;
+            while (i < size && j < that.size) {
+                final char x = values[i];
+                final char y = that.values[j];
+                if (x < y) {
+                    i++;
+                } else if (x > y) {
+                    j++;
+                } else {
+                    count++;
+                    i++;
+                    j++;
+                }
+            }
+            return count;
+        }
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (other.contains(values[i])) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    Container and(final Container other) {
+        final char[] result = new char[Math.min(size, other.cardinality())];
+        int k = 0;
+        if (other instanceof ArrayContainer) {
+            final ArrayContainer that = (ArrayContainer) other;
+            int i = 0;
+            int j = 0;
+            while (i < size && j < that.size) {
+                final char x = values[i];
+                final char y = that.values[j];
+                if (x < y) {
+                    i++;
+                } else if (x > y) {
+                    j++;
+                } else {
+                    result[k++] = x;
+                    i++;
+                    j++;
+                }
+            }
+        } else {
+            for (int i = 0; i < size && k < result.length; i++) {
+                if (other.contains(values[i])) {
+                    result[k++] = values[i];
+                }
+            }
+        }
+        return new ArrayContainer(result, k);
+    }
+
+    @Override
+    Container andNot(final Container other) {
+        final char[] result = new char[size];
+        int k = 0;
+        for (int i = 0; i < size; i++) {
+            if (!other.contains(values[i])) {
+                result[k++] = values[i];
+            }
+        }
+        return new ArrayContainer(result, k);
+    }
+
+    @Override
+    Container or(final Container other) {
+        if (!(other instanceof ArrayContainer)) {
+            return other.or(this);
+        }
+        final ArrayContainer that = (ArrayContainer) other;
+        if (size + that.size > MAX_ARRAY_SIZE) {
+            return toBitmap().ior(that);
+        }
+        final char[] result = new char[size + that.size];
+        int k = 0;
+        int i = 0;
+        int j = 0;
+        while (i < size && j < that.size) {
+            final char x = values[i];
+            final char y = that.values[j];
+            if (x <= y) {
+                result[k++] = x;
+                i++;
+                if (x == y) {
+                    j++;
+                }
+            } else {
+                result[k++] = y;
+                j++;
+            }
+        }
+        while (i < size) {
+            result[k++] = values[i++];
+        }
+        while (j < that.size) {
+            result[k++] = that.values[j++];
+        }
+        return new ArrayContainer(result, k);
+    }
+
+    @Override
+    Container xor(final Container other) {
+        if (!(other instanceof ArrayContainer)) {
+            return other.xor(this);
+        }
+        final ArrayContainer that = (ArrayContainer) other;
+        if (size + that.size > MAX_ARRAY_SIZE) {
+            return toBitmap().ixor(that);
+        }
+        final char[] result = new char[size + that.size];
+        int k = 0;
+        int i = 0;
+        int j = 0;
+        while (i < size && j < that.size) {
+            final char x = values[i];
+            final char y = that.values[j];
+            if (x < y) {
+                result[k++] = x;
+                i++;
+            } else if (x > y) {
+                result[k++] = y;
+                j++;
+            } else {
+                i++;
+                j++;
+            }
+        }
+        while (i < size) {
+            result[k++] = values[i++];
+        }
+        while (j < that.size) {
+            result[k++] = that.values[j++];
+        }
+        return new ArrayContainer(result, k);
+    }
+
+}
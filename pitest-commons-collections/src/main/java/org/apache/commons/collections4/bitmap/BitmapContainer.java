@@ -0,0 +1,370 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.collections4.bitmap;
+
+import java.util.function.IntConsumer;
+
+/**
+ * A container of more than {@link #MAX_ARRAY_SIZE} values, kept as one bit per
+ * possible value.
+ * <p>
+ * The in-place operations work word by word on the bits of this container,
+ * and only allocate when the result is small enough to become an array container.
+ *
+ * @since 4.5
+ */
+final class BitmapContainer extends Container {
+
+    /** The number of words */
+    private static final int WORDS = MAX_VALUES / Long.SIZE;
+
+    /** Range operation setting bits */
+    private static final int SET = 0;
+    /** Range operation clearing bits */
+    private static final int CLEAR = 1;
+    /** Range operation flipping bits */
+    private static final int FLIP = 2;
+
+    /** The bits */
+    private final long[] words;
+    /** The number of bits set */
+    private int cardinality;
+
+    BitmapContainer() {
+        this(new long[WORDS], 0);
+    }
+
+    private BitmapContainer(final long[] words, final int cardinality) {
+        this.words = words;
+        this.cardinality = cardinality;
+    }
+
+    //-----------------------------------------------------------------------
+    @Override
+    int cardinality() {
+        return cardinality;
+    }
+
+    @Override
+    boolean contains(final int low) {
+        return (words[low >>> 6] & 1L << low) != 0;
+    }
+
+    /**
+     * Sets a bit, without converting the container.
+     */
+    void set(final int low) {
+        final long word = words[low >>> 6];
+        final long updated = word | 1L << low;
+        words[low >>> 6] = updated;
+        cardinality += (int) ((word ^ updated) >>> low);
+    }
+
+    @Override
+    Container add(final int low) {
+        set(low);
+        return this;
+    }
+
+    @Override
+    Container remove(final int low) {
+        final long word = words[low >>> 6];
+        final long updated = word & ~(1L << low);
+        words[low >>> 6] = updated;
+        cardinality -= (int) ((word ^ updated) >>> low);
+        return normalize();
+    }
+
+    @Override
+    int nextValue(final int from) {
+        if (from >= MAX_VALUES) {
+            return -1;
+        }
+        int index = from >>> 6;
+        long word = words[index] & -1L << from;
+        while (word == 0) {
+            if (++index == WORDS) {
+                return -1;
+            }
+            word = words[index];
+        }
+        return index << 6 | Long.numberOfTrailingZeros(word);
+    }
+
+    @Override
+    void forEach(final int high, final IntConsumer action) {
+        for (int index = 0; index < WORDS; index++) {
+            long word = words[index];
+            while (word != 0) {
+                action.accept(high | index << 6 | Long.numberOfTrailingZeros(word));
+                word &= word - 1;
+            }
+        }
+    }
+
+    @Override
+    int numberOfRuns() {
+        int runs = 0;
+        long previous = 0;
+        for (final long word : words) {
+            // a run starts at every set bit whose lower neighbour is clear
+            runs += Long.bitCount(word & ~(word << 1 | previous >>> 63));
+            previous = word;
+        }
+        return runs;
+    }
+
+    @Override
+    int sizeInBytes() {
+        return BITMAP_BYTES;
+    }
+
+    @Override
+    BitmapContainer toBitmap() {
+        return new BitmapContainer(words.clone(), cardinality);
+    }
+
+    @Override
+    Container copy() {
+        return toBitmap();
+    }
+
+    /**
+     * Returns the number of bits set in an inclusive range.
+     */
+    int rangeCardinality(final int start, final int end) {
+        final int first = start >>> 6;
+        final int last = end >>> 6;
+        final long firstMask = -1L << start;
+        final long lastMask = -1L >>> 63 - (end & 63);
+        if (first == last) {
+            return Long.bitCount(words[first] & firstMask & lastMask);
+        }
+        int count = Long.bitCount(words[first] & firstMask);
+        for (int i = first + 1; i < last; i++) {
+            count += Long.bitCount(words[i]);
+        }
+        return count + Long.bitCount(words[last] & lastMask);
+    }
+
+    /**
+     * Sets, clears or flips the bits of an inclusive range, without updating the cardinality.
+     */
+    private void applyRange(final int start, final int end, final int op) {
+        final int first = start >>> 6;
+        final int last = end >>> 6;
+        for (int i = first; i <= last; i++) {
+            long mask = -1L;
+            if (i == first) {
+                mask &= -1L << start;
+            }
+            if (i == last) {
+                mask &= -1L >>> 63 - (end & 63);
+            }
+            switch (op) {
+            case SET:
+                words[i] |= mask;
+                break;
+            case CLEAR:
+                words[i] &= ~mask;
+                break;
+            default:
+                words[i] ^= mask;
+                break;
+            }
+        }
+    }
+
+    /**
+     * Sets the bits of an inclusive range, updating the cardinality.
+     */
+    void setRange(final int start, final int end) {
+        applyRange(start, end, SET);
+        computeCardinality();
+    }
+
+    private void computeCardinality() {
+        int count = 0;
+        for (final long word : words) {
+            count += Long.bitCount(word);
+        }
+        cardinality = count;
+    }
+
+    /**
+     * Returns an array container with the same values if there are few enough of them.
+     */
+    Container normalize() {
+        if (cardinality > MAX_ARRAY_SIZE) {
+            return this;
+        }
+        final char[] values = new char[cardinality];
+        int k = 0;
+        for (int index = 0; index < WORDS; index++) {
+            long word = words[index];
+            while (word != 0) {
+                values[k++] = (char) (index << 6 | Long.numberOfTrailingZeros(word));
+                word &= word - 1;
+            }
+        }
+        return new ArrayContainer(values, k);
+    }
+
+    //-----------------------------------------------------------------------
+    @Override
+    int andCardinality(final Container other) {
+        if (other instanceof BitmapContainer) {
+            final long[] that = ((BitmapContainer) other).words;
+            int count = 0;
+            for (int i = 0; i < WORDS; i++) {
+                count += Long.bitCount(words[i] & that[i]);
+            }
+            return count;
+        }
+        if (other instanceof RunContainer) {
+            final RunContainer runs = (RunContainer) other;
+            int count = 0;
+            for (int r = 0; r < runs.numberOfRuns(); r++) {
+                count += rangeCardinality(runs.start(r), runs.end(r));
+            }
+            return count;
+        }
+        return other.andCardinality(this);
+    }
+
+    @Override
+    Container and(final Container other) {
+        if (other instanceof ArrayContainer) {
+            return other.and(this);
+        }
+        return toBitmap().iand(other);
+    }
+
+    @Override
+    Container or(final Container other) {
+        return toBitmap().ior(other);
+    }
+
+    @Override
+    Container andNot(final Container other) {
+        return toBitmap().iandNot(other);
+    }
+
+    @Override
+    Container xor(final Container other) {
+        return toBitmap().ixor(other);
+    }
+
+    @Override
+    Container iand(final Container other) {
+        if (other instanceof ArrayContainer) {
+            return other.and(this);
+        }
+        if (other instanceof BitmapContainer) {
+            final long[] that = ((BitmapContainer) other).words;
+            for (int i = 0; i < WORDS; i++) {
+                words[i] &= that[i];
+            }
+        } else {
+            // clear the gaps between the runs
+            final RunContainer runs = (RunContainer) other;
+            int next = 0;
+            for (int r = 0; r < runs.numberOfRuns(); r++) {
+                if (runs.start(r) > next) {
+                    applyRange(next, runs.start(r) - 1, CLEAR);
+                }
+                next = runs.end(r) + 1;
+            }
+            if (next < MAX_VALUES) {
+                applyRange(next, MAX_VALUES - 1, CLEAR);
+            }
+        }
+        computeCardinality();
+        return normalize();
+    }
+
+    @Override
+    Container ior(final Container other) {
+        if (other instanceof BitmapContainer) {
+            final long[] that = ((BitmapContainer) other).words;
+            for (int i = 0; i < WORDS; i++) {
+                words[i] |= that[i];
+            }
+            computeCardinality();
+        } else if (other instanceof RunContainer) {
+            final RunContainer runs = (RunContainer) other;
+            for (int r = 0; r < runs.numberOfRuns(); r++) {
+                applyRange(runs.start(r), runs.end(r), SET);
+            }
+            computeCardinality();
+        } else {
+            final ArrayContainer array = (ArrayContainer) other;
+            for (int i = 0; i < array.cardinality(); i++) {
+                final int v = array.value(i);
+                set(v);
+            }
+        }
+        return normalize();
+    }
+
+    @Override
+    Container iandNot(final Container other) {
+        if (other instanceof BitmapContainer) {
+            final long[] that = ((BitmapContainer) other).words;
+            for (int i = 0; i < WORDS; i++) {
+                words[i] &= ~that[i];
+            }
+        } else if (other instanceof RunContainer) {
+            final RunContainer runs = (RunContainer) other;
+            for (int r = 0; r < runs.numberOfRuns(); r++) {
+                applyRange(runs.start(r), runs.end(r), CLEAR);
+            }
+        } else {
+            final ArrayContainer array = (ArrayContainer) other;
+            for (int i = 0; i < array.cardinality(); i++) {
+                final int v = array.value(i);
+                words[v >>> 6] &= ~(1L << v);
+            }
+        }
+        computeCardinality();
+        return normalize();
+    }
+
+    @Override
+    Container ixor(final Container other) {
+        if (other instanceof BitmapContainer) {
+            final long[] that = ((BitmapContainer) other).words;
+            for (int i = 0; i < WORDS; i++) {
+                words[i] ^= that[i];
+            }
+        } else if (other instanceof RunContainer) {
+            final RunContainer runs = (RunContainer) other;
+            for (int r = 0; r < runs.numberOfRuns(); r++) {
+                applyRange(runs.start(r), runs.end(r), FLIP);
+            }
+        } else {
+            final ArrayContainer array = (ArrayContainer) other;
+            for (int i = 0; i < array.cardinality(); i++) {
+                final int v = array.value(i);
+                words[v >>> 6] ^= 1L << v;
+            }
+        }
+        computeCardinality();
+        return normalize();
+    }
+
+}
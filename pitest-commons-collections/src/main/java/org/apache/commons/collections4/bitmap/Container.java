@@ -0,0 +1,153 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.collections4.bitmap;
+
+import java.util.function.IntConsumer;
+
+/**
+ * The set of low 16 bit values of a {@link RoaringIntSet} that share the same
+ * high 16 bits.
+ * <p>
+ * Operations that may change the representation return the container to use
+ * from then on, which may be this one or a new one. The operations that are
+ * not prefixed with an {@code i} never modify either container.
+ *
+ * @since 4.5
+ */
+abstract class Container {
+
+    /** The maximum number of values held in an array container */
+    static final int MAX_ARRAY_SIZE = 4096;
+
+    /** The number of distinct low values */
+    static final int MAX_VALUES = 1 << 16;
+
+    /** The size in bytes of a bitmap container */
+    static final int BITMAP_BYTES = MAX_VALUES / 8;
+
+    /**
+     * Returns the number of values in this container.
+     */
+    abstract int cardinality();
+
+    /**
+     * Tests whether this container holds a low value.
+     */
+    abstract boolean contains(int low);
+
+    /**
+     * Adds a low value, returning the container to use from then on.
+     */
+    abstract Container add(int low);
+
+    /**
+     * Removes a low value, returning the container to use from then on.
+     */
+    abstract Container remove(int low);
+
+    /**
+     * Returns the smallest value not less than {@code from}, or -1 if there is none.
+     *
+     * @param from  the value to start from, between 0 and {@link #MAX_VALUES} inclusive
+     */
+    abstract int nextValue(int from);
+
+    /**
+     * Passes every value, combined with the high bits, to an action in ascending order.
+     */
+    abstract void forEach(int high, IntConsumer action);
+
+    /**
+     * Returns the number of runs of consecutive values.
+     */
+    abstract int numberOfRuns();
+
+    /**
+     * Returns the number of bytes used by the values of this container.
+     */
+    abstract int sizeInBytes();
+
+    /**
+     * Returns a new bitmap container with the same values.
+     */
+    abstract BitmapContainer toBitmap();
+
+    /**
+     * Returns an independent copy of this container.
+     */
+    abstract Container copy();
+
+    /**
+     * Returns the number of values in both containers, without allocating.
+     */
+    abstract int andCardinality(Container other);
+
+    abstract Container and(Container other);
+
+    abstract Container or(Container other);
+
+    abstract Container andNot(Container other);
+
+    abstract Container xor(Container other);
+
+    /**
+     * Intersects this container with another, in place if the representation allows it.
+     */
+    Container iand(final Container other) {
+        return and(other);
+    }
+
+    /**
+     * Unites this container with another, in place if the representation allows it.
+     */
+    Container ior(final Container other) {
+        return or(other);
+    }
+
+    /**
+     * Removes the values of another container, in place if the representation allows it.
+     */
+    Container iandNot(final Container other) {
+        return andNot(other);
+    }
+
+    /**
+     * Computes the symmetric difference with another container, in place if
+     * the representation allows it.
+     */
+    Container ixor(final Container other) {
+        return xor(other);
+    }
+
+    /**
+     * Returns the smallest of the array, bitmap and run representations of
+     * this container, which may be this container.
+     */
+    Container runOptimize() {
+        final int card = cardinality();
+        final int runBytes = RunContainer.sizeInBytes(numberOfRuns());
+        final int otherBytes = card <= MAX_ARRAY_SIZE ? ArrayContainer.sizeInBytes(card) : BITMAP_BYTES;
+        if (runBytes < otherBytes) {
+            return this instanceof RunContainer ? this : RunContainer.of(this);
+        }
+        if (this instanceof RunContainer) {
+            return card <= MAX_ARRAY_SIZE ? ArrayContainer.of(this) : toBitmap();
+        }
+        return this;
+    }
+
+}
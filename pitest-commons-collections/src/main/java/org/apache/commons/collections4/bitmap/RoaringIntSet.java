@@ -0,0 +1,796 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.collections4.bitmap;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.IntConsumer;
+
+/**
+ * A compressed bitmap <code>Set</code> of <code>int</code> values, in the
+ * style of Roaring bitmaps.
+ * <p>
+ * The values are split by their high 16 bits into containers, each of which
+ * holds the low 16 bits of its values in the most compact of three forms:
+ * <ul>
+ *   <li>a sorted array, for up to 4096 values,</li>
+ *   <li>a bitmap of 65536 bits, for more values,</li>
+ *   <li>a list of runs of consecutive values, chosen by {@link #runOptimize()}
+ *   when it is smaller than the other two.</li>
+ * </ul>
+ * A set of row identifiers thus takes a few bits per value at most, against
+ * tens of bytes per value for a boxed <code>HashSet</code>.
+ * <p>
+ * The set algebra works on whole containers without boxing: {@link #and(RoaringIntSet)},
+ * {@link #or(RoaringIntSet)}, {@link #andNot(RoaringIntSet)} and {@link #xor(RoaringIntSet)}
+ * modify this set, updating bitmap containers word by word in place, and the
+ * static methods of the same names return a new set. The cardinality of each
+ * result can be computed without allocating anything with {@link #andCardinality},
+ * {@link #orCardinality}, {@link #andNotCardinality} and {@link #xorCardinality}.
+ * {@link org.apache.commons.collections4.CollectionUtils} uses these methods
+ * when both inputs of its set operations are of this type.
+ * <p>
+ * The values are iterated in ascending order. The <code>Integer</code> methods
+ * of the <code>Collection</code> interface box and unbox their arguments; the
+ * <code>int</code> methods {@link #add(int)}, {@link #remove(int)},
+ * {@link #contains(int)} and {@link #forEachInt(IntConsumer)} do not.
+ * Null elements are not supported.
+ * <p>
+ * This set is not synchronized, and its iterator is fail-fast.
+ *
+ * @since 4.5
+ */
+public class RoaringIntSet extends AbstractSet<Integer> {
+
+    /** The initial number of container slots */
+    private static final int INITIAL_CAPACITY = 4;
+
+    /** Combination keeping the values in both sets */
+    private static final int AND = 0;
+    /** Combination keeping the values in either set */
+    private static final int OR = 1;
+    /** Combination keeping the values in this set only */
+    private static final int AND_NOT = 2;
+    /** Combination keeping the values in exactly one set */
+    private static final int XOR = 3;
+
+    /** The high 16 bits of each container, in ascending order, with the sign bit flipped */
+    private char[] keys;
+    /** The containers of the low 16 bits */
+    private Container[] containers;
+    /** The number of containers */
+    private int size;
+    /** The number of values */
+    private long cardinality;
+    /** The modification count, for fail-fast iterators */
+    private int modCount;
+
+    /**
+     * Constructs an empty set.
+     */
+    public RoaringIntSet() {
+        keys = new char[INITIAL_CAPACITY];
+        containers = new Container[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Constructs a set holding the values of a collection.
+     *
+     * @param coll  the collection to copy, must not be null or contain null
+     * @throws NullPointerException if the collection is null or contains null
+     */
+    public RoaringIntSet(final Collection<? extends Integer> coll) {
+        this();
+        if (coll == null) {
+            throw new NullPointerException("Collection must not be null.");
+        }
+        if (coll instanceof RoaringIntSet) {
+            or((RoaringIntSet) coll);
+            return;
+        }
+        final int[] values = new int[coll.size()];
+        int n = 0;
+        for (final Integer value : coll) {
+            if (value == null) {
+                throw new NullPointerException("Collection must not contain null.");
+            }
+            values[n++] = value.intValue();
+        }
+        addSorted(values, n);
+    }
+
+    /**
+     * Creates a set holding the given values.
+     *
+     * @param values  the values, must not be null
+     * @return a new set
+     * @throws NullPointerException if the array is null
+     */
+    public static RoaringIntSet of(final int... values) {
+        if (values == null) {
+            throw new NullPointerException("Values must not be null.");
+        }
+        final RoaringIntSet set = new RoaringIntSet();
+        set.addSorted(values.clone(), values.length);
+        return set;
+    }
+
+    /**
+     * Adds values to this empty set, sorting them first so that every
+     * container is filled by appending.
+     */
+    private void addSorted(final int[] values, final int n) {
+        Arrays.sort(values, 0, n);
+        int i = 0;
+        while (i < n) {
+            final char key = key(values[i]);
+            int end = i + 1;
+            while (end < n && key(values[end]) == key) {
+                end++;
+            }
+            Container container = new ArrayContainer();
+            int previous = -1;
+            for (int k = i; k < end; k++) {
+                final int low = values[k] & 0xFFFF;
+                if (low != previous) {
+                    if (container.cardinality() < Container.MAX_ARRAY_SIZE) {
+                        ((ArrayContainer) container).append(low);
+                    } else {
+                        container = container.add(low);
+                    }
+                    previous = low;
+                }
+            }
+            insertContainer(size, key, container);
+            cardinality += container.cardinality();
+            i = end;
+        }
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Returns the number of values in this set, which may be larger than
+     * {@link Integer#MAX_VALUE}.
+     *
+     * @return the number of values
+     */
+    public long longSize() {
+        return cardinality;
+    }
+
+    @Override
+    public int size() {
+        return (int) Math.min(Integer.MAX_VALUE, cardinality);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return cardinality == 0;
+    }
+
+    /**
+     * Tests whether this set holds a value.
+     *
+     * @param value  the value
+     * @return true if the value is in this set
+     */
+    public boolean contains(final int value) {
+        final int index = indexOf(key(value));
+        return index >= 0 && containers[index].contains(value & 0xFFFF);
+    }
+
+    @Override
+    public boolean contains(final Object object) {
+        return object instanceof Integer && contains(((Integer) object).intValue());
+    }
+
+    /**
+     * Adds a value to this set.
+     *
+     * @param value  the value
+     * @return true if the value was not in this set already
+     */
+    public boolean add(final int value) {
+        final char key = key(value);
+        final int index = indexOf(key);
+        if (index < 0) {
+            final ArrayContainer container = new ArrayContainer();
+            container.append(value & 0xFFFF);
+            insertContainer(-index - 1, key, container);
+        } else {
+            final Container container = containers[index];
+            final int before = container.cardinality();
+            containers[index] = container.add(value & 0xFFFF);
+            if (containers[index].cardinality() == before) {
+                return false;
+            }
+        }
+        cardinality++;
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public boolean add(final Integer value) {
+        if (value == null) {
+            throw new NullPointerException("Value must not be null.");
+        }
+        return add(value.intValue());
+    }
+
+    /**
+     * Removes a value from this set.
+     *
+     * @param value  the value
+     * @return true if the value was in this set
+     */
+    public boolean remove(final int value) {
+        final int index = indexOf(key(value));
+        if (index < 0) {
+            return false;
+        }
+        final Container container = containers[index];
+        final int before = container.cardinality();
+        final Container updated = container.remove(value & 0xFFFF);
+        if (updated.cardinality() == before) {
+            return false;
+        }
+        if (updated.cardinality() == 0) {
+            removeContainer(index);
+        } else {
+            containers[index] = updated;
+        }
+        cardinality--;
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public boolean remove(final Object object) {
+        return object instanceof Integer && remove(((Integer) object).intValue());
+    }
+
+    @Override
+    public void clear() {
+        keys = new char[INITIAL_CAPACITY];
+        containers = new Container[INITIAL_CAPACITY];
+        size = 0;
+        cardinality = 0;
+        modCount++;
+    }
+
+    @Override
+    public boolean containsAll(final Collection<?> coll) {
+        if (coll instanceof RoaringIntSet) {
+            return andNotCardinality((RoaringIntSet) coll, this) == 0;
+        }
+        return super.containsAll(coll);
+    }
+
+    @Override
+    public boolean addAll(final Collection<? extends Integer> coll) {
+        if (coll instanceof RoaringIntSet) {
+            final long before = cardinality;
+            or((RoaringIntSet) coll);
+            return cardinality != before;
+        }
+        return super.addAll(coll);
+    }
+
+    @Override
+    public boolean retainAll(final Collection<?> coll) {
+        if (coll instanceof RoaringIntSet) {
+            final long before = cardinality;
+            and((RoaringIntSet) coll);
+            return cardinality != before;
+        }
+        return super.retainAll(coll);
+    }
+
+    @Override
+    public boolean removeAll(final Collection<?> coll) {
+        if (coll instanceof RoaringIntSet) {
+            final long before = cardinality;
+            andNot((RoaringIntSet) coll);
+            return cardinality != before;
+        }
+        return super.removeAll(coll);
+    }
+
+    /**
+     * Passes every value of this set to an action in ascending order, without boxing.
+     *
+     * @param action  the action, must not be null
+     * @throws NullPointerException if the action is null
+     */
+    public void forEachInt(final IntConsumer action) {
+        if (action == null) {
+            throw new NullPointerException("Action must not be null.");
+        }
+        for (int i = 0; i < size; i++) {
+            containers[i].forEach(high(keys[i]), action);
+        }
+    }
+
+    /**
+     * Returns the values of this set in ascending order.
+     *
+     * @return a new array of the values
+     * @throws IllegalStateException if there are more than {@link Integer#MAX_VALUE} values
+     */
+    public int[] toIntArray() {
+        if (cardinality > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Set has more than Integer.MAX_VALUE values");
+        }
+        final int[] values = new int[(int) cardinality];
+        final int[] next = new int[1];
+        forEachInt(value -> values[next[0]++] = value);
+        return values;
+    }
+
+    /**
+     * Converts every container to the most compact of its array, bitmap and
+     * run representations. Sets of long ranges of consecutive values shrink
+     * the most.
+     *
+     * @return true if any container was converted
+     */
+    public boolean runOptimize() {
+        boolean changed = false;
+        for (int i = 0; i < size; i++) {
+            final Container optimized = containers[i].runOptimize();
+            if (optimized != containers[i]) {
+                containers[i] = optimized;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Returns the approximate number of bytes used by the values of this set.
+     *
+     * @return the number of bytes
+     */
+    public long sizeInBytes() {
+        long bytes = 4L * size;
+        for (int i = 0; i < size; i++) {
+            bytes += containers[i].sizeInBytes();
+        }
+        return bytes;
+    }
+
+    @Override
+    public Iterator<Integer> iterator() {
+        return new BitmapIterator();
+    }
+
+    @Override
+    public boolean equals(final Object object) {
+        if (object == this) {
+            return true;
+        }
+        if (object instanceof RoaringIntSet) {
+            final RoaringIntSet other = (RoaringIntSet) object;
+            return cardinality == other.cardinality && andCardinality(this, other) == cardinality;
+        }
+        return super.equals(object);
+    }
+
+    @Override
+    public int hashCode() {
+        final int[] sum = new int[1];
+        forEachInt(value -> sum[0] += value);
+        return sum[0];
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Keeps only the values that are also in another set.
+     *
+     * @param other  the other set, must not be null
+     * @throws NullPointerException if the other set is null
+     */
+    public void and(final RoaringIntSet other) {
+        combine(this, checkNotNull(other), AND, this);
+    }
+
+    /**
+     * Adds all the values of another set.
+     *
+     * @param other  the other set, must not be null
+     * @throws NullPointerException if the other set is null
+     */
+    public void or(final RoaringIntSet other) {
+        combine(this, checkNotNull(other), OR, this);
+    }
+
+    /**
+     * Removes all the values of another set.
+     *
+     * @param other  the other set, must not be null
+     * @throws NullPointerException if the other set is null
+     */
+    public void andNot(final RoaringIntSet other) {
+        combine(this, checkNotNull(other), AND_NOT, this);
+    }
+
+    /**
+     * Keeps the values that are in exactly one of this set and another set.
+     *
+     * @param other  the other set, must not be null
+     * @throws NullPointerException if the other set is null
+     */
+    public void xor(final RoaringIntSet other) {
+        combine(this, checkNotNull(other), XOR, this);
+    }
+
+    /**
+     * Returns the intersection of two sets.
+     *
+     * @param a  the first set, must not be null
+     * @param b  the second set, must not be null
+     * @return a new set with the values in both sets
+     * @throws NullPointerException if either set is null
+     */
+    public static RoaringIntSet and(final RoaringIntSet a, final RoaringIntSet b) {
+        return combine(checkNotNull(a), checkNotNull(b), AND, new RoaringIntSet());
+    }
+
+    /**
+     * Returns the union of two sets.
+     *
+     * @param a  the first set, must not be null
+     * @param b  the second set, must not be null
+     * @return a new set with the values in either set
+     * @throws NullPointerException if either set is null
+     */
+    public static RoaringIntSet or(final RoaringIntSet a, final RoaringIntSet b) {
+        return combine(checkNotNull(a), checkNotNull(b), OR, new RoaringIntSet());
+    }
+
+    /**
+     * Returns the difference of two sets.
+     *
+     * @param a  the set to subtract from, must not be null
+     * @param b  the set to subtract, must not be null
+     * @return a new set with the values of the first set that are not in the second
+     * @throws NullPointerException if either set is null
+     */
+    public static RoaringIntSet andNot(final RoaringIntSet a, final RoaringIntSet b) {
+        return combine(checkNotNull(a), checkNotNull(b), AND_NOT, new RoaringIntSet());
+    }
+
+    /**
+     * Returns the symmetric difference of two sets.
+     *
+     * @param a  the first set, must not be null
+     * @param b  the second set, must not be null
+     * @return a new set with the values in exactly one of the sets
+     * @throws NullPointerException if either set is null
+     */
+    public static RoaringIntSet xor(final RoaringIntSet a, final RoaringIntSet b) {
+        return combine(checkNotNull(a), checkNotNull(b), XOR, new RoaringIntSet());
+    }
+
+    /**
+     * Returns the number of values in both sets, without allocating.
+     *
+     * @param a  the first set, must not be null
+     * @param b  the second set, must not be null
+     * @return the size of the intersection
+     * @throws NullPointerException if either set is null
+     */
+    public static long andCardinality(final RoaringIntSet a, final RoaringIntSet b) {
+        checkNotNull(a);
+        checkNotNull(b);
+        long count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.size && j < b.size) {
+            final char ka = a.keys[i];
+            final char kb = b.keys[j];
+            if (ka < kb) {
+                i++;
+            } else if (ka > kb) {
+                j++;
+            } else {
+                count += a.containers[i++].andCardinality(b.containers[j++]);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of values in either set, without allocating.
+     *
+     * @param a  the first set, must not be null
+     * @param b  the second set, must not be null
+     * @return the size of the union
+     * @throws NullPointerException if either set is null
+     */
+    public static long orCardinality(final RoaringIntSet a, final RoaringIntSet b) {
+        return a.cardinality + b.cardinality - andCardinality(a, b);
+    }
+
+    /**
+     * Returns the number of values of the first set that are not in the second,
+     * without allocating.
+     *
+     * @param a  the set to subtract from, must not be null
+     * @param b  the set to subtract, must not be null
+     * @return the size of the difference
+     * @throws NullPointerException if either set is null
+     */
+    public static long andNotCardinality(final RoaringIntSet a, final RoaringIntSet b) {
+        return a.cardinality - andCardinality(a, b);
+    }
+
+    /**
+     * Returns the number of values in exactly one of the sets, without allocating.
+     *
+     * @param a  the first set, must not be null
+     * @param b  the second set, must not be null
+     * @return the size of the symmetric difference
+     * @throws NullPointerException if either set is null
+     */
+    public static long xorCardinality(final RoaringIntSet a, final RoaringIntSet b) {
+        return a.cardinality + b.cardinality - 2 * andCardinality(a, b);
+    }
+
+    /**
+     * Tests whether two sets have a value in common, without allocating.
+     *
+     * @param a  the first set, must not be null
+     * @param b  the second set, must not be null
+     * @return true if the intersection is not empty
+     * @throws NullPointerException if either set is null
+     */
+    public static boolean intersects(final RoaringIntSet a, final RoaringIntSet b) {
+        checkNotNull(a);
+        checkNotNull(b);
+        int i = 0;
+        int j = 0;
+        while (i < a.size && j < b.size) {
+            final char ka = a.keys[i];
+            final char kb = b.keys[j];
+            if (ka < kb) {
+                i++;
+            } else if (ka > kb) {
+                j++;
+            } else if (a.containers[i++].andCardinality(b.containers[j++]) > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Merges the containers of two sets into a result, which may be the first set.
+     * When it is, its containers are combined in place and, for intersections
+     * and differences, its key arrays are compacted in place as well.
+     */
+    private static RoaringIntSet combine(final RoaringIntSet a, final RoaringIntSet b, final int op,
+                                         final RoaringIntSet result) {
+        final boolean inPlace = result == a;
+        final boolean keepA = op != AND;
+        final boolean keepB = op == OR || op == XOR;
+        final char[] keys;
+        final Container[] containers;
+        if (inPlace && !keepB) {
+            keys = a.keys;
+            containers = a.containers;
+        } else {
+            final int capacity = Math.max(INITIAL_CAPACITY, keepB ? a.size + b.size : a.size);
+            keys = new char[capacity];
+            containers = new Container[capacity];
+        }
+        final int sizeA = a.size;
+        final int sizeB = b.size;
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        long cardinality = 0;
+        while (i < sizeA && (j < sizeB || keepA) || j < sizeB && keepB) {
+            final int ka = i < sizeA ? a.keys[i] : Integer.MAX_VALUE;
+            final int kb = j < sizeB ? b.keys[j] : Integer.MAX_VALUE;
+            final Container container;
+            final int key;
+            if (ka < kb) {
+                if (!keepA) {
+                    i++;
+                    continue;
+                }
+                key = ka;
+                container = inPlace ? a.containers[i] : a.containers[i].copy();
+                i++;
+            } else if (ka > kb) {
+                if (!keepB) {
+                    j++;
+                    continue;
+                }
+                key = kb;
+                container = b.containers[j].copy();
+                j++;
+            } else {
+                key = ka;
+                final Container x = a.containers[i++];
+                final Container y = b.containers[j++];
+                if (inPlace) {
+                    container = combineInPlace(x, y, op);
+                } else {
+                    container = combine(x, y, op);
+                }
+            }
+            if (container.cardinality() > 0) {
+                keys[k] = (char) key;
+                containers[k] = container;
+                cardinality += container.cardinality();
+                k++;
+            }
+        }
+        Arrays.fill(containers, k, Math.max(k, result.size), null);
+        result.keys = keys;
+        result.containers = containers;
+        result.size = k;
+        result.cardinality = cardinality;
+        result.modCount++;
+        return result;
+    }
+
+    private static Container combine(final Container x, final Container y, final int op) {
+        switch (op) {
+        case AND:
+            return x.and(y);
+        case OR:
+            return x.or(y);
+        case AND_NOT:
+            return x.andNot(y);
+        default:
+            return x.xor(y);
+        }
+    }
+
+    private static Container combineInPlace(final Container x, final Container y, final int op) {
+        switch (op) {
+        case AND:
+            return x.iand(y);
+        case OR:
+            return x.ior(y);
+        case AND_NOT:
+            return x.iandNot(y);
+        default:
+            return x.ixor(y);
+        }
+    }
+
+    private static RoaringIntSet checkNotNull(final RoaringIntSet set) {
+        if (set == null) {
+            throw new NullPointerException("The sets must not be null");
+        }
+        return set;
+    }
+
+    /**
+     * Returns the key of a value, whose high bits have the sign bit flipped so
+     * that keys sort like signed values.
+     */
+    private static char key(final int value) {
+        return (char) ((value ^ Integer.MIN_VALUE) >>> 16);
+    }
+
+    /**
+     * Returns the high bits of the values of a container.
+     */
+    private static int high(final char key) {
+        return key << 16 ^ Integer.MIN_VALUE;
+    }
+
+    private int indexOf(final char key) {
+        return Arrays.binarySearch(keys, 0, size, key);
+    }
+
+    private void insertContainer(final int index, final char key, final Container container) {
+        if (size == keys.length) {
+            final int capacity = size + (size >> 1) + 1;
+            keys = Arrays.copyOf(keys, capacity);
+            containers = Arrays.copyOf(containers, capacity);
+        }
+        System.arraycopy(keys, index, keys, index + 1, size - index);
+        System.arraycopy(containers, index, containers, index + 1, size - index);
+        keys[index] = key;
+        containers[index] = container;
+        size++;
+    }
+
+    private void removeContainer(final int index) {
+        System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+        System.arraycopy(containers, index + 1, containers, index, size - index - 1);
+        containers[--size] = null;
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * An iterator over the values in ascending order, which remembers the
+     * next value rather than a position so that it survives container changes
+     * made by {@link #remove()}.
+     */
+    private final class BitmapIterator implements Iterator<Integer> {
+
+        /** The index of the container of the next value */
+        private int index;
+        /** The low bits of the next value, or -1 at the end */
+        private int nextLow;
+        /** The last value returned */
+        private int last;
+        /** Whether the last value can be removed */
+        private boolean canRemove;
+        /** The modification count expected */
+        private int expectedModCount = modCount;
+
+        BitmapIterator() {
+            index = 0;
+            nextLow = size > 0 ? containers[0].nextValue(0) : -1;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextLow >= 0;
+        }
+
+        @Override
+        public Integer next() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (nextLow < 0) {
+                throw new NoSuchElementException();
+            }
+            last = high(keys[index]) | nextLow;
+            canRemove = true;
+            nextLow = containers[index].nextValue(nextLow + 1);
+            while (nextLow < 0 && ++index < size) {
+                nextLow = containers[index].nextValue(0);
+            }
+            return Integer.valueOf(last);
+        }
+
+        @Override
+        public void remove() {
+            if (!canRemove) {
+                throw new IllegalStateException("next() must be called before remove()");
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            final char nextKey = nextLow >= 0 ? keys[index] : 0;
+            RoaringIntSet.this.remove(last);
+            if (nextLow >= 0) {
+                // the container of the last value may have been removed before it
+                index = indexOf(nextKey);
+            }
+            expectedModCount = modCount;
+            canRemove = false;
+        }
+    }
+
+}
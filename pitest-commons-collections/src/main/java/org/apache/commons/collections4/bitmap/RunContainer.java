@@ -0,0 +1,322 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.collections4.bitmap;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * A container kept as sorted runs of consecutive values, each stored as its
+ * first value and its length minus one.
+ * <p>
+ * Intersections and unions of two run containers are computed on the runs;
+ * other combinations go through a bitmap.
+ *
+ * @since 4.5
+ */
+final class RunContainer extends Container {
+
+    /** The start and length minus one of each run, interleaved */
+    private char[] runs;
+    /** The number of runs */
+    private int count;
+    /** The number of values */
+    private int cardinality;
+
+    private RunContainer(final char[] runs, final int count, final int cardinality) {
+        this.runs = runs;
+        this.count = count;
+        this.cardinality = cardinality;
+    }
+
+    /**
+     * Converts a container into runs.
+     */
+    static RunContainer of(final Container container) {
+        final RunContainer result = new RunContainer(new char[2 * container.numberOfRuns()], 0, 0);
+        int v = container.nextValue(0);
+        while (v >= 0) {
+            // the end of the run is the value before the first gap
+            int end = v;
+            int next = container.nextValue(end + 1);
+            while (next == end + 1) {
+                end = next;
+                next = container.nextValue(end + 1);
+            }
+            result.append(v, end);
+            v = next;
+        }
+        return result;
+    }
+
+    /**
+     * Returns a container holding an inclusive range of values.
+     */
+    static RunContainer range(final int start, final int end) {
+        return new RunContainer(new char[] {(char) start, (char) (end - start)}, 1, end - start + 1);
+    }
+
+    static int sizeInBytes(final int numberOfRuns) {
+        return 2 + 4 * numberOfRuns;
+    }
+
+    int start(final int run) {
+        return runs[2 * run];
+    }
+
+    int end(final int run) {
+        return runs[2 * run] + runs[2 * run + 1];
+    }
+
+    /**
+     * Appends a run after all the runs held, merging it with the last run if they touch.
+     */
+    private void append(final int start, final int end) {
+        if (count > 0 && start <= end(count - 1) + 1) {
+            final int last = end(count - 1);
+            if (end > last) {
+                runs[2 * count - 1] = (char) (end - start(count - 1));
+                cardinality += end - last;
+            }
+            return;
+        }
+        if (2 * count == runs.length) {
+            runs = Arrays.copyOf(runs, 2 * count + 2 * (count >> 1) + 2);
+        }
+        runs[2 * count] = (char) start;
+        runs[2 * count + 1] = (char) (end - start);
+        count++;
+        cardinality += end - start + 1;
+    }
+
+    /**
+     * Returns the index of the last run starting at or before a value, or -1.
+     */
+    private int find(final int low) {
+        int lo = 0;
+        int hi = count - 1;
+        while (lo <= hi) {
+            final int mid = lo + hi >>> 1;
+            if (start(mid) <= low) {
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return hi;
+    }
+
+    private void insertRun(final int index, final int start, final int end) {
+        if (2 * count == runs.length) {
+            runs = Arrays.copyOf(runs, 2 * count + 2 * (count >> 1) + 2);
+        }
+        System.arraycopy(runs, 2 * index, runs, 2 * index + 2, 2 * (count - index));
+        runs[2 * index] = (char) start;
+        runs[2 * index + 1] = (char) (end - start);
+        count++;
+    }
+
+    private void deleteRun(final int index) {
+        System.arraycopy(runs, 2 * index + 2, runs, 2 * index, 2 * (count - index - 1));
+        count--;
+    }
+
+    //-----------------------------------------------------------------------
+    @Override
+    int cardinality() {
+        return cardinality;
+    }
+
+    @Override
+    boolean contains(final int low) {
+        final int r = find(low);
+        return r >= 0 && low <= end(r);
+    }
+
+    @Override
+    Container add(final int low) {
+        final int r = find(low);
+        if (r >= 0 && low <= end(r)) {
+            return this;
+        }
+        final boolean joinsPrevious = r >= 0 && end(r) + 1 == low;
+        final boolean joinsNext = r + 1 < count && start(r + 1) == low + 1;
+        if (joinsPrevious && joinsNext) {
+            runs[2 * r + 1] = (char) (end(r + 1) - start(r));
+            deleteRun(r + 1);
+        } else if (joinsPrevious) {
+            runs[2 * r + 1]++;
+        } else if (joinsNext) {
+            runs[2 * r + 2] = (char) low;
+            runs[2 * r + 3]++;
+        } else {
+            insertRun(r + 1, low, low);
+        }
+        cardinality++;
+        return this;
+    }
+
+    @Override
+    Container remove(final int low) {
+        final int r = find(low);
+        if (r < 0 || low > end(r)) {
+            return this;
+        }
+        final int start = start(r);
+        final int end = end(r);
+        if (start == end) {
+            deleteRun(r);
+        } else if (low == start) {
+            runs[2 * r] = (char) (start + 1);
+            runs[2 * r + 1]--;
+        } else if (low == end) {
+            runs[2 * r + 1]--;
+        } else {
+            runs[2 * r + 1] = (char) (low - 1 - start);
+            insertRun(r + 1, low + 1, end);
+        }
+        cardinality--;
+        return this;
+    }
+
+    @Override
+    int nextValue(final int from) {
+        if (from >= MAX_VALUES) {
+            return -1;
+        }
+        final int r = find(from);
+        if (r >= 0 && from <= end(r)) {
+            return from;
+        }
+        return r + 1 < count ? start(r + 1) : -1;
+    }
+
+    @Override
+    void forEach(final int high, final IntConsumer action) {
+        for (int r = 0; r < count; r++) {
+            final int end = end(r);
+            for (int v = start(r); v <= end; v++) {
+                action.accept(high | v);
+            }
+        }
+    }
+
+    @Override
+    int numberOfRuns() {
+        return count;
+    }
+
+    @Override
+    int sizeInBytes() {
+        return sizeInBytes(count);
+    }
+
+    @Override
+    BitmapContainer toBitmap() {
+        final BitmapContainer bitmap = new BitmapContainer();
+        for (int r = 0; r < count; r++) {
+            bitmap.setRange(start(r), end(r));
+        }
+        return bitmap;
+    }
+
+    @Override
+    Container copy() {
+        return new RunContainer(Arrays.copyOf(runs, Math.max(2 * count, 2)), count, cardinality);
+    }
+
+    //-----------------------------------------------------------------------
+    @Override
+    int andCardinality(final Container other) {
+        if (!(other instanceof RunContainer)) {
+            return other.andCardinality(this);
+        }
+        final RunContainer that = (RunContainer) other;
+        int total = 0;
+        int i = 0;
+        int j = 0;
+        while (i < count && j < that.count) {
+            final int start = Math.max(start(i), that.start(j));
+            final int end = Math.min(end(i), that.end(j));
+            if (start <= end) {
+                total += end - start + 1;
+            }
+            if (end(i) < that.end(j)) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return total;
+    }
+
+    @Override
+    Container and(final Container other) {
+        if (!(other instanceof RunContainer)) {
+            return other.and(this);
+        }
+        final RunContainer that = (RunContainer) other;
+        final RunContainer result = new RunContainer(new char[2 * (count + that.count)], 0, 0);
+        int i = 0;
+        int j = 0;
+        while (i < count && j < that.count) {
+            final int start = Math.max(start(i), that.start(j));
+            final int end = Math.min(end(i), that.end(j));
+            if (start <= end) {
+                result.append(start, end);
+            }
+            if (end(i) < that.end(j)) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    Container or(final Container other) {
+        if (!(other instanceof RunContainer)) {
+            return toBitmap().ior(other);
+        }
+        final RunContainer that = (RunContainer) other;
+        final RunContainer result = new RunContainer(new char[2 * (count + that.count)], 0, 0);
+        int i = 0;
+        int j = 0;
+        while (i < count || j < that.count) {
+            if (j == that.count || i < count && start(i) <= that.start(j)) {
+                result.append(start(i), end(i));
+                i++;
+            } else {
+                result.append(that.start(j), that.end(j));
+                j++;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    Container andNot(final Container other) {
+        return toBitmap().iandNot(other);
+    }
+
+    @Override
+    Container xor(final Container other) {
+        return toBitmap().ixor(other);
+    }
+
+}
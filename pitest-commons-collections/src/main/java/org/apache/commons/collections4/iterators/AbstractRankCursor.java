@@ -0,0 +1,223 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.collections4.iterators;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Provides the iteration over a range of ranks shared by the cursors over
+ * arrangements of a collection, which return the same list from every call to
+ * {@link #next()}.
+ * <p>
+ * A subclass positions itself on any rank in one step and moves from one rank
+ * to the next in place.
+ *
+ * @param <E>  the type of the objects being arranged
+ * @since 4.5
+ */
+abstract class AbstractRankCursor<E> implements Iterator<List<E>> {
+
+    /** The elements being arranged, in input order */
+    final Object[] elements;
+    /** The rank of the next arrangement to return */
+    private long nextRank;
+    /** The rank after the last arrangement to return */
+    private long endRank;
+    /** Whether the current arrangement is the one before {@link #nextRank} */
+    private boolean positioned;
+
+    /**
+     * Constructs a cursor over a range of ranks.
+     *
+     * @param elements  the elements being arranged
+     * @param fromRank  the rank of the first arrangement, inclusive
+     * @param toRank  the rank after the last arrangement, exclusive
+     * @param count  the number of arrangements
+     * @throws IndexOutOfBoundsException if the range is not within 0 and count
+     */
+    AbstractRankCursor(final Object[] elements, final long fromRank, final long toRank, final long count) {
+        if (fromRank < 0 || toRank > count || fromRank > toRank) {
+            throw new IndexOutOfBoundsException("Range [" + fromRank + ", " + toRank + ") is not within [0, " +
+                    count + ")");
+        }
+        this.elements = elements;
+        nextRank = fromRank;
+        endRank = toRank;
+    }
+
+    /**
+     * Makes the arrangement with a rank current.
+     *
+     * @param rank  the rank, in range
+     */
+    abstract void position(long rank);
+
+    /**
+     * Makes the arrangement after the current one current.
+     */
+    abstract void advance();
+
+    /**
+     * Returns the view of the current arrangement.
+     *
+     * @return the list returned by {@link #next()}
+     */
+    abstract List<E> current();
+
+    /**
+     * Returns a new cursor over the same elements and another range of ranks.
+     *
+     * @param fromRank  the rank of the first arrangement, inclusive
+     * @param toRank  the rank after the last arrangement, exclusive
+     * @return the new cursor
+     */
+    abstract AbstractRankCursor<E> range(long fromRank, long toRank);
+
+    //-----------------------------------------------------------------------
+    /**
+     * Indicates if there are more arrangements available.
+     * @return true if there are more arrangements, otherwise false
+     */
+    @Override
+    public boolean hasNext() {
+        return nextRank < endRank;
+    }
+
+    /**
+     * Returns the next arrangement, in the list returned by every call.
+     * @return an unmodifiable list holding the next arrangement
+     * @throws NoSuchElementException if there are no more arrangements
+     */
+    @Override
+    public List<E> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        if (positioned) {
+            advance();
+        } else {
+            position(nextRank);
+            positioned = true;
+        }
+        nextRank++;
+        return current();
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("remove() is not supported");
+    }
+
+    /**
+     * Gets the rank of the arrangement last returned by {@link #next()}.
+     *
+     * @return the rank, or -1 if no arrangement has been returned yet
+     */
+    public long getRank() {
+        return positioned ? nextRank - 1 : -1;
+    }
+
+    /**
+     * Checks that {@link #next()} has been called.
+     *
+     * @throws IllegalStateException if no arrangement has been returned yet
+     */
+    void checkPositioned() {
+        if (!positioned) {
+            throw new IllegalStateException("next() has not been called");
+        }
+    }
+
+    /**
+     * Returns a spliterator over the arrangements this cursor has not returned
+     * yet, which can be split into ranges of ranks for parallel processing. This
+     * cursor must not be used afterwards.
+     * <p>
+     * Like the cursor, every split passes the same list to its action for every
+     * arrangement.
+     *
+     * @return a spliterator over the remaining arrangements
+     */
+    public Spliterator<List<E>> spliterator() {
+        return new RankSpliterator<>(this);
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * A spliterator over a range of ranks, which gives away the first half of
+     * its remaining range when split.
+     */
+    private static final class RankSpliterator<E> implements Spliterator<List<E>> {
+
+        /** The cursor over the range of this spliterator */
+        private final AbstractRankCursor<E> cursor;
+
+        RankSpliterator(final AbstractRankCursor<E> cursor) {
+            this.cursor = cursor;
+        }
+
+        @Override
+        public boolean tryAdvance(final Consumer<? super List<E>> action) {
+            if (action == null) {
+                throw new NullPointerException("The action must not be null");
+            }
+            if (!cursor.hasNext()) {
+                return false;
+            }
+            action.accept(cursor.next());
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(final Consumer<? super List<E>> action) {
+            if (action == null) {
+                throw new NullPointerException("The action must not be null");
+            }
+            while (cursor.hasNext()) {
+                action.accept(cursor.next());
+            }
+        }
+
+        @Override
+        public Spliterator<List<E>> trySplit() {
+            final long from = cursor.nextRank;
+            final long mid = from + (cursor.endRank - from >>> 1);
+            if (mid == from) {
+                return null;
+            }
+            // this spliterator keeps the second half and repositions on its next advance
+            cursor.nextRank = mid;
+            cursor.positioned = false;
+            return new RankSpliterator<>(cursor.range(from, mid));
+        }
+
+        @Override
+        public long estimateSize() {
+            return cursor.endRank - cursor.nextRank;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED | NONNULL;
+        }
+    }
+
+}
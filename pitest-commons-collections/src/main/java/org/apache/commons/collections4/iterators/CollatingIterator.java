@@ -17,7 +17,6 @@
 package org.apache.commons.collections4.iterators;
 
 import java.util.ArrayList;
-import java.util.BitSet;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.Iterator;
@@ -34,6 +33,11 @@ import org.apache.commons.collections4.list.UnmodifiableList;
  * Given two ordered {@link Iterator} instances <code>A</code> and
  * <code>B</code>, the {@link #next} method on this iterator will return the
  * lesser of <code>A.next()</code> and <code>B.next()</code>.
+ * <p>
+ * The next value of every child iterator is kept in a binary heap, so each
+ * call to {@link #next} costs <code>O(log k)</code> comparisons for
+ * <code>k</code> child iterators. Equal values are returned in the order of
+ * the child iterators.
  *
  * @since 2.1
  */
@@ -46,10 +50,25 @@ public class CollatingIterator<E> implements Iterator<E> {
     private List<Iterator<? extends E>> iterators = null;
 
     /** {@link Iterator#next Next} objects peeked from each iterator. */
-    private List<E> values = null;
+    private Object[] values = null;
+
+    /**
+     * Indices of the {@link #iterators} that have a peeked value, as a binary
+     * heap ordered by value and then by index.
+     */
+    private int[] heap = null;
+
+    /** The number of indices in the {@link #heap}. */
+    private int heapSize = 0;
 
-    /** Whether or not each {@link #values} element has been set. */
-    private BitSet valueSet = null;
+    /** Whether the first value of every iterator has been peeked. */
+    private boolean primed = false;
+
+    /**
+     * Index of the iterator whose value was returned last, and which has not
+     * been advanced since so that its element can still be removed, or -1.
+     */
+    private int pending = -1;
 
     /**
      * Index of the {@link #iterators iterator} from whom the last returned
@@ -229,7 +248,13 @@ public class CollatingIterator<E> implements Iterator<E> {
     @Override
     public boolean hasNext() {
         start();
-        return anyValueSet(valueSet) || anyHasNext(iterators);
+        if (!primed) {
+            return anyHasNext(iterators);
+        }
+        if (pending == -1) {
+            return heapSize > 0;
+        }
+        return heapSize > 1 || iterators.get(pending).hasNext();
     }
 
     /**
@@ -243,12 +268,19 @@ public class CollatingIterator<E> implements Iterator<E> {
         if (hasNext() == false) {
             throw new NoSuchElementException();
         }
-        final int leastIndex = least();
-        if (leastIndex == -1) {
+        if (!primed) {
+            prime();
+        } else if (pending != -1) {
+            advance();
+        }
+        if (heapSize == 0) {
             throw new NoSuchElementException();
         }
-        final E val = values.get(leastIndex);
-        clear(leastIndex);
+        final int leastIndex = heap[0];
+        @SuppressWarnings("unchecked") // values only hold elements of the iterators
+        final E val = (E) values[leastIndex];
+        values[leastIndex] = null;
+        pending = leastIndex;
         lastReturned = leastIndex;
         return val;
     }
@@ -288,99 +320,92 @@ public class CollatingIterator<E> implements Iterator<E> {
      */
     private void start() {
         if (values == null) {
-            values = new ArrayList<>(iterators.size());
-            valueSet = new BitSet(iterators.size());
-            for (int i = 0; i < iterators.size(); i++) {
-                values.add(null);
-                valueSet.clear(i);
-            }
+            values = new Object[iterators.size()];
+            heap = new int[iterators.size()];
         }
     }
 
     /**
-     * Sets the {@link #values} and {@link #valueSet} attributes at position
-     * <i>i</i> to the next value of the {@link #iterators iterator} at position
-     * <i>i</i>, or clear them if the <i>i</i><sup>th</sup> iterator has no next
-     * value.
+     * Throws {@link IllegalStateException} if iteration has started via
+     * {@link #start}.
      *
-     * @return {@code false} iff there was no value to set
+     * @throws IllegalStateException if iteration started
      */
-    private boolean set(final int i) {
-        final Iterator<? extends E> it = iterators.get(i);
-        if (it.hasNext()) {
-            values.set(i, it.next());
-            valueSet.set(i);
-            return true;
+    private void checkNotStarted() throws IllegalStateException {
+        if (values != null) {
+            throw new IllegalStateException("Can't do that after next or hasNext has been called.");
         }
-        values.set(i, null);
-        valueSet.clear(i);
-        return false;
     }
 
     /**
-     * Clears the {@link #values} and {@link #valueSet} attributes at position
-     * <i>i</i>.
+     * Peeks the first value of every iterator and builds the heap.
+     *
+     * @throws NullPointerException if no comparator is set
      */
-    private void clear(final int i) {
-        values.set(i, null);
-        valueSet.clear(i);
+    private void prime() {
+        for (int i = 0; i < iterators.size(); i++) {
+            final Iterator<? extends E> it = iterators.get(i);
+            if (it.hasNext()) {
+                values[i] = it.next();
+                heap[heapSize++] = i;
+            }
+        }
+        for (int pos = heapSize / 2 - 1; pos >= 0; pos--) {
+            siftDown(pos);
+        }
+        primed = true;
     }
 
     /**
-     * Throws {@link IllegalStateException} if iteration has started via
-     * {@link #start}.
+     * Peeks the next value of the iterator whose value was returned last, which
+     * is still at the top of the heap, and restores the heap order.
      *
-     * @throws IllegalStateException if iteration started
+     * @throws NullPointerException if no comparator is set
      */
-    private void checkNotStarted() throws IllegalStateException {
-        if (values != null) {
-            throw new IllegalStateException("Can't do that after next or hasNext has been called.");
+    private void advance() {
+        final Iterator<? extends E> it = iterators.get(pending);
+        if (it.hasNext()) {
+            values[pending] = it.next();
+        } else {
+            heap[0] = heap[--heapSize];
         }
+        pending = -1;
+        siftDown(0);
     }
 
     /**
-     * Returns the index of the least element in {@link #values},
-     * {@link #set(int) setting} any uninitialized values.
-     *
-     * @throws NullPointerException if no comparator is set
+     * Moves the index at the given heap position down until neither of its
+     * children is less than it.
      */
-    private int least() {
-        int leastIndex = -1;
-        E leastObject = null;
-        for (int i = 0; i < values.size(); i++) {
-            if (valueSet.get(i) == false) {
-                set(i);
+    private void siftDown(int pos) {
+        final int index = heap[pos];
+        int child;
+        while ((child = 2 * pos + 1) < heapSize) {
+            if (child + 1 < heapSize && less(heap[child + 1], heap[child])) {
+                child++;
             }
-            if (valueSet.get(i)) {
-                if (leastIndex == -1) {
-                    leastIndex = i;
-                    leastObject = values.get(i);
-                } else {
-                    final E curObject = values.get(i);
-                    if (comparator == null) {
-                        throw new NullPointerException("You must invoke setComparator() to set a comparator first.");
-                    }
-                    if (comparator.compare(curObject, leastObject) < 0) {
-                        leastObject = curObject;
-                        leastIndex = i;
-                    }
-                }
+            if (!less(heap[child], index)) {
+                break;
             }
+            heap[pos] = heap[child];
+            pos = child;
         }
-        return leastIndex;
+        heap[pos] = index;
     }
 
     /**
-     * Returns <code>true</code> iff any bit in the given set is
-     * <code>true</code>.
+     * Returns whether the value peeked from iterator <i>i</i> comes before the
+     * value peeked from iterator <i>j</i>, the lower index coming first on ties.
+     *
+     * @throws NullPointerException if no comparator is set
      */
-    private boolean anyValueSet(final BitSet set) {
-        for (int i = 0; i < set.size(); i++) {
-            if (set.get(i)) {
-                return true;
-            }
+    @SuppressWarnings("unchecked") // values only hold elements of the iterators
+    private boolean less(final int i, final int j) {
+        if (comparator == null) {
+            throw new NullPointerException("You must invoke setComparator() to set a comparator first.");
         }
-        return false;
+        final int cmp = comparator.compare((E) values[i], (E) values[j]);
+        return cmp < 0 || cmp == 0 && i < j;
     }
 
     /**
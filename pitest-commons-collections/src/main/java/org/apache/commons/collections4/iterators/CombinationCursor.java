@@ -0,0 +1,320 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.collections4.iterators;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This iterator returns the k-combinations of an input collection, the
+ * subsets of k elements kept in input order, in lexicographic order of the
+ * positions of their elements, without allocating per combination.
+ * <p>
+ * Every call to {@link #next()} returns the <b>same</b> unmodifiable list,
+ * updated in place to hold the next combination. Copy it if it has to be kept
+ * beyond the next call. The combination is computed on an increasing
+ * {@code int[]} of positions, whose values are available from {@link #getIndex(int)};
+ * moving to the next combination only rewrites the positions after the
+ * last one that can still grow.
+ * <p>
+ * The lexicographic rank of a combination, between 0 and C(n, k) - 1, can be
+ * computed with {@link #rank(int[], int)} and reversed with {@link #unrank(long, int, int)}.
+ * A cursor can cover any range of ranks, and its {@link #spliterator()} splits
+ * its range in halves, so the combinations can be evaluated by a parallel stream.
+ * <p>
+ * Equal elements in the input are combined as distinct positions, so the
+ * cursor returns exactly C(n, k) combinations, which must fit in a long. The
+ * {@code remove()} operation is not supported.
+ *
+ * @param <E>  the type of the objects being combined
+ * @see SubsetCursor
+ * @since 4.5
+ */
+public class CombinationCursor<E> extends AbstractRankCursor<E> {
+
+    /** The number of rows of the table of binomial coefficients */
+    private static final int PASCAL_ROWS = 68;
+
+    /** The binomial coefficients C(m, r) for m below {@link #PASCAL_ROWS}, Long.MAX_VALUE on overflow */
+    private static final long[][] PASCAL = new long[PASCAL_ROWS][];
+
+    static {
+        for (int m = 0; m < PASCAL_ROWS; m++) {
+            PASCAL[m] = new long[m + 1];
+            PASCAL[m][0] = 1;
+            PASCAL[m][m] = 1;
+            for (int r = 1; r < m; r++) {
+                final long sum = PASCAL[m - 1][r - 1] + PASCAL[m - 1][r];
+                PASCAL[m][r] = sum < 0 ? Long.MAX_VALUE : sum;
+            }
+        }
+    }
+
+    /** The increasing positions of the elements of the current combination */
+    private final int[] indices;
+    /** The elements of the current combination */
+    private final Object[] buffer;
+    /** The unmodifiable view of the buffer returned by {@link #next()} */
+    private final List<E> combination;
+
+    /**
+     * Constructs a cursor over all the k-combinations of a collection.
+     *
+     * @param coll  the collection to generate combinations for
+     * @param k  the number of elements in each combination
+     * @throws NullPointerException if coll is null
+     * @throws IllegalArgumentException if k is negative or greater than the size of coll,
+     *   or the number of combinations does not fit in a long
+     */
+    public CombinationCursor(final Collection<? extends E> coll, final int k) {
+        this(toArray(coll), k);
+    }
+
+    /**
+     * Constructs a cursor over the k-combinations of a collection with a rank
+     * in a range.
+     *
+     * @param coll  the collection to generate combinations for
+     * @param k  the number of elements in each combination
+     * @param fromRank  the rank of the first combination, inclusive
+     * @param toRank  the rank after the last combination, exclusive
+     * @throws NullPointerException if coll is null
+     * @throws IllegalArgumentException if k is negative or greater than the size of coll,
+     *   or the number of combinations does not fit in a long
+     * @throws IndexOutOfBoundsException if the range is not within 0 and C(n, k)
+     */
+    public CombinationCursor(final Collection<? extends E> coll, final int k,
+                             final long fromRank, final long toRank) {
+        this(toArray(coll), k, fromRank, toRank);
+    }
+
+    private CombinationCursor(final Object[] elements, final int k) {
+        this(elements, k, 0, count(elements.length, k));
+    }
+
+    private CombinationCursor(final Object[] elements, final int k, final long fromRank, final long toRank) {
+        super(elements, fromRank, toRank, count(elements.length, k));
+        indices = new int[k];
+        buffer = new Object[k];
+        @SuppressWarnings("unchecked") // the buffer only holds elements of the collection
+        final List<E> view = (List<E>) Collections.unmodifiableList(Arrays.asList(buffer));
+        combination = view;
+    }
+
+    private static Object[] toArray(final Collection<?> coll) {
+        if (coll == null) {
+            throw new NullPointerException("The collection must not be null");
+        }
+        return coll.toArray();
+    }
+
+    //-----------------------------------------------------------------------
+    @Override
+    void position(final long rank) {
+        unrank(rank, elements.length, indices);
+        update(0);
+    }
+
+    @Override
+    void advance() {
+        // the last position that is not already as high as it can be grows by one,
+        // and the positions after it follow it
+        final int n = elements.length;
+        final int k = indices.length;
+        int i = k - 1;
+        while (indices[i] == n - k + i) {
+            i--;
+        }
+        int value = indices[i];
+        for (int j = i; j < k; j++) {
+            indices[j] = ++value;
+        }
+        update(i);
+    }
+
+    /**
+     * Copies the elements of the positions from a position on into the buffer.
+     */
+    private void update(final int from) {
+        for (int i = from; i < indices.length; i++) {
+            buffer[i] = elements[indices[i]];
+        }
+    }
+
+    @Override
+    List<E> current() {
+        return combination;
+    }
+
+    @Override
+    AbstractRankCursor<E> range(final long fromRank, final long toRank) {
+        return new CombinationCursor<>(elements, indices.length, fromRank, toRank);
+    }
+
+    /**
+     * Gets the position in the input collection of an element of the combination
+     * last returned by {@link #next()}.
+     *
+     * @param position  the position in the combination
+     * @return the position of the element in the input collection
+     * @throws IllegalStateException if no combination has been returned yet
+     * @throws IndexOutOfBoundsException if the position is out of range
+     */
+    public int getIndex(final int position) {
+        checkPositioned();
+        return indices[position];
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Returns the number of k-combinations of n elements.
+     *
+     * @param n  the number of elements
+     * @param k  the number of elements in each combination
+     * @return C(n, k)
+     * @throws IllegalArgumentException if k is negative or greater than n,
+     *   or the number of combinations does not fit in a long
+     */
+    public static long count(final int n, final int k) {
+        if (k < 0 || k > n) {
+            throw new IllegalArgumentException("The size of the combinations must be between 0 and " + n);
+        }
+        final long count = binomial(n, k);
+        if (count == Long.MAX_VALUE) {
+            throw new IllegalArgumentException("The number of combinations does not fit in a long");
+        }
+        return count;
+    }
+
+    /**
+     * Returns the lexicographic rank of a k-combination of 0 to n - 1.
+     *
+     * @param combination  the increasing positions of the combination, must not be null
+     * @param n  the number of elements
+     * @return the rank, between 0 and C(n, k) - 1
+     * @throws NullPointerException if the combination is null
+     * @throws IllegalArgumentException if the positions are not increasing and between 0 and n - 1,
+     *   or the number of combinations does not fit in a long
+     */
+    public static long rank(final int[] combination, final int n) {
+        if (combination == null) {
+            throw new NullPointerException("The combination must not be null");
+        }
+        final int k = combination.length;
+        count(n, k);
+        long rank = 0;
+        int previous = -1;
+        for (int i = 0; i < k; i++) {
+            final int value = combination[i];
+            if (value <= previous || value >= n) {
+                throw new IllegalArgumentException("Not a combination of " + n + " elements: " +
+                        Arrays.toString(combination));
+            }
+            // skip the combinations with a smaller value at this position, summed by the hockey-stick identity
+            rank += binomial(n - previous - 1, k - i) - binomial(n - value, k - i);
+            previous = value;
+        }
+        return rank;
+    }
+
+    /**
+     * Returns the k-combination of 0 to n - 1 with a lexicographic rank.
+     *
+     * @param rank  the rank, between 0 and C(n, k) - 1
+     * @param n  the number of elements
+     * @param k  the number of elements in the combination
+     * @return a new array holding the increasing positions of the combination
+     * @throws IllegalArgumentException if k is negative or greater than n,
+     *   or the number of combinations does not fit in a long
+     * @throws IndexOutOfBoundsException if the rank is out of range
+     */
+    public static int[] unrank(final long rank, final int n, final int k) {
+        final long count = count(n, k);
+        if (rank < 0 || rank >= count) {
+            throw new IndexOutOfBoundsException("Rank " + rank + " is not within [0, " + count + ")");
+        }
+        final int[] combination = new int[k];
+        unrank(rank, n, combination);
+        return combination;
+    }
+
+    /**
+     * Fills an array with the combination of the given rank, which must be in range.
+     */
+    private static void unrank(final long rank, final int n, final int[] combination) {
+        final int k = combination.length;
+        long remainder = rank;
+        int previous = -1;
+        for (int i = 0; i < k; i++) {
+            // binary search for the largest value whose preceding combinations
+            // with this prefix are not more than the remainder
+            final long total = binomial(n - previous - 1, k - i);
+            int lo = previous + 1;
+            int hi = n - k + i;
+            while (lo < hi) {
+                final int mid = lo + hi + 1 >>> 1;
+                if (total - binomial(n - mid, k - i) <= remainder) {
+                    lo = mid;
+                } else {
+                    hi = mid - 1;
+                }
+            }
+            remainder -= total - binomial(n - lo, k - i);
+            combination[i] = lo;
+            previous = lo;
+        }
+    }
+
+    /**
+     * Returns C(m, r), or Long.MAX_VALUE if it does not fit in a long.
+     */
+    static long binomial(final int m, final int r) {
+        if (r < 0 || r > m) {
+            return 0;
+        }
+        if (m < PASCAL_ROWS) {
+            return PASCAL[m][r];
+        }
+        final int s = Math.min(r, m - r);
+        long result = 1;
+        for (int i = 1; i <= s; i++) {
+            // result * (m - s + i) is divisible by i, so dividing by the common factors first is exact
+            final long g = gcd(result, i);
+            final long divisor = i / g;
+            try {
+                result = Math.multiplyExact(result / g, (m - s + i) / divisor);
+            } catch (final ArithmeticException ex) {
+                return Long.MAX_VALUE;
+            }
+        }
+        return result;
+    }
+
+    private static long gcd(final long a, final long b) {
+        long x = a;
+        long y = b;
+        while (y != 0) {
+            final long t = x % y;
+            x = y;
+            y = t;
+        }
+        return x;
+    }
+
+}
@@ -0,0 +1,457 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.collections4.iterators;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Sorts the elements of an {@link Iterator} that may not fit in memory, by
+ * spilling sorted runs to temporary files and merging them with a
+ * {@link CollatingIterator}.
+ * <p>
+ * The input is read in runs of at most {@link #getRunSize() run size} elements.
+ * Each run is sorted with {@link Arrays#parallelSort(Object[], int, int, Comparator)}
+ * and written to a temporary file with the {@link Codec} given to the constructor.
+ * If there are more runs than the {@link #getFanIn() fan-in}, groups of runs are
+ * merged into longer runs until there are few enough of them. The returned
+ * {@link SortedIterator} then merges the remaining runs lazily, reading each
+ * file through a small buffer, and deletes the files once it is exhausted or
+ * closed. An input that fits in a single run is sorted in memory and never
+ * written to disk.
+ * <p>
+ * The sort is stable: elements that compare as equal are returned in the
+ * order of the input.
+ * <p>
+ * This class is not thread-safe, but one sorter can be used for any number
+ * of sorts in sequence.
+ *
+ * @param <E> the type of the elements to sort
+ * @since 4.5
+ */
+public class ExternalSorter<E> {
+
+    /** The default number of elements sorted in memory per run */
+    public static final int DEFAULT_RUN_SIZE = 1 << 16;
+
+    /** The default maximum number of runs merged at once */
+    public static final int DEFAULT_FAN_IN = 64;
+
+    /** The size of the buffer of each run file */
+    private static final int BUFFER_SIZE = 1 << 13;
+
+    /** The initial capacity of the run buffer */
+    private static final int INITIAL_CAPACITY = 1 << 10;
+
+    /**
+     * Writes elements to and reads elements from the temporary run files.
+     * <p>
+     * An element read back must compare as equal to the element written, and
+     * {@link #read(DataInput)} must consume exactly the bytes written by
+     * {@link #write(Object, DataOutput)}.
+     *
+     * @param <E> the type of the elements
+     */
+    public interface Codec<E> {
+
+        /**
+         * Writes an element.
+         *
+         * @param element  the element to write
+         * @param out  the output to write to
+         * @throws IOException if the element cannot be written
+         */
+        void write(E element, DataOutput out) throws IOException;
+
+        /**
+         * Reads an element written by {@link #write(Object, DataOutput)}.
+         *
+         * @param in  the input to read from
+         * @return the element read
+         * @throws IOException if the element cannot be read
+         */
+        E read(DataInput in) throws IOException;
+    }
+
+    /** The order to sort by */
+    private final Comparator<? super E> comparator;
+    /** The codec of the run files */
+    private final Codec<E> codec;
+    /** The maximum number of elements sorted in memory */
+    private int runSize = DEFAULT_RUN_SIZE;
+    /** The maximum number of runs merged at once */
+    private int fanIn = DEFAULT_FAN_IN;
+    /** The directory of the run files, null for the default temporary directory */
+    private Path tempDirectory;
+
+    /**
+     * Constructs a sorter with the default run size and fan-in, writing its
+     * runs to the default temporary directory.
+     *
+     * @param comparator  the comparator to sort by, must not be null
+     * @param codec  the codec of the elements, must not be null
+     * @throws NullPointerException if the comparator or the codec is null
+     */
+    public ExternalSorter(final Comparator<? super E> comparator, final Codec<E> codec) {
+        if (comparator == null) {
+            throw new NullPointerException("Comparator must not be null");
+        }
+        if (codec == null) {
+            throw new NullPointerException("Codec must not be null");
+        }
+        this.comparator = comparator;
+        this.codec = codec;
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Gets the maximum number of elements held in memory while a run is sorted.
+     *
+     * @return the run size
+     */
+    public int getRunSize() {
+        return runSize;
+    }
+
+    /**
+     * Sets the maximum number of elements held in memory while a run is
+     * sorted, which bounds the memory used by a sort.
+     *
+     * @param runSize  the run size, at least 1
+     * @throws IllegalArgumentException if the run size is less than 1
+     */
+    public void setRunSize(final int runSize) {
+        if (runSize < 1) {
+            throw new IllegalArgumentException("Run size must be at least 1");
+        }
+        this.runSize = runSize;
+    }
+
+    /**
+     * Gets the maximum number of runs merged at once.
+     *
+     * @return the fan-in
+     */
+    public int getFanIn() {
+        return fanIn;
+    }
+
+    /**
+     * Sets the maximum number of runs merged at once, which bounds the number
+     * of files open at the same time.
+     *
+     * @param fanIn  the fan-in, at least 2
+     * @throws IllegalArgumentException if the fan-in is less than 2
+     */
+    public void setFanIn(final int fanIn) {
+        if (fanIn < 2) {
+            throw new IllegalArgumentException("Fan-in must be at least 2");
+        }
+        this.fanIn = fanIn;
+    }
+
+    /**
+     * Gets the directory the run files are written to.
+     *
+     * @return the directory, null for the default temporary directory
+     */
+    public Path getTempDirectory() {
+        return tempDirectory;
+    }
+
+    /**
+     * Sets the directory the run files are written to.
+     *
+     * @param tempDirectory  the directory, null for the default temporary directory
+     */
+    public void setTempDirectory(final Path tempDirectory) {
+        this.tempDirectory = tempDirectory;
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Sorts the remaining elements of an iterator.
+     * <p>
+     * The input is consumed entirely before this method returns, and the run
+     * files are written by then; the merge of the runs happens as the returned
+     * iterator is advanced.
+     *
+     * @param iterator  the iterator to sort, must not be null
+     * @return an iterator over the sorted elements, to be closed if it is not exhausted
+     * @throws NullPointerException if the iterator is null
+     * @throws IOException if a run file cannot be written or merged
+     */
+    public SortedIterator<E> sort(final Iterator<? extends E> iterator) throws IOException {
+        if (iterator == null) {
+            throw new NullPointerException("Iterator must not be null");
+        }
+        Object[] buffer = new Object[Math.min(runSize, INITIAL_CAPACITY)];
+        List<Path> runs = new ArrayList<>();
+        try {
+            while (iterator.hasNext()) {
+                int size = 0;
+                while (size < runSize && iterator.hasNext()) {
+                    if (size == buffer.length) {
+                        buffer = Arrays.copyOf(buffer, (int) Math.min(runSize, 2L * size));
+                    }
+                    buffer[size++] = iterator.next();
+                }
+                @SuppressWarnings("unchecked") // the buffer only holds elements of the iterator
+                final E[] run = (E[]) buffer;
+                Arrays.parallelSort(run, 0, size, comparator);
+                if (runs.isEmpty() && !iterator.hasNext()) {
+                    return new SortedIterator<>(new ObjectArrayIterator<>(run, 0, size), runs);
+                }
+                runs.add(writeRun(new ObjectArrayIterator<>(run, 0, size), size));
+                Arrays.fill(buffer, 0, size, null);
+            }
+            buffer = null;
+            while (runs.size() > fanIn) {
+                runs = mergePass(runs);
+            }
+            return new SortedIterator<>(merge(runs), runs);
+        } catch (final IOException | RuntimeException | Error ex) {
+            delete(runs);
+            throw ex;
+        }
+    }
+
+    /**
+     * Merges consecutive groups of at most {@link #fanIn} runs into longer runs,
+     * keeping the order of the runs so that the sort stays stable.
+     */
+    private List<Path> mergePass(final List<Path> runs) throws IOException {
+        final List<Path> merged = new ArrayList<>((runs.size() + fanIn - 1) / fanIn);
+        try {
+            for (int from = 0; from < runs.size(); from += fanIn) {
+                final List<Path> group = runs.subList(from, Math.min(runs.size(), from + fanIn));
+                long size = 0;
+                for (final Path run : group) {
+                    size += runLength(run);
+                }
+                final Iterator<E> iterator = merge(group);
+                try {
+                    merged.add(writeRun(iterator, size));
+                } finally {
+                    closeAll(iterator);
+                }
+            }
+        } catch (final IOException | RuntimeException | Error ex) {
+            delete(merged);
+            throw ex;
+        }
+        delete(runs);
+        return merged;
+    }
+
+    /**
+     * Returns an iterator merging runs, whose readers are closed as they run out.
+     */
+    private Iterator<E> merge(final List<Path> runs) throws IOException {
+        final CollatingIterator<E> merger = new CollatingIterator<>(comparator, runs.size());
+        try {
+            for (final Path run : runs) {
+                merger.addIterator(new RunReader(run));
+            }
+        } catch (final IOException | RuntimeException | Error ex) {
+            closeAll(merger);
+            throw ex;
+        }
+        return merger;
+    }
+
+    /**
+     * Writes a sorted run of a known number of elements to a new temporary file.
+     */
+    private Path writeRun(final Iterator<? extends E> elements, final long size) throws IOException {
+        final Path file = tempDirectory == null ?
+                Files.createTempFile("sort", ".run") : Files.createTempFile(tempDirectory, "sort", ".run");
+        try (DataOutputStream out =
+                new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), BUFFER_SIZE))) {
+            out.writeLong(size);
+            while (elements.hasNext()) {
+                codec.write(elements.next(), out);
+            }
+        } catch (final UncheckedIOException ex) {
+            Files.deleteIfExists(file);
+            throw ex.getCause();
+        } catch (final IOException | RuntimeException | Error ex) {
+            Files.deleteIfExists(file);
+            throw ex;
+        }
+        return file;
+    }
+
+    private static long runLength(final Path run) throws IOException {
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(run))) {
+            return in.readLong();
+        }
+    }
+
+    /**
+     * Closes the run readers of a merging iterator.
+     */
+    private static void closeAll(final Iterator<?> merger) {
+        if (merger instanceof CollatingIterator<?>) {
+            for (final Iterator<?> reader : ((CollatingIterator<?>) merger).getIterators()) {
+                ((ExternalSorter<?>.RunReader) reader).close();
+            }
+        }
+    }
+
+    /**
+     * Deletes run files, ignoring those that cannot be deleted.
+     */
+    private static void delete(final List<Path> runs) {
+        for (final Path run : runs) {
+            try {
+                Files.deleteIfExists(run);
+            } catch (final IOException ex) {
+                // the file is in a temporary directory
+            }
+        }
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Reads the elements of a run file, closing it after the last one.
+     */
+    private final class RunReader implements Iterator<E>, Closeable {
+
+        /** The open file, null once closed */
+        private DataInputStream in;
+        /** The number of elements left to read */
+        private long remaining;
+
+        RunReader(final Path run) throws IOException {
+            in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run), BUFFER_SIZE));
+            try {
+                remaining = in.readLong();
+            } catch (final IOException ex) {
+                close();
+                throw ex;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return remaining > 0;
+        }
+
+        @Override
+        public E next() {
+            if (remaining <= 0) {
+                throw new NoSuchElementException();
+            }
+            try {
+                final E element = codec.read(in);
+                if (--remaining == 0) {
+                    close();
+                }
+                return element;
+            } catch (final IOException ex) {
+                close();
+                throw new UncheckedIOException(ex);
+            }
+        }
+
+        @Override
+        public void close() {
+            remaining = 0;
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (final IOException ex) {
+                    // nothing more is read from the file
+                }
+                in = null;
+            }
+        }
+    }
+
+    /**
+     * An iterator over the result of a sort, which deletes the run files once
+     * it is exhausted or closed.
+     * <p>
+     * Reading a run file may fail while the iterator is advanced, in which
+     * case an {@link UncheckedIOException} is thrown.
+     *
+     * @param <E> the type of the elements
+     */
+    public static final class SortedIterator<E> implements Iterator<E>, Closeable {
+
+        /** The merged elements */
+        private final Iterator<E> iterator;
+        /** The run files left to delete */
+        private final List<Path> runs;
+        /** Whether the iterator has been closed */
+        private boolean closed;
+
+        SortedIterator(final Iterator<E> iterator, final List<Path> runs) {
+            this.iterator = iterator;
+            this.runs = runs;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (!closed && iterator.hasNext()) {
+                return true;
+            }
+            close();
+            return false;
+        }
+
+        @Override
+        public E next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return iterator.next();
+        }
+
+        /**
+         * Closes the run files and deletes them. The iterator has no more
+         * elements afterwards.
+         */
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            closeAll(iterator);
+            delete(runs);
+            runs.clear();
+        }
+    }
+
+}
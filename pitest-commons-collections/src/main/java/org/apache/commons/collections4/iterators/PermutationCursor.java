@@ -0,0 +1,284 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.collections4.iterators;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This iterator returns the permutations of an input collection in
+ * lexicographic order of the positions of the elements in the collection,
+ * without allocating per permutation.
+ * <p>
+ * Every call to {@link #next()} returns the <b>same</b> unmodifiable list,
+ * updated in place to hold the next permutation. Copy it if it has to be kept
+ * beyond the next call. The permutation is computed on an {@code int[]} of
+ * positions, whose values are available from {@link #getIndex(int)}.
+ * <p>
+ * The lexicographic rank of a permutation, between 0 and n! - 1, can be
+ * computed with {@link #rank(int[])} and reversed with {@link #unrank(long, int)}.
+ * A cursor can cover any range of ranks, and its {@link #spliterator()} splits
+ * its range in halves, so the permutations can be searched by a parallel stream:
+ * <pre>
+ * StreamSupport.stream(new PermutationCursor&lt;&gt;(jobs).spliterator(), true)
+ *     .filter(schedule -&gt; isFeasible(schedule))
+ *     .map(ArrayList::new)
+ *     .findAny();
+ * </pre>
+ * Equal elements in the input are permuted as distinct positions, so the
+ * cursor returns exactly n! permutations. As 21! does not fit in a long, the
+ * input may have at most {@link #MAX_SIZE} elements. An empty input has one
+ * empty permutation. The {@code remove()} operation is not supported.
+ *
+ * @param <E>  the type of the objects being permuted
+ * @see PermutationIterator
+ * @see CombinationCursor
+ * @since 4.5
+ */
+public class PermutationCursor<E> extends AbstractRankCursor<E> {
+
+    /** The largest number of elements whose permutations can be ranked in a long */
+    public static final int MAX_SIZE = 20;
+
+    /** The factorials that fit in a long */
+    private static final long[] FACTORIALS = new long[MAX_SIZE + 1];
+
+    static {
+        FACTORIALS[0] = 1;
+        for (int i = 1; i <= MAX_SIZE; i++) {
+            FACTORIALS[i] = FACTORIALS[i - 1] * i;
+        }
+    }
+
+    /** The positions of the elements of the current permutation */
+    private final int[] indices;
+    /** The elements of the current permutation */
+    private final Object[] buffer;
+    /** The unmodifiable view of the buffer returned by {@link #next()} */
+    private final List<E> permutation;
+
+    /**
+     * Constructs a cursor over all the permutations of a collection.
+     *
+     * @param coll  the collection to generate permutations for
+     * @throws NullPointerException if coll is null
+     * @throws IllegalArgumentException if coll has more than {@link #MAX_SIZE} elements
+     */
+    public PermutationCursor(final Collection<? extends E> coll) {
+        this(toArray(coll));
+    }
+
+    /**
+     * Constructs a cursor over the permutations of a collection with a rank in
+     * a range.
+     *
+     * @param coll  the collection to generate permutations for
+     * @param fromRank  the rank of the first permutation, inclusive
+     * @param toRank  the rank after the last permutation, exclusive
+     * @throws NullPointerException if coll is null
+     * @throws IllegalArgumentException if coll has more than {@link #MAX_SIZE} elements
+     * @throws IndexOutOfBoundsException if the range is not within 0 and n!
+     */
+    public PermutationCursor(final Collection<? extends E> coll, final long fromRank, final long toRank) {
+        this(toArray(coll), fromRank, toRank);
+    }
+
+    private PermutationCursor(final Object[] elements) {
+        this(elements, 0, FACTORIALS[elements.length]);
+    }
+
+    private PermutationCursor(final Object[] elements, final long fromRank, final long toRank) {
+        super(elements, fromRank, toRank, FACTORIALS[elements.length]);
+        indices = new int[elements.length];
+        buffer = new Object[elements.length];
+        @SuppressWarnings("unchecked") // the buffer only holds elements of the collection
+        final List<E> view = (List<E>) Collections.unmodifiableList(Arrays.asList(buffer));
+        permutation = view;
+    }
+
+    private static Object[] toArray(final Collection<?> coll) {
+        if (coll == null) {
+            throw new NullPointerException("The collection must not be null");
+        }
+        final Object[] elements = coll.toArray();
+        if (elements.length > MAX_SIZE) {
+            throw new IllegalArgumentException("The collection must not have more than " + MAX_SIZE + " elements");
+        }
+        return elements;
+    }
+
+    //-----------------------------------------------------------------------
+    @Override
+    void position(final long rank) {
+        unrank(rank, indices);
+        update(0);
+    }
+
+    @Override
+    void advance() {
+        update(nextPermutation(indices));
+    }
+
+    /**
+     * Copies the elements of the positions from a position on into the buffer.
+     */
+    private void update(final int from) {
+        for (int i = from; i < indices.length; i++) {
+            buffer[i] = elements[indices[i]];
+        }
+    }
+
+    @Override
+    List<E> current() {
+        return permutation;
+    }
+
+    @Override
+    AbstractRankCursor<E> range(final long fromRank, final long toRank) {
+        return new PermutationCursor<>(elements, fromRank, toRank);
+    }
+
+    /**
+     * Gets the position in the input collection of an element of the permutation
+     * last returned by {@link #next()}.
+     *
+     * @param position  the position in the permutation
+     * @return the position of the element in the input collection
+     * @throws IllegalStateException if no permutation has been returned yet
+     * @throws IndexOutOfBoundsException if the position is out of range
+     */
+    public int getIndex(final int position) {
+        checkPositioned();
+        return indices[position];
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Returns the number of permutations of n elements.
+     *
+     * @param n  the number of elements
+     * @return n!
+     * @throws IllegalArgumentException if n is negative or greater than {@link #MAX_SIZE}
+     */
+    public static long count(final int n) {
+        if (n < 0 || n > MAX_SIZE) {
+            throw new IllegalArgumentException("The number of elements must be between 0 and " + MAX_SIZE);
+        }
+        return FACTORIALS[n];
+    }
+
+    /**
+     * Returns the lexicographic rank of a permutation of 0 to n - 1.
+     *
+     * @param permutation  the permutation, must not be null
+     * @return the rank, between 0 and n! - 1
+     * @throws NullPointerException if the permutation is null
+     * @throws IllegalArgumentException if the array is not a permutation of 0 to n - 1,
+     *   or n is greater than {@link #MAX_SIZE}
+     */
+    public static long rank(final int[] permutation) {
+        if (permutation == null) {
+            throw new NullPointerException("The permutation must not be null");
+        }
+        final int n = permutation.length;
+        if (n > MAX_SIZE) {
+            throw new IllegalArgumentException("The permutation must not have more than " + MAX_SIZE + " elements");
+        }
+        // the bits of the values not used yet
+        int unused = (1 << n) - 1;
+        long rank = 0;
+        for (int i = 0; i < n; i++) {
+            final int value = permutation[i];
+            if (value < 0 || value >= n || (unused & 1 << value) == 0) {
+                throw new IllegalArgumentException("Not a permutation: " + Arrays.toString(permutation));
+            }
+            // the number of smaller values still unused is the digit of the Lehmer code
+            rank += Integer.bitCount(unused & (1 << value) - 1) * FACTORIALS[n - 1 - i];
+            unused &= ~(1 << value);
+        }
+        return rank;
+    }
+
+    /**
+     * Returns the permutation of 0 to n - 1 with a lexicographic rank.
+     *
+     * @param rank  the rank, between 0 and n! - 1
+     * @param n  the number of elements
+     * @return a new array holding the permutation
+     * @throws IllegalArgumentException if n is negative or greater than {@link #MAX_SIZE}
+     * @throws IndexOutOfBoundsException if the rank is out of range
+     */
+    public static int[] unrank(final long rank, final int n) {
+        if (rank < 0 || rank >= count(n)) {
+            throw new IndexOutOfBoundsException("Rank " + rank + " is not within [0, " + FACTORIALS[n] + ")");
+        }
+        final int[] permutation = new int[n];
+        unrank(rank, permutation);
+        return permutation;
+    }
+
+    /**
+     * Fills an array with the permutation of the given rank, which must be in range.
+     */
+    private static void unrank(final long rank, final int[] permutation) {
+        final int n = permutation.length;
+        int unused = (1 << n) - 1;
+        long remainder = rank;
+        for (int i = 0; i < n; i++) {
+            final long f = FACTORIALS[n - 1 - i];
+            int digit = (int) (remainder / f);
+            remainder -= digit * f;
+            // take the unused value with digit unused values below it
+            int bits = unused;
+            while (digit-- > 0) {
+                bits &= bits - 1;
+            }
+            final int value = Integer.numberOfTrailingZeros(bits);
+            permutation[i] = value;
+            unused &= ~(1 << value);
+        }
+    }
+
+    /**
+     * Advances an array to the next permutation in lexicographic order, which
+     * must exist, and returns the first position that changed.
+     */
+    private static int nextPermutation(final int[] a) {
+        int i = a.length - 2;
+        while (a[i] > a[i + 1]) {
+            i--;
+        }
+        int j = a.length - 1;
+        while (a[j] < a[i]) {
+            j--;
+        }
+        swap(a, i, j);
+        for (int lo = i + 1, hi = a.length - 1; lo < hi; lo++, hi--) {
+            swap(a, lo, hi);
+        }
+        return i;
+    }
+
+    private static void swap(final int[] a, final int i, final int j) {
+        final int tmp = a[i];
+        a[i] = a[j];
+        a[j] = tmp;
+    }
+
+}
@@ -19,10 +19,8 @@ package org.apache.commons.collections4.iterators;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 import java.util.NoSuchElementException;
 
 /**
@@ -35,9 +33,13 @@ import java.util.NoSuchElementException;
  * <p>
  * NOTE: in case an empty collection is provided, the iterator will
  * return exactly one empty list as result, as 0! = 1.
+ * <p>
+ * Every permutation is returned in a new list. To enumerate many permutations
+ * without allocating, or to split them between threads, use a
+ * {@link PermutationCursor}.
  *
  * @param <E>  the type of the objects being permuted
- *
+ * @see PermutationCursor
  * @since 4.0
  */
 public class PermutationIterator<E> implements Iterator<List<E>> {
@@ -48,9 +50,9 @@ public class PermutationIterator<E> implements Iterator<List<E>> {
     private final int[] keys;
 
     /**
-     * Mapping between keys and objects.
+     * Mapping between keys and objects, the object of key k being at index k - 1.
      */
-    private final Map<Integer, E> objectMap;
+    private final E[] objects;
 
     /**
      * Direction table used in the algorithm:
@@ -77,17 +79,16 @@ public class PermutationIterator<E> implements Iterator<List<E>> {
             throw new NullPointerException("The collection must not be null");
         }
 
-        keys = new int[coll.size()];
-        direction = new boolean[coll.size()];
+        @SuppressWarnings("unchecked") // the array only holds elements of coll
+        final E[] array = (E[]) coll.toArray();
+        objects = array;
+        keys = new int[objects.length];
+        direction = new boolean[objects.length];
         Arrays.fill(direction, false);
-        int value = 1;
-        objectMap = new HashMap<>();
-        for (final E e : coll) {
-            objectMap.put(Integer.valueOf(value), e);
-            keys[value - 1] = value;
-            value++;
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = i + 1;
         }
-        nextPermutation = new ArrayList<>(coll);
+        nextPermutation = new ArrayList<>(Arrays.asList(objects));
     }
 
     /**
@@ -138,12 +139,12 @@ public class PermutationIterator<E> implements Iterator<List<E>> {
         direction[indexOfLargestMobileInteger + offset] = tmpDirection;
 
         // reverse the direction of all integers larger than k and build the result
-        final List<E> nextP = new ArrayList<>();
+        final List<E> nextP = new ArrayList<>(keys.length);
         for (int i = 0; i < keys.length; i++) {
             if (keys[i] > largestKey) {
                 direction[i] = !direction[i];
             }
-            nextP.add(objectMap.get(Integer.valueOf(keys[i])));
+            nextP.add(objects[keys[i] - 1]);
         }
         final List<E> result = nextPermutation;
         nextPermutation = nextP;
@@ -0,0 +1,189 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.collections4.iterators;
+
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+import org.apache.commons.collections4.ResettableIterator;
+
+/**
+ * An Iterator over the elements of a list in a pseudo-random order, without
+ * copying the list.
+ * <p>
+ * The order is given by a bijection of the indices of the list, computed one
+ * index at a time by a four round Feistel network whose round keys are derived
+ * from a seed. The network permutes the smallest domain of an even number of
+ * bits that holds every index; the iterator feeds it the values of the domain
+ * in turn and skips the outputs beyond the end of the list, so every index is
+ * visited exactly once. As the domain is less than four times the size of the
+ * list, each element costs a few evaluations of the network on average, and the
+ * iterator only keeps two counters, whatever the size of the list.
+ * <p>
+ * The same seed and list size always give the same order, and {@link #reset()}
+ * restarts it. The order is suitable for sampling and load spreading, not for
+ * cryptographic purposes.
+ * <p>
+ * The list should be a {@link RandomAccess} list; its size must not change
+ * while it is iterated. The {@code remove()} operation is not supported.
+ *
+ * @param <E> the type of the elements
+ * @since 4.5
+ */
+public class ShuffleIterator<E> implements ResettableIterator<E> {
+
+    /** The number of rounds of the Feistel network */
+    private static final int ROUNDS = 4;
+
+    /** The list to iterate over */
+    private final List<? extends E> list;
+    /** The size of the list when the iterator was created */
+    private final int size;
+    /** The number of bits of each half of the domain */
+    private final int halfBits;
+    /** The mask of each half of the domain */
+    private final int halfMask;
+    /** The round keys */
+    private final int[] keys = new int[ROUNDS];
+    /** The number of elements returned */
+    private int count;
+    /** The next value of the domain to feed the network */
+    private long input;
+
+    /**
+     * Constructs an iterator over a list in the order given by a seed.
+     *
+     * @param list  the list to iterate over, not null
+     * @param seed  the seed of the order
+     * @throws NullPointerException if the list is null
+     */
+    public ShuffleIterator(final List<? extends E> list, final long seed) {
+        if (list == null) {
+            throw new NullPointerException("The list must not be null");
+        }
+        this.list = list;
+        size = list.size();
+        // the smallest even number of bits whose domain holds every index, at least two
+        final int bits = Math.max(2, 32 - Integer.numberOfLeadingZeros(Math.max(0, size - 1)));
+        halfBits = bits + 1 >>> 1;
+        halfMask = (1 << halfBits) - 1;
+        long state = seed;
+        for (int r = 0; r < ROUNDS; r++) {
+            state += 0x9E3779B97F4A7C15L;
+            keys[r] = (int) (mix64(state) >>> 32);
+        }
+        reset();
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Returns true if there are more elements to return.
+     *
+     * @return true if there are more elements
+     */
+    @Override
+    public boolean hasNext() {
+        return count < size;
+    }
+
+    /**
+     * Returns the next element, in the shuffled order.
+     *
+     * @return the next element
+     * @throws NoSuchElementException if there are no more elements
+     */
+    @Override
+    public E next() {
+        return list.get(nextIndex());
+    }
+
+    /**
+     * Returns the index in the list of the next element, in the shuffled order,
+     * and moves past it.
+     *
+     * @return the index of the next element
+     * @throws NoSuchElementException if there are no more elements
+     */
+    public int nextIndex() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        // every input of the domain is visited once; the ones mapped outside the list are skipped
+        long index;
+        do {
+            index = permute(input++);
+        } while (index >= size);
+        count++;
+        return (int) index;
+    }
+
+    /**
+     * Throws {@link UnsupportedOperationException}.
+     *
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("remove() is not supported");
+    }
+
+    /**
+     * Resets the iterator back to the start of the same order.
+     */
+    @Override
+    public void reset() {
+        count = 0;
+        input = 0;
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Maps a value of the domain to another value of the domain, bijectively.
+     */
+    private long permute(final long value) {
+        int left = (int) (value >>> halfBits);
+        int right = (int) value & halfMask;
+        for (int r = 0; r < ROUNDS; r++) {
+            final int next = left ^ round(right, keys[r]) & halfMask;
+            left = right;
+            right = next;
+        }
+        return (long) left << halfBits | right;
+    }
+
+    /**
+     * The round function, mixing a half with a key.
+     */
+    private static int round(final int half, final int key) {
+        int h = (half ^ key) * 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        return h ^ h >>> 16;
+    }
+
+    /**
+     * The finalizer of SplitMix64, which derives the round keys from the seed.
+     */
+    private static long mix64(final long value) {
+        long z = value;
+        z = (z ^ z >>> 30) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ z >>> 27) * 0x94D049BB133111EBL;
+        return z ^ z >>> 31;
+    }
+
+}
@@ -0,0 +1,254 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.collections4.iterators;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * This iterator returns all the subsets of an input collection, the power set,
+ * each with its elements kept in input order, without allocating per subset.
+ * <p>
+ * Subsets are identified by a bit mask in which the first element of the input
+ * is the highest bit, and returned in increasing order of their masks: the empty
+ * subset first, then the subset of the last element, and the whole input last.
+ * The mask is also the rank of the subset, so {@link #rank(int[], int)} and
+ * {@link #unrank(long, int)} only convert between masks and positions. Moving
+ * to the next subset increments the mask, which only removes elements from and
+ * appends one element to the end of the subset.
+ * <p>
+ * Every call to {@link #next()} returns the <b>same</b> unmodifiable list,
+ * updated in place to hold the next subset. Copy it if it has to be kept beyond
+ * the next call. A cursor can cover any range of ranks, and its
+ * {@link #spliterator()} splits its range in halves, so the subsets can be
+ * evaluated by a parallel stream.
+ * <p>
+ * Equal elements in the input are treated as distinct positions, so the cursor
+ * returns exactly 2^n subsets. As the mask is a long, the input may have at
+ * most {@link #MAX_SIZE} elements. The {@code remove()} operation is not supported.
+ *
+ * @param <E>  the type of the objects in the subsets
+ * @see CombinationCursor
+ * @since 4.5
+ */
+public class SubsetCursor<E> extends AbstractRankCursor<E> {
+
+    /** The largest number of elements whose subsets can be ranked in a long */
+    public static final int MAX_SIZE = 62;
+
+    /** The mask of the current subset */
+    private long mask;
+    /** The increasing positions of the elements of the current subset */
+    private final int[] indices;
+    /** The elements of the current subset */
+    private final Object[] buffer;
+    /** The number of elements of the current subset */
+    private int size;
+    /** The view of the buffer returned by {@link #next()} */
+    private final List<E> subset = new SubsetView();
+
+    /**
+     * Constructs a cursor over all the subsets of a collection.
+     *
+     * @param coll  the collection to generate subsets for
+     * @throws NullPointerException if coll is null
+     * @throws IllegalArgumentException if coll has more than {@link #MAX_SIZE} elements
+     */
+    public SubsetCursor(final Collection<? extends E> coll) {
+        this(toArray(coll));
+    }
+
+    /**
+     * Constructs a cursor over the subsets of a collection with a rank in a range.
+     *
+     * @param coll  the collection to generate subsets for
+     * @param fromRank  the rank of the first subset, inclusive
+     * @param toRank  the rank after the last subset, exclusive
+     * @throws NullPointerException if coll is null
+     * @throws IllegalArgumentException if coll has more than {@link #MAX_SIZE} elements
+     * @throws IndexOutOfBoundsException if the range is not within 0 and 2^n
+     */
+    public SubsetCursor(final Collection<? extends E> coll, final long fromRank, final long toRank) {
+        this(toArray(coll), fromRank, toRank);
+    }
+
+    private SubsetCursor(final Object[] elements) {
+        this(elements, 0, 1L << elements.length);
+    }
+
+    private SubsetCursor(final Object[] elements, final long fromRank, final long toRank) {
+        super(elements, fromRank, toRank, 1L << elements.length);
+        indices = new int[elements.length];
+        buffer = new Object[elements.length];
+    }
+
+    private static Object[] toArray(final Collection<?> coll) {
+        if (coll == null) {
+            throw new NullPointerException("The collection must not be null");
+        }
+        final Object[] elements = coll.toArray();
+        if (elements.length > MAX_SIZE) {
+            throw new IllegalArgumentException("The collection must not have more than " + MAX_SIZE + " elements");
+        }
+        return elements;
+    }
+
+    //-----------------------------------------------------------------------
+    @Override
+    void position(final long rank) {
+        mask = rank;
+        size = 0;
+        final int n = elements.length;
+        for (long bits = Long.highestOneBit(rank); bits != 0; bits >>>= 1) {
+            if ((rank & bits) != 0) {
+                final int index = n - 1 - Long.numberOfTrailingZeros(bits);
+                indices[size] = index;
+                buffer[size++] = elements[index];
+            }
+        }
+    }
+
+    @Override
+    void advance() {
+        // the trailing ones are the last elements of the subset and are cleared,
+        // and the bit above them adds the element before them
+        final int ones = Long.numberOfTrailingZeros(~mask);
+        mask++;
+        size -= ones;
+        final int index = elements.length - 1 - ones;
+        indices[size] = index;
+        buffer[size++] = elements[index];
+    }
+
+    @Override
+    List<E> current() {
+        return subset;
+    }
+
+    @Override
+    AbstractRankCursor<E> range(final long fromRank, final long toRank) {
+        return new SubsetCursor<>(elements, fromRank, toRank);
+    }
+
+    /**
+     * Gets the position in the input collection of an element of the subset
+     * last returned by {@link #next()}.
+     *
+     * @param position  the position in the subset
+     * @return the position of the element in the input collection
+     * @throws IllegalStateException if no subset has been returned yet
+     * @throws IndexOutOfBoundsException if the position is out of range
+     */
+    public int getIndex(final int position) {
+        checkPositioned();
+        if (position < 0 || position >= size) {
+            throw new IndexOutOfBoundsException("Index: " + position + ", Size: " + size);
+        }
+        return indices[position];
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Returns the number of subsets of n elements.
+     *
+     * @param n  the number of elements
+     * @return 2^n
+     * @throws IllegalArgumentException if n is negative or greater than {@link #MAX_SIZE}
+     */
+    public static long count(final int n) {
+        if (n < 0 || n > MAX_SIZE) {
+            throw new IllegalArgumentException("The number of elements must be between 0 and " + MAX_SIZE);
+        }
+        return 1L << n;
+    }
+
+    /**
+     * Returns the rank of a subset of 0 to n - 1.
+     *
+     * @param subset  the distinct positions of the subset, in any order, must not be null
+     * @param n  the number of elements
+     * @return the rank, between 0 and 2^n - 1
+     * @throws NullPointerException if the subset is null
+     * @throws IllegalArgumentException if the positions are not distinct and between 0 and n - 1,
+     *   or n is greater than {@link #MAX_SIZE}
+     */
+    public static long rank(final int[] subset, final int n) {
+        if (subset == null) {
+            throw new NullPointerException("The subset must not be null");
+        }
+        count(n);
+        long rank = 0;
+        for (final int value : subset) {
+            final long bit = value < 0 || value >= n ? 0 : 1L << n - 1 - value;
+            if (bit == 0 || (rank & bit) != 0) {
+                throw new IllegalArgumentException("Not a subset of " + n + " elements: " + Arrays.toString(subset));
+            }
+            rank |= bit;
+        }
+        return rank;
+    }
+
+    /**
+     * Returns the subset of 0 to n - 1 with a rank.
+     *
+     * @param rank  the rank, between 0 and 2^n - 1
+     * @param n  the number of elements
+     * @return a new array holding the increasing positions of the subset
+     * @throws IllegalArgumentException if n is negative or greater than {@link #MAX_SIZE}
+     * @throws IndexOutOfBoundsException if the rank is out of range
+     */
+    public static int[] unrank(final long rank, final int n) {
+        final long count = count(n);
+        if (rank < 0 || rank >= count) {
+            throw new IndexOutOfBoundsException("Rank " + rank + " is not within [0, " + count + ")");
+        }
+        final int[] subset = new int[Long.bitCount(rank)];
+        int i = 0;
+        for (long bits = Long.highestOneBit(rank); bits != 0; bits >>>= 1) {
+            if ((rank & bits) != 0) {
+                subset[i++] = n - 1 - Long.numberOfTrailingZeros(bits);
+            }
+        }
+        return subset;
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * An unmodifiable view of the current subset.
+     */
+    private final class SubsetView extends AbstractList<E> implements RandomAccess {
+
+        @Override
+        public E get(final int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+            @SuppressWarnings("unchecked") // the buffer only holds elements of the collection
+            final E element = (E) buffer[index];
+            return element;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+}
@@ -0,0 +1,608 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.collections4.map;
+
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.ObjIntConsumer;
+
+import org.apache.commons.collections4.Equator;
+
+/**
+ * A hash table mapping object keys to primitive {@code int} values.
+ * <p>
+ * Keys and values are stored in two parallel arrays using open addressing
+ * with linear probing, so no entry objects and no boxed {@link Integer}
+ * values are allocated. This makes the table well suited for counting
+ * occurrences: {@link #increment(Object)} and {@link #addTo(Object, int)}
+ * update a value in place with a single probe sequence.
+ * <p>
+ * A key that is not present is treated as mapping to zero, which is the
+ * natural default for a count. Use {@link #containsKey(Object)} to tell a
+ * missing key from a key explicitly mapped to zero.
+ * <p>
+ * Keys are compared with {@link Object#equals(Object)} and {@link Object#hashCode()}
+ * unless an {@link Equator} is given, in which case the equator is used as the
+ * hashing strategy. Keys are stored as they are, so looking up a key never
+ * allocates a wrapper object.
+ * <p>
+ * The table permits {@code null} keys. It is not synchronized, and its
+ * iterators are fail-fast.
+ *
+ * @param <K> the type of the keys in this table
+ * @since 4.5
+ */
+public class ObjectIntHashMap<K> {
+
+    /** The default capacity to use */
+    protected static final int DEFAULT_CAPACITY = 16;
+    /** The maximum capacity allowed */
+    protected static final int MAXIMUM_CAPACITY = 1 << 30;
+    /** The load factor used when resizing */
+    protected static final float LOAD_FACTOR = 0.7f;
+
+    /** Marker stored in place of a {@code null} key */
+    private static final Object NULL_KEY = new Object();
+    /** Marker left behind by a removed key to keep probe sequences intact */
+    private static final Object REMOVED = new Object();
+
+    /** The hashing strategy, null to use equals and hashCode */
+    private final Equator<? super K> equator;
+    /** The key slots, {@code null} meaning free */
+    private Object[] keys;
+    /** The values, parallel to {@link #keys} */
+    private int[] values;
+    /** The number of live keys */
+    private int size;
+    /** The number of slots holding {@link #REMOVED} */
+    private int removed;
+    /** The number of used slots (live or removed) that triggers a rehash */
+    private int threshold;
+    /** The modification count for fail fast iterators */
+    private int modCount;
+
+    /**
+     * Constructs an empty table with the default capacity.
+     */
+    public ObjectIntHashMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs an empty table with the default capacity that compares keys
+     * with the given equator.
+     *
+     * @param equator  the equator used to hash and compare keys, null to use equals and hashCode
+     */
+    public ObjectIntHashMap(final Equator<? super K> equator) {
+        this(DEFAULT_CAPACITY, equator);
+    }
+
+    /**
+     * Constructs an empty table able to hold the given number of keys
+     * without resizing.
+     *
+     * @param expectedSize  the expected number of keys
+     * @throws IllegalArgumentException if the expected size is negative
+     */
+    public ObjectIntHashMap(final int expectedSize) {
+        this(expectedSize, null);
+    }
+
+    /**
+     * Constructs an empty table able to hold the given number of keys
+     * without resizing, that compares keys with the given equator.
+     *
+     * @param expectedSize  the expected number of keys
+     * @param equator  the equator used to hash and compare keys, null to use equals and hashCode
+     * @throws IllegalArgumentException if the expected size is negative
+     */
+    public ObjectIntHashMap(final int expectedSize, final Equator<? super K> equator) {
+        this.equator = equator;
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("Expected size must not be negative");
+        }
+        allocate(capacityFor(expectedSize));
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Gets the number of keys in this table.
+     *
+     * @return the number of keys
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Checks whether this table is empty.
+     *
+     * @return true if there are no keys
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Checks whether this table contains the given key.
+     *
+     * @param key  the key to search for, may be null
+     * @return true if the key is present
+     */
+    public boolean containsKey(final Object key) {
+        return indexOf(key) >= 0;
+    }
+
+    /**
+     * Gets the value mapped to the given key.
+     *
+     * @param key  the key to search for, may be null
+     * @return the value, zero if the key is not present
+     */
+    public int get(final Object key) {
+        return getOrDefault(key, 0);
+    }
+
+    /**
+     * Gets the value mapped to the given key, or a default if the key is not present.
+     *
+     * @param key  the key to search for, may be null
+     * @param defaultValue  the value to return if the key is not present
+     * @return the value mapped to the key, or the default value
+     */
+    public int getOrDefault(final Object key, final int defaultValue) {
+        final int index = indexOf(key);
+        return index < 0 ? defaultValue : values[index];
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Maps the given key to the given value.
+     *
+     * @param key  the key, may be null
+     * @param value  the value
+     * @return the previous value of the key, zero if it was not present
+     */
+    public int put(final K key, final int value) {
+        final int index = insertionIndex(key);
+        if (index >= 0) {
+            final int old = values[index];
+            values[index] = value;
+            return old;
+        }
+        insert(-index - 1, key, value);
+        return 0;
+    }
+
+    /**
+     * Adds one to the value mapped to the given key, inserting the key
+     * with a value of one if it is not present.
+     *
+     * @param key  the key, may be null
+     * @return the new value of the key
+     */
+    public int increment(final K key) {
+        return addTo(key, 1);
+    }
+
+    /**
+     * Adds the given amount to the value mapped to the given key, inserting the key
+     * with a value of {@code delta} if it is not present.
+     *
+     * @param key  the key, may be null
+     * @param delta  the amount to add, may be negative
+     * @return the new value of the key
+     */
+    public int addTo(final K key, final int delta) {
+        final int index = insertionIndex(key);
+        if (index >= 0) {
+            return values[index] += delta;
+        }
+        insert(-index - 1, key, delta);
+        return delta;
+    }
+
+    /**
+     * Removes the given key from this table.
+     *
+     * @param key  the key to remove, may be null
+     * @return the value the key was mapped to, zero if it was not present
+     */
+    public int remove(final Object key) {
+        final int index = indexOf(key);
+        if (index < 0) {
+            return 0;
+        }
+        final int old = values[index];
+        removeAt(index);
+        return old;
+    }
+
+    /**
+     * Removes all keys from this table, keeping its capacity.
+     */
+    public void clear() {
+        if (size > 0 || removed > 0) {
+            modCount++;
+            Arrays.fill(keys, null);
+            size = 0;
+            removed = 0;
+        }
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Performs the given action for each key and its value.
+     * <p>
+     * The action must not structurally modify this table.
+     *
+     * @param action  the action to perform, must not be null
+     * @throws NullPointerException if the action is null
+     * @throws ConcurrentModificationException if the action modifies the table
+     */
+    public void forEach(final ObjIntConsumer<? super K> action) {
+        if (action == null) {
+            throw new NullPointerException("Action must not be null");
+        }
+        final Object[] tab = keys;
+        final int[] vals = values;
+        final int mods = modCount;
+        for (int i = 0; i < tab.length; i++) {
+            final Object k = tab[i];
+            if (k != null && k != REMOVED) {
+                action.accept(unmaskNull(k), vals[i]);
+            }
+        }
+        if (mods != modCount) {
+            throw new ConcurrentModificationException();
+        }
+    }
+
+    /**
+     * Gets an iterator over the keys of this table that also gives access
+     * to the value of the current key.
+     *
+     * @return the entry iterator
+     */
+    public EntryIterator<K> entryIterator() {
+        return new EntryIterator<>(this);
+    }
+
+    /**
+     * Gets an iterator over the keys of this table.
+     *
+     * @return the key iterator
+     */
+    public Iterator<K> keyIterator() {
+        return entryIterator();
+    }
+
+    /**
+     * Gets a debugging representation of this table.
+     *
+     * @return a string of the form <code>{key=value, ...}</code>
+     */
+    @Override
+    public String toString() {
+        final StringBuilder buf = new StringBuilder();
+        buf.append('{');
+        final EntryIterator<K> it = entryIterator();
+        while (it.hasNext()) {
+            final K key = it.next();
+            buf.append(key == this ? "(this Map)" : key);
+            buf.append('=');
+            buf.append(it.getValue());
+            if (it.hasNext()) {
+                buf.append(", ");
+            }
+        }
+        buf.append('}');
+        return buf.toString();
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Calculates the spread hash code of a masked key.
+     *
+     * @param key  the masked key, not null
+     * @return the spread hash code
+     */
+    private int hash(final Object key) {
+        final int h = (equator == null ? key.hashCode() : equator.hash(unmaskNull(key))) * 0x9E3779B9;
+        return h ^ h >>> 16;
+    }
+
+    /**
+     * Checks whether a masked key matches the live key of a slot.
+     *
+     * @param key  the masked key, not null
+     * @param cur  the masked key of the slot, not null or removed
+     * @return true if the keys are equal
+     */
+    private boolean matches(final Object key, final Object cur) {
+        return equator == null ? key.equals(cur) : equator.equate(unmaskNull(key), unmaskNull(cur));
+    }
+
+    /**
+     * Finds the slot of the given key.
+     *
+     * @param key  the key, may be null
+     * @return the slot index, or -1 if the key is not present
+     */
+    private int indexOf(final Object key) {
+        final Object k = maskNull(key);
+        final Object[] tab = keys;
+        final int mask = tab.length - 1;
+        int i = hash(k) & mask;
+        Object cur;
+        while ((cur = tab[i]) != null) {
+            if (cur == k || cur != REMOVED && matches(k, cur)) {
+                return i;
+            }
+            i = i + 1 & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the slot of the given key, or the slot it should be inserted into.
+     *
+     * @param key  the key, may be null
+     * @return the slot index if the key is present, otherwise {@code -(slot + 1)}
+     *   for the slot the key should be inserted into
+     */
+    private int insertionIndex(final Object key) {
+        final Object k = maskNull(key);
+        final Object[] tab = keys;
+        final int mask = tab.length - 1;
+        int i = hash(k) & mask;
+        int firstRemoved = -1;
+        Object cur;
+        while ((cur = tab[i]) != null) {
+            if (cur == REMOVED) {
+                if (firstRemoved < 0) {
+                    firstRemoved = i;
+                }
+            } else if (cur == k || matches(k, cur)) {
+                return i;
+            }
+            i = i + 1 & mask;
+        }
+        return -(firstRemoved < 0 ? i : firstRemoved) - 1;
+    }
+
+    /**
+     * Stores a new key at a slot found by {@link #insertionIndex(Object)}.
+     *
+     * @param index  the free or removed slot
+     * @param key  the key, may be null
+     * @param value  the value
+     */
+    private void insert(final int index, final K key, final int value) {
+        if (keys[index] == REMOVED) {
+            removed--;
+        }
+        keys[index] = maskNull(key);
+        values[index] = value;
+        size++;
+        modCount++;
+        if (size + removed > threshold) {
+            // purge removed markers, growing only if the live keys need it
+            rehash(size > threshold >> 1 ? keys.length << 1 : keys.length);
+        }
+    }
+
+    /**
+     * Removes the key at the given slot.
+     *
+     * @param index  the slot of a live key
+     */
+    private void removeAt(final int index) {
+        final Object[] tab = keys;
+        // a marker is only needed if a probe sequence may continue past this slot
+        if (tab[index + 1 & tab.length - 1] == null) {
+            tab[index] = null;
+        } else {
+            tab[index] = REMOVED;
+            removed++;
+        }
+        size--;
+        modCount++;
+    }
+
+    /**
+     * Moves all live keys into new arrays of the given capacity.
+     *
+     * @param newCapacity  the new capacity, a power of two
+     */
+    private void rehash(final int newCapacity) {
+        final Object[] oldKeys = keys;
+        final int[] oldValues = values;
+        allocate(Math.min(newCapacity, MAXIMUM_CAPACITY));
+        final Object[] tab = keys;
+        final int mask = tab.length - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            final Object k = oldKeys[j];
+            if (k != null && k != REMOVED) {
+                int i = hash(k) & mask;
+                while (tab[i] != null) {
+                    i = i + 1 & mask;
+                }
+                tab[i] = k;
+                values[i] = oldValues[j];
+            }
+        }
+        removed = 0;
+    }
+
+    /**
+     * Allocates empty arrays of the given capacity.
+     *
+     * @param capacity  the capacity, a power of two
+     */
+    private void allocate(final int capacity) {
+        keys = new Object[capacity];
+        values = new int[capacity];
+        threshold = Math.min((int) (capacity * LOAD_FACTOR), capacity - 1);
+    }
+
+    /**
+     * Calculates the power of two capacity needed to hold the given number of keys.
+     *
+     * @param expectedSize  the expected number of keys
+     * @return the capacity
+     */
+    private static int capacityFor(final int expectedSize) {
+        final long needed = (long) Math.ceil(expectedSize / (double) LOAD_FACTOR) + 1;
+        if (needed >= MAXIMUM_CAPACITY) {
+            return MAXIMUM_CAPACITY;
+        }
+        return Math.max(DEFAULT_CAPACITY >> 2, Integer.highestOneBit((int) needed - 1) << 1);
+    }
+
+    private static Object maskNull(final Object key) {
+        return key == null ? NULL_KEY : key;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K> K unmaskNull(final Object key) {
+        return key == NULL_KEY ? null : (K) key;
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Iterator over the keys of an {@link ObjectIntHashMap} that also gives
+     * access to the value mapped to the current key.
+     *
+     * @param <K> the type of the keys
+     */
+    public static class EntryIterator<K> implements Iterator<K> {
+        /** The parent table */
+        private final ObjectIntHashMap<K> parent;
+        /** The slot to examine next */
+        private int next;
+        /** The slot of the last returned key, -1 if none */
+        private int current = -1;
+        /** The expected modification count */
+        private int mods;
+
+        /**
+         * Constructor.
+         *
+         * @param parent  the table to iterate over
+         */
+        protected EntryIterator(final ObjectIntHashMap<K> parent) {
+            this.parent = parent;
+            this.mods = parent.modCount;
+            advance(0);
+        }
+
+        private void advance(final int from) {
+            final Object[] tab = parent.keys;
+            int i = from;
+            while (i < tab.length && (tab[i] == null || tab[i] == REMOVED)) {
+                i++;
+            }
+            next = i;
+        }
+
+        private void checkModCount() {
+            if (parent.modCount != mods) {
+                throw new ConcurrentModificationException();
+            }
+        }
+
+        private void checkCurrent() {
+            if (current < 0) {
+                throw new IllegalStateException("next() must be called first");
+            }
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean hasNext() {
+            return next < parent.keys.length;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public K next() {
+            checkModCount();
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            current = next;
+            advance(next + 1);
+            return unmaskNull(parent.keys[current]);
+        }
+
+        /**
+         * Gets the key returned by the last call to {@link #next()}.
+         *
+         * @return the current key
+         * @throws IllegalStateException if there is no current key
+         */
+        public K getKey() {
+            checkCurrent();
+            return unmaskNull(parent.keys[current]);
+        }
+
+        /**
+         * Gets the value of the key returned by the last call to {@link #next()}.
+         *
+         * @return the current value
+         * @throws IllegalStateException if there is no current key
+         */
+        public int getValue() {
+            checkCurrent();
+            return parent.values[current];
+        }
+
+        /**
+         * Sets the value of the key returned by the last call to {@link #next()}.
+         *
+         * @param value  the new value
+         * @return the previous value
+         * @throws IllegalStateException if there is no current key
+         */
+        public int setValue(final int value) {
+            checkCurrent();
+            checkModCount();
+            final int old = parent.values[current];
+            parent.values[current] = value;
+            return old;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void remove() {
+            checkCurrent();
+            checkModCount();
+            // always leave a marker so that keys ahead of the cursor stay in place
+            parent.keys[current] = REMOVED;
+            parent.removed++;
+            parent.size--;
+            parent.modCount++;
+            mods = parent.modCount;
+            current = -1;
+        }
+    }
+
+}
@@ -20,9 +20,14 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.lang.reflect.Array;
+import java.util.Collection;
 import java.util.ConcurrentModificationException;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.function.ObjIntConsumer;
 
 import org.apache.commons.collections4.MultiSet;
 import org.apache.commons.collections4.iterators.AbstractIteratorDecorator;
@@ -46,6 +51,10 @@ public abstract class AbstractMapMultiSet<E> extends AbstractMultiSet<E> {
     private transient int size;
     /** The modification count for fail fast iterators */
     private transient int modCount;
+    /** The weighted sampler, built by the first draw and dropped when it cannot follow a change */
+    private transient CountSampler<E> sampler;
+    /** The count-ordered index, built by the first query */
+    private transient CountIndex<E> countIndex;
 
     /**
      * Constructor needed for subclass serialisation.
@@ -84,6 +93,8 @@ public abstract class AbstractMapMultiSet<E> extends AbstractMultiSet<E> {
      */
     protected void setMap(final Map<E, MutableInteger> map) {
         this.map = map;
+        sampler = null;
+        countIndex = null;
     }
 
     //-----------------------------------------------------------------------
@@ -205,10 +216,17 @@ public abstract class AbstractMapMultiSet<E> extends AbstractMultiSet<E> {
             final MutableInteger mut = current.getValue();
             if (mut.value > 1) {
                 mut.value--;
+                if (parent.countIndex != null) {
+                    parent.countIndex.update(mut);
+                }
             } else {
                 entryIterator.remove();
+                if (parent.countIndex != null) {
+                    parent.countIndex.remove(mut);
+                }
             }
             parent.size--;
+            parent.sampler = null;
             canRemove = false;
         }
     }
@@ -227,9 +245,22 @@ public abstract class AbstractMapMultiSet<E> extends AbstractMultiSet<E> {
             modCount++;
             size += occurrences;
             if (mut == null) {
-                map.put(object, new MutableInteger(occurrences));
+                final MutableInteger added = new MutableInteger(occurrences);
+                map.put(object, added);
+                if (sampler != null) {
+                    sampler.add(object, added);
+                }
+                if (countIndex != null) {
+                    countIndex.add(object, added);
+                }
             } else {
                 mut.value += occurrences;
+                if (sampler != null) {
+                    sampler.update(mut, occurrences);
+                }
+                if (countIndex != null) {
+                    countIndex.update(mut);
+                }
             }
         }
         return oldCount;
@@ -244,6 +275,8 @@ public abstract class AbstractMapMultiSet<E> extends AbstractMultiSet<E> {
         modCount++;
         map.clear();
         size = 0;
+        sampler = null;
+        countIndex = null;
     }
 
     @Override
@@ -262,14 +295,315 @@ public abstract class AbstractMapMultiSet<E> extends AbstractMultiSet<E> {
             if (occurrences < mut.value) {
                 mut.value -= occurrences;
                 size -= occurrences;
+                if (sampler != null) {
+                    sampler.update(mut, -occurrences);
+                }
+                if (countIndex != null) {
+                    countIndex.update(mut);
+                }
             } else {
                 map.remove(object);
                 size -= mut.value;
+                if (sampler != null) {
+                    sampler.remove(mut);
+                }
+                if (countIndex != null) {
+                    countIndex.remove(mut);
+                }
             }
         }
         return oldCount;
     }
 
+    //-----------------------------------------------------------------------
+    /**
+     * Performs the given action for each distinct element of the multiset and
+     * its count, read from the entries of the underlying map.
+     *
+     * @param action  the action to perform, must not be null
+     * @throws NullPointerException if the action is null
+     * @throws ConcurrentModificationException if the action modifies the multiset
+     * @since 4.5
+     */
+    @Override
+    public void forEachEntry(final ObjIntConsumer<? super E> action) {
+        if (action == null) {
+            throw new NullPointerException("Action must not be null.");
+        }
+        final int mods = modCount;
+        for (final Map.Entry<E, MutableInteger> entry : map.entrySet()) {
+            action.accept(entry.getKey(), entry.getValue().value);
+        }
+        if (mods != modCount) {
+            throw new ConcurrentModificationException();
+        }
+    }
+
+    /**
+     * Adds all the elements of the given collection.
+     * <p>
+     * The occurrences of a multiset are added per distinct element, in O(u)
+     * for u distinct elements whatever their counts.
+     *
+     * @param coll the collection to add
+     * @return <code>true</code> if this call changed the multiset
+     */
+    @Override
+    public boolean addAll(final Collection<? extends E> coll) {
+        if (coll instanceof MultiSet) {
+            final int before = size;
+            // counts of elements already present are raised in place, so this multiset may be the other one
+            ((MultiSet<? extends E>) coll).forEachEntry((element, count) -> {
+                final MutableInteger mut = map.get(element);
+                if (mut == null) {
+                    map.put(element, new MutableInteger(count));
+                } else {
+                    mut.value += count;
+                }
+                size += count;
+            });
+            return changed(before);
+        }
+        return super.addAll(coll);
+    }
+
+    /**
+     * Removes every element that is not contained in the given collection,
+     * with all its occurrences, in O(u) for u distinct elements.
+     *
+     * @param coll the collection of elements to retain
+     * @return <code>true</code> if this call changed the multiset
+     */
+    @Override
+    public boolean retainAll(final Collection<?> coll) {
+        final int before = size;
+        final Iterator<Map.Entry<E, MutableInteger>> it = map.entrySet().iterator();
+        while (it.hasNext()) {
+            final Map.Entry<E, MutableInteger> entry = it.next();
+            if (!coll.contains(entry.getKey())) {
+                size -= entry.getValue().value;
+                it.remove();
+            }
+        }
+        return changed(before);
+    }
+
+    /**
+     * Raises the count of each element of this multiset to its count in the
+     * given multiset, making this multiset the union of both, which takes the
+     * larger count of every element.
+     * <p>
+     * This runs in O(u) for the u distinct elements of the given multiset,
+     * whose counts are read by {@link MultiSet#forEachEntry(ObjIntConsumer)}.
+     *
+     * @param other the multiset to merge into this multiset, must not be null
+     * @return <code>true</code> if this call changed the multiset
+     * @throws NullPointerException if the other multiset is null
+     * @since 4.5
+     */
+    public boolean union(final MultiSet<? extends E> other) {
+        if (other == null) {
+            throw new NullPointerException("MultiSet must not be null.");
+        }
+        final int before = size;
+        other.forEachEntry((element, count) -> {
+            final MutableInteger mut = map.get(element);
+            if (mut == null) {
+                map.put(element, new MutableInteger(count));
+                size += count;
+            } else if (mut.value < count) {
+                size += count - mut.value;
+                mut.value = count;
+            }
+        });
+        return changed(before);
+    }
+
+    /**
+     * Lowers the count of each element of this multiset to its count in the
+     * given multiset, making this multiset the intersection of both, which
+     * takes the smaller count of every element.
+     * <p>
+     * This runs in O(u) for the u distinct elements of this multiset.
+     *
+     * @param other the multiset to intersect this multiset with, must not be null
+     * @return <code>true</code> if this call changed the multiset
+     * @throws NullPointerException if the other multiset is null
+     * @since 4.5
+     */
+    public boolean intersect(final MultiSet<?> other) {
+        if (other == null) {
+            throw new NullPointerException("MultiSet must not be null.");
+        }
+        final int before = size;
+        final Iterator<Map.Entry<E, MutableInteger>> it = map.entrySet().iterator();
+        while (it.hasNext()) {
+            final Map.Entry<E, MutableInteger> entry = it.next();
+            final MutableInteger mut = entry.getValue();
+            final int otherCount = other.getCount(entry.getKey());
+            if (otherCount < mut.value) {
+                size -= mut.value - otherCount;
+                if (otherCount == 0) {
+                    it.remove();
+                } else {
+                    mut.value = otherCount;
+                }
+            }
+        }
+        return changed(before);
+    }
+
+    /**
+     * Subtracts the count of each element of the given multiset from its count
+     * in this multiset, removing the elements whose count drops to zero.
+     * <p>
+     * This runs in O(u) for the u distinct elements of the given multiset,
+     * whose counts are read by {@link MultiSet#forEachEntry(ObjIntConsumer)}.
+     *
+     * @param other the multiset to subtract, must not be null
+     * @return <code>true</code> if this call changed the multiset
+     * @throws NullPointerException if the other multiset is null
+     * @since 4.5
+     */
+    public boolean subtract(final MultiSet<?> other) {
+        if (other == null) {
+            throw new NullPointerException("MultiSet must not be null.");
+        }
+        if (other == this) {
+            if (map.isEmpty()) {
+                return false;
+            }
+            clear();
+            return true;
+        }
+        final int before = size;
+        other.forEachEntry((element, count) -> {
+            final MutableInteger mut = map.get(element);
+            if (mut != null) {
+                if (count < mut.value) {
+                    mut.value -= count;
+                    size -= count;
+                } else {
+                    map.remove(element);
+                    size -= mut.value;
+                }
+            }
+        });
+        return changed(before);
+    }
+
+    /**
+     * Completes a bulk operation, which changed the multiset if it changed its size.
+     *
+     * @param before the size before the operation
+     * @return <code>true</code> if the operation changed the multiset
+     */
+    private boolean changed(final int before) {
+        if (size == before) {
+            return false;
+        }
+        // the sampler and the index were not kept up to date; the index is rebuilt
+        // right away, so that no count refers to a node of the stale one
+        modCount++;
+        sampler = null;
+        if (countIndex != null) {
+            countIndex = new CountIndex<>(map);
+        }
+        return true;
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Returns a random element of this multiset, each element being drawn with
+     * a probability proportional to its number of occurrences.
+     * <p>
+     * The first draw indexes the counts of the distinct elements in O(n). The
+     * index then follows {@link #add(Object, int)} and {@link #remove(Object, int)},
+     * so later draws cost O(log n) for n distinct elements. Removing elements
+     * through an iterator drops the index, which is rebuilt by the next draw.
+     *
+     * @param random  the source of randomness, not null
+     * @return an element of this multiset
+     * @throws NullPointerException if random is null
+     * @throws NoSuchElementException if this multiset is empty
+     * @since 4.5
+     */
+    public E sample(final Random random) {
+        if (random == null) {
+            throw new NullPointerException("Random must not be null.");
+        }
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        if (sampler == null) {
+            sampler = new CountSampler<>(map);
+        }
+        return sampler.sample(random);
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Returns the entries of the elements with the highest counts, in decreasing
+     * order of count; elements with equal counts come in no particular order.
+     * <p>
+     * The first query orders the distinct elements by count in O(n log n). The
+     * resulting index keeps a bucket per distinct count, like an LFU cache, and
+     * follows every later change: a change of count by one costs O(1), a larger
+     * one O(1) per distinct count it passes, and a bulk operation rebuilds the
+     * index. Later queries only visit the entries they return. The index costs
+     * a node per distinct element and a bucket per distinct count.
+     *
+     * @param k  the largest number of entries to return
+     * @return a new list of at most k entries, holding the counts at the time of the call
+     * @throws IllegalArgumentException if k is negative
+     * @since 4.5
+     */
+    public List<Entry<E>> topK(final int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("Number of entries must not be negative.");
+        }
+        return getCountIndex().highest(k);
+    }
+
+    /**
+     * Returns the entries of the elements with the lowest counts, in increasing
+     * order of count; elements with equal counts come in no particular order.
+     * <p>
+     * The query is served by the index described in {@link #topK(int)}.
+     *
+     * @param k  the largest number of entries to return
+     * @return a new list of at most k entries, holding the counts at the time of the call
+     * @throws IllegalArgumentException if k is negative
+     * @since 4.5
+     */
+    public List<Entry<E>> bottomK(final int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("Number of entries must not be negative.");
+        }
+        return getCountIndex().lowest(k);
+    }
+
+    /**
+     * Returns the elements occurring at least a number of times, in decreasing
+     * order of count.
+     * <p>
+     * The query is served by the index described in {@link #topK(int)}.
+     *
+     * @param count  the smallest count of the elements to return
+     * @return a new list of the elements with at least that count
+     * @since 4.5
+     */
+    public List<E> elementsWithCountAtLeast(final int count) {
+        return getCountIndex().atLeast(count);
+    }
+
+    private CountIndex<E> getCountIndex() {
+        if (countIndex == null) {
+            countIndex = new CountIndex<>(map);
+        }
+        return countIndex;
+    }
+
     //-----------------------------------------------------------------------
     /**
      * Mutable integer class for storing the data.
@@ -277,6 +611,10 @@ public abstract class AbstractMapMultiSet<E> extends AbstractMultiSet<E> {
     protected static class MutableInteger {
         /** The value of this mutable. */
         protected int value;
+        /** The slot of the element in the sampler, -1 if it has none */
+        int slot = -1;
+        /** The node of the element in the count index, null if it has none */
+        CountIndex.Node node;
 
         /**
          * Constructor.
@@ -353,9 +691,13 @@ public abstract class AbstractMapMultiSet<E> extends AbstractMultiSet<E> {
             if (canRemove == false) {
                 throw new IllegalStateException("Iterator remove() can only be called once after next()");
             }
-            final int count = parent.getCount(lastElement);
+            final MutableInteger mut = parent.map.get(lastElement);
+            if (parent.countIndex != null) {
+                parent.countIndex.remove(mut);
+            }
             super.remove();
-            parent.remove(lastElement, count);
+            parent.size -= mut.value;
+            parent.sampler = null;
             lastElement = null;
             canRemove = false;
         }
@@ -405,7 +747,13 @@ public abstract class AbstractMapMultiSet<E> extends AbstractMultiSet<E> {
             if (canRemove == false) {
                 throw new IllegalStateException("Iterator remove() can only be called once after next()");
             }
+            final MutableInteger mut = parent.map.get(last.getElement());
+            if (parent.countIndex != null) {
+                parent.countIndex.remove(mut);
+            }
             decorated.remove();
+            parent.size -= mut.value;
+            parent.sampler = null;
             last = null;
             canRemove = false;
         }
@@ -543,8 +891,8 @@ public abstract class AbstractMapMultiSet<E> extends AbstractMultiSet<E> {
         if (other.size() != size()) {
             return false;
         }
-        for (final E element : map.keySet()) {
-            if (other.getCount(element) != getCount(element)) {
+        for (final Map.Entry<E, MutableInteger> entry : map.entrySet()) {
+            if (other.getCount(entry.getKey()) != entry.getValue().value) {
                 return false;
             }
         }
@@ -0,0 +1,507 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.collections4.multiset;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.function.ObjIntConsumer;
+
+import org.apache.commons.collections4.MultiSet;
+import org.apache.commons.collections4.map.ObjectIntHashMap;
+import org.apache.commons.collections4.map.ObjectIntHashMap.EntryIterator;
+
+/**
+ * Implements {@code MultiSet}, using an {@link ObjectIntHashMap} to provide the
+ * data storage.
+ * <p>
+ * A {@link HashMultiSet} keeps a map entry and a separate count object for every
+ * distinct element. This multiset keeps the elements and their counts in two
+ * parallel arrays instead, so a distinct element costs about a dozen bytes and
+ * adding a new element allocates nothing. It is intended for multisets holding
+ * many distinct elements; the {@link #CompactHashMultiSet(int)} constructor
+ * avoids resizing when their number is known.
+ * <p>
+ * The iterators are fail-fast like those of {@link HashMultiSet}. The entries
+ * returned by {@link #entrySet()} look their count up in this multiset.
+ *
+ * @param <E> the type held in the multiset
+ * @since 4.5
+ */
+public class CompactHashMultiSet<E> extends AbstractMultiSet<E> implements Serializable {
+
+    /** Serial version lock */
+    private static final long serialVersionUID = 20261018L;
+
+    /** The counts of the distinct elements */
+    private transient ObjectIntHashMap<E> map;
+    /** The current total size of the multiset */
+    private transient int size;
+    /** The modification count for fail fast iterators */
+    private transient int modCount;
+
+    /**
+     * Constructs an empty {@link CompactHashMultiSet}.
+     */
+    public CompactHashMultiSet() {
+        map = new ObjectIntHashMap<>();
+    }
+
+    /**
+     * Constructs an empty {@link CompactHashMultiSet} able to hold the given
+     * number of distinct elements without resizing.
+     *
+     * @param expectedSize  the expected number of distinct elements
+     * @throws IllegalArgumentException if the expected size is negative
+     */
+    public CompactHashMultiSet(final int expectedSize) {
+        map = new ObjectIntHashMap<>(expectedSize);
+    }
+
+    /**
+     * Constructs a multiset containing all the members of the given collection,
+     * sized for the collection up front.
+     *
+     * @param coll  a collection to copy into this multiset
+     */
+    public CompactHashMultiSet(final Collection<? extends E> coll) {
+        this(coll instanceof MultiSet ? ((MultiSet<?>) coll).uniqueSet().size() : coll.size());
+        if (coll instanceof MultiSet) {
+            for (final Entry<? extends E> entry : ((MultiSet<? extends E>) coll).entrySet()) {
+                add(entry.getElement(), entry.getCount());
+            }
+        } else {
+            addAll(coll);
+        }
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Returns the number of elements in this multiset.
+     *
+     * @return current size of the multiset
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of occurrence of the given element in this multiset.
+     *
+     * @param object the object to search for
+     * @return the number of occurrences of the object, zero if not found
+     */
+    @Override
+    public int getCount(final Object object) {
+        return map.get(object);
+    }
+
+    /**
+     * Determines if the multiset contains the given element.
+     *
+     * @param object the object to search for
+     * @return true if the multiset contains the given element
+     */
+    @Override
+    public boolean contains(final Object object) {
+        return map.containsKey(object);
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Gets an iterator over the multiset elements. Elements present in the
+     * MultiSet more than once will be returned repeatedly.
+     *
+     * @return the iterator
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return new CompactMultiSetIterator<>(this);
+    }
+
+    /**
+     * Inner class iterator for the MultiSet.
+     */
+    private static class CompactMultiSetIterator<E> implements Iterator<E> {
+        private final CompactHashMultiSet<E> parent;
+        private final EntryIterator<E> entryIterator;
+        private int itemCount;
+        private final int mods;
+        private boolean canRemove;
+
+        /**
+         * Constructor.
+         *
+         * @param parent the parent multiset
+         */
+        CompactMultiSetIterator(final CompactHashMultiSet<E> parent) {
+            this.parent = parent;
+            this.entryIterator = parent.map.entryIterator();
+            this.mods = parent.modCount;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean hasNext() {
+            return itemCount > 0 || entryIterator.hasNext();
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public E next() {
+            if (parent.modCount != mods) {
+                throw new ConcurrentModificationException();
+            }
+            if (itemCount == 0) {
+                entryIterator.next();
+                itemCount = entryIterator.getValue();
+            }
+            canRemove = true;
+            itemCount--;
+            return entryIterator.getKey();
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void remove() {
+            if (parent.modCount != mods) {
+                throw new ConcurrentModificationException();
+            }
+            if (canRemove == false) {
+                throw new IllegalStateException();
+            }
+            final int count = entryIterator.getValue();
+            if (count > 1) {
+                entryIterator.setValue(count - 1);
+            } else {
+                entryIterator.remove();
+            }
+            parent.size--;
+            canRemove = false;
+        }
+    }
+
+    //-----------------------------------------------------------------------
+    @Override
+    public int add(final E object, final int occurrences) {
+        if (occurrences < 0) {
+            throw new IllegalArgumentException("Occurrences must not be negative.");
+        }
+        if (occurrences == 0) {
+            return map.get(object);
+        }
+        modCount++;
+        size += occurrences;
+        return map.addTo(object, occurrences) - occurrences;
+    }
+
+    @Override
+    public int remove(final Object object, final int occurrences) {
+        if (occurrences < 0) {
+            throw new IllegalArgumentException("Occurrences must not be negative.");
+        }
+
+        final int oldCount = map.get(object);
+        if (oldCount > 0 && occurrences > 0) {
+            modCount++;
+            if (occurrences < oldCount) {
+                @SuppressWarnings("unchecked") // the object has a count, so it is an element
+                final E element = (E) object;
+                map.addTo(element, -occurrences);
+                size -= occurrences;
+            } else {
+                map.remove(object);
+                size -= oldCount;
+            }
+        }
+        return oldCount;
+    }
+
+    @Override
+    public int setCount(final E object, final int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Count must not be negative.");
+        }
+
+        // a single probe, whichever way the count changes
+        final int oldCount = count == 0 ? map.remove(object) : map.put(object, count);
+        if (oldCount != count) {
+            modCount++;
+            size += count - oldCount;
+        }
+        return oldCount;
+    }
+
+    /**
+     * Clears the multiset by clearing the underlying table.
+     */
+    @Override
+    public void clear() {
+        modCount++;
+        map.clear();
+        size = 0;
+    }
+
+    /**
+     * Performs the given action for each distinct element of the multiset and
+     * its count, read from the underlying table.
+     *
+     * @param action  the action to perform, must not be null
+     * @throws NullPointerException if the action is null
+     * @throws ConcurrentModificationException if the action modifies the multiset
+     */
+    @Override
+    public void forEachEntry(final ObjIntConsumer<? super E> action) {
+        if (action == null) {
+            throw new NullPointerException("Action must not be null.");
+        }
+        final int mods = modCount;
+        map.forEach(action);
+        if (mods != modCount) {
+            throw new ConcurrentModificationException();
+        }
+    }
+
+    //-----------------------------------------------------------------------
+    @Override
+    protected Iterator<E> createUniqueSetIterator() {
+        return new UniqueSetIterator<>(this);
+    }
+
+    @Override
+    protected int uniqueElements() {
+        return map.size();
+    }
+
+    @Override
+    protected Iterator<Entry<E>> createEntrySetIterator() {
+        return new EntrySetIterator<>(this);
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Inner class UniqueSetIterator.
+     */
+    private static class UniqueSetIterator<E> implements Iterator<E> {
+
+        /** The parent multiset */
+        private final CompactHashMultiSet<E> parent;
+
+        /** The iterator over the underlying table */
+        private final EntryIterator<E> entryIterator;
+
+        /** Whether remove is allowed at present */
+        private boolean canRemove = false;
+
+        /**
+         * Constructor.
+         * @param parent  the parent multiset
+         */
+        UniqueSetIterator(final CompactHashMultiSet<E> parent) {
+            this.parent = parent;
+            this.entryIterator = parent.map.entryIterator();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return entryIterator.hasNext();
+        }
+
+        @Override
+        public E next() {
+            final E element = entryIterator.next();
+            canRemove = true;
+            return element;
+        }
+
+        @Override
+        public void remove() {
+            if (canRemove == false) {
+                throw new IllegalStateException("Iterator remove() can only be called once after next()");
+            }
+            final int count = entryIterator.getValue();
+            entryIterator.remove();
+            parent.size -= count;
+            canRemove = false;
+        }
+    }
+
+    /**
+     * Inner class EntrySetIterator.
+     */
+    private static class EntrySetIterator<E> implements Iterator<Entry<E>> {
+
+        /** The parent multiset */
+        private final CompactHashMultiSet<E> parent;
+
+        /** The iterator over the distinct elements */
+        private final UniqueSetIterator<E> decorated;
+
+        /**
+         * Constructor.
+         * @param parent  the parent multiset
+         */
+        EntrySetIterator(final CompactHashMultiSet<E> parent) {
+            this.parent = parent;
+            this.decorated = new UniqueSetIterator<>(parent);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return decorated.hasNext();
+        }
+
+        @Override
+        public Entry<E> next() {
+            return new CompactEntry<>(parent, decorated.next());
+        }
+
+        @Override
+        public void remove() {
+            decorated.remove();
+        }
+    }
+
+    /**
+     * Inner class CompactEntry, which looks its count up in the parent multiset.
+     */
+    private static class CompactEntry<E> extends AbstractEntry<E> {
+
+        private final CompactHashMultiSet<E> parent;
+
+        private final E element;
+
+        /**
+         * Constructor.
+         * @param parent  the parent multiset
+         * @param element  the element of the entry
+         */
+        CompactEntry(final CompactHashMultiSet<E> parent, final E element) {
+            this.parent = parent;
+            this.element = element;
+        }
+
+        @Override
+        public E getElement() {
+            return element;
+        }
+
+        @Override
+        public int getCount() {
+            return parent.map.get(element);
+        }
+    }
+
+    //-----------------------------------------------------------------------
+    @Override
+    public boolean equals(final Object object) {
+        if (object == this) {
+            return true;
+        }
+        if (object instanceof MultiSet == false) {
+            return false;
+        }
+        final MultiSet<?> other = (MultiSet<?>) object;
+        if (other.size() != size()) {
+            return false;
+        }
+        final EntryIterator<E> it = map.entryIterator();
+        while (it.hasNext()) {
+            if (other.getCount(it.next()) != it.getValue()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int total = 0;
+        final EntryIterator<E> it = map.entryIterator();
+        while (it.hasNext()) {
+            final E element = it.next();
+            total += (element == null ? 0 : element.hashCode()) ^ it.getValue();
+        }
+        return total;
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Write the multiset out using a custom routine.
+     * @param out the output stream
+     * @throws IOException any of the usual I/O related exceptions
+     */
+    @Override
+    protected void doWriteObject(final ObjectOutputStream out) throws IOException {
+        out.writeInt(map.size());
+        final EntryIterator<E> it = map.entryIterator();
+        while (it.hasNext()) {
+            out.writeObject(it.next());
+            out.writeInt(it.getValue());
+        }
+    }
+
+    /**
+     * Read the multiset in using a custom routine.
+     * @param in the input stream
+     * @throws IOException any of the usual I/O related exceptions
+     * @throws ClassNotFoundException if the stream contains an object which class can not be loaded
+     * @throws ClassCastException if the stream does not contain the correct objects
+     */
+    @Override
+    protected void doReadObject(final ObjectInputStream in)
+            throws IOException, ClassNotFoundException {
+        final int entrySize = in.readInt();
+        map = new ObjectIntHashMap<>(entrySize);
+        for (int i = 0; i < entrySize; i++) {
+            @SuppressWarnings("unchecked") // This will fail at runtime if the stream is incorrect
+            final E obj = (E) in.readObject();
+            final int count = in.readInt();
+            map.put(obj, count);
+            size += count;
+        }
+    }
+
+    /**
+     * Write the multiset out using a custom routine.
+     *
+     * @param out  the output stream
+     * @throws IOException if an error occurs while writing to the stream
+     */
+    private void writeObject(final ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        doWriteObject(out);
+    }
+
+    /**
+     * Read the multiset in using a custom routine.
+     *
+     * @param in the input stream
+     * @throws IOException if an error occurs while reading from the stream
+     * @throws ClassNotFoundException if an object read from the stream can not be loaded
+     */
+    private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        doReadObject(in);
+    }
+
+}
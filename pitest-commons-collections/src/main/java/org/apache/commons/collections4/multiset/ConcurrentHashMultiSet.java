@@ -0,0 +1,435 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.collections4.multiset;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Implements {@code MultiSet} for concurrent use, using a {@link ConcurrentHashMap}
+ * of atomic counters to provide the data storage.
+ * <p>
+ * Updates do not lock: the table spreads contention over its bins, and the
+ * count of an element is changed by compare-and-set on its counter. A counter
+ * that drops to zero is dead; it is unlinked from the table, and an element
+ * whose dead counter is still linked is added again by swapping in a new
+ * counter. This makes {@link #add(Object, int)}, {@link #remove(Object, int)}
+ * and {@link #setCount(Object, int)} atomic, each returning the count it
+ * replaced.
+ * <p>
+ * The iterators and the views are weakly consistent: they never throw
+ * {@link java.util.ConcurrentModificationException}, and the entries they
+ * return hold the count of their element when it was reached. As a
+ * consequence, {@link #size()} sums the counts of the distinct elements and
+ * is only exact while the multiset is not modified.
+ * <p>
+ * This multiset does not permit {@code null} elements.
+ *
+ * @param <E> the type held in the multiset
+ * @since 4.5
+ */
+public class ConcurrentHashMultiSet<E> extends AbstractMultiSet<E> implements Serializable {
+
+    /** Serial version lock */
+    private static final long serialVersionUID = 20261018L;
+
+    /** The counter of each distinct element */
+    private transient ConcurrentMap<E, AtomicInteger> map;
+
+    /**
+     * Constructs an empty {@link ConcurrentHashMultiSet}.
+     */
+    public ConcurrentHashMultiSet() {
+        map = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Constructs an empty {@link ConcurrentHashMultiSet} able to hold the given
+     * number of distinct elements without resizing.
+     *
+     * @param expectedSize  the expected number of distinct elements
+     * @throws IllegalArgumentException if the expected size is negative
+     */
+    public ConcurrentHashMultiSet(final int expectedSize) {
+        map = new ConcurrentHashMap<>(expectedSize);
+    }
+
+    /**
+     * Constructs a multiset containing all the members of the given collection.
+     *
+     * @param coll  a collection to copy into this multiset
+     * @throws NullPointerException if the collection contains null
+     */
+    public ConcurrentHashMultiSet(final Collection<? extends E> coll) {
+        this();
+        addAll(coll);
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Returns the number of elements in this multiset, by summing the counts of
+     * its distinct elements.
+     *
+     * @return current size of the multiset, Integer.MAX_VALUE if it is larger
+     */
+    @Override
+    public int size() {
+        long total = 0;
+        for (final AtomicInteger counter : map.values()) {
+            total += counter.get();
+        }
+        return (int) Math.min(total, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns true if no element of this multiset has a count.
+     *
+     * @return true if multiset is empty
+     */
+    @Override
+    public boolean isEmpty() {
+        for (final AtomicInteger counter : map.values()) {
+            if (counter.get() > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of occurrence of the given element in this multiset.
+     *
+     * @param object the object to search for
+     * @return the number of occurrences of the object, zero if not found or null
+     */
+    @Override
+    public int getCount(final Object object) {
+        final AtomicInteger counter = object == null ? null : map.get(object);
+        return counter == null ? 0 : counter.get();
+    }
+
+    /**
+     * Determines if the multiset contains the given element.
+     *
+     * @param object the object to search for
+     * @return true if the multiset contains the given element
+     */
+    @Override
+    public boolean contains(final Object object) {
+        return getCount(object) > 0;
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Adds a number of occurrences of an element to this multiset, atomically.
+     *
+     * @param object  the element to add, not null
+     * @param occurrences  the number of occurrences to add, may be zero
+     * @return the number of occurrences of the element before this operation
+     * @throws NullPointerException if the element is null
+     * @throws IllegalArgumentException if occurrences is negative, or the count
+     *   of the element would exceed Integer.MAX_VALUE
+     */
+    @Override
+    public int add(final E object, final int occurrences) {
+        if (object == null) {
+            throw new NullPointerException("Element must not be null.");
+        }
+        if (occurrences < 0) {
+            throw new IllegalArgumentException("Occurrences must not be negative.");
+        }
+        if (occurrences == 0) {
+            return getCount(object);
+        }
+
+        while (true) {
+            AtomicInteger counter = map.get(object);
+            if (counter == null) {
+                counter = map.putIfAbsent(object, new AtomicInteger(occurrences));
+                if (counter == null) {
+                    return 0;
+                }
+            }
+            while (true) {
+                final int oldCount = counter.get();
+                if (oldCount == 0) {
+                    // the counter is dead, swap in a new one unless another thread did
+                    final AtomicInteger added = new AtomicInteger(occurrences);
+                    if (map.putIfAbsent(object, added) == null || map.replace(object, counter, added)) {
+                        return 0;
+                    }
+                    break;
+                }
+                if (oldCount > Integer.MAX_VALUE - occurrences) {
+                    throw new IllegalArgumentException("Count of " + object + " would exceed Integer.MAX_VALUE.");
+                }
+                if (counter.compareAndSet(oldCount, oldCount + occurrences)) {
+                    return oldCount;
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes a number of occurrences of an element from this multiset, atomically.
+     * The count of the element does not go below zero.
+     *
+     * @param object  the element to remove
+     * @param occurrences  the number of occurrences to remove, may be zero
+     * @return the number of occurrences of the element before this operation
+     * @throws IllegalArgumentException if occurrences is negative
+     */
+    @Override
+    public int remove(final Object object, final int occurrences) {
+        if (occurrences < 0) {
+            throw new IllegalArgumentException("Occurrences must not be negative.");
+        }
+        final AtomicInteger counter = object == null ? null : map.get(object);
+        if (counter == null) {
+            return 0;
+        }
+        if (occurrences == 0) {
+            return counter.get();
+        }
+
+        while (true) {
+            final int oldCount = counter.get();
+            if (oldCount == 0) {
+                return 0;
+            }
+            final int newCount = Math.max(0, oldCount - occurrences);
+            if (counter.compareAndSet(oldCount, newCount)) {
+                if (newCount == 0) {
+                    map.remove(object, counter);
+                }
+                return oldCount;
+            }
+        }
+    }
+
+    /**
+     * Sets the number of occurrences of an element in this multiset, atomically.
+     *
+     * @param object  the element, not null
+     * @param count  the new number of occurrences, may be zero
+     * @return the number of occurrences of the element before this operation
+     * @throws NullPointerException if the element is null
+     * @throws IllegalArgumentException if count is negative
+     */
+    @Override
+    public int setCount(final E object, final int count) {
+        if (object == null) {
+            throw new NullPointerException("Element must not be null.");
+        }
+        if (count < 0) {
+            throw new IllegalArgumentException("Count must not be negative.");
+        }
+
+        while (true) {
+            AtomicInteger counter = map.get(object);
+            if (counter == null) {
+                if (count == 0) {
+                    return 0;
+                }
+                counter = map.putIfAbsent(object, new AtomicInteger(count));
+                if (counter == null) {
+                    return 0;
+                }
+            }
+            while (true) {
+                final int oldCount = counter.get();
+                if (oldCount == 0) {
+                    if (count == 0) {
+                        return 0;
+                    }
+                    // the counter is dead, swap in a new one unless another thread did
+                    final AtomicInteger added = new AtomicInteger(count);
+                    if (map.putIfAbsent(object, added) == null || map.replace(object, counter, added)) {
+                        return 0;
+                    }
+                    break;
+                }
+                if (counter.compareAndSet(oldCount, count)) {
+                    if (count == 0) {
+                        map.remove(object, counter);
+                    }
+                    return oldCount;
+                }
+            }
+        }
+    }
+
+    /**
+     * Clears the multiset by clearing the underlying map.
+     */
+    @Override
+    public void clear() {
+        map.clear();
+    }
+
+    //-----------------------------------------------------------------------
+    @Override
+    protected int uniqueElements() {
+        return map.size();
+    }
+
+    @Override
+    protected Iterator<Entry<E>> createEntrySetIterator() {
+        return new EntrySetIterator<>(this);
+    }
+
+    /**
+     * Inner class EntrySetIterator, which skips the dead counters.
+     */
+    private static class EntrySetIterator<E> implements Iterator<Entry<E>> {
+
+        /** The parent multiset */
+        private final ConcurrentHashMultiSet<E> parent;
+
+        /** The weakly consistent iterator over the underlying map */
+        private final Iterator<Map.Entry<E, AtomicInteger>> decorated;
+
+        /** The next entry to return, null if not found yet */
+        private Entry<E> next;
+
+        /** The last returned entry */
+        private Entry<E> last;
+
+        /**
+         * Constructor.
+         * @param parent  the parent multiset
+         */
+        EntrySetIterator(final ConcurrentHashMultiSet<E> parent) {
+            this.parent = parent;
+            this.decorated = parent.map.entrySet().iterator();
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && decorated.hasNext()) {
+                final Map.Entry<E, AtomicInteger> entry = decorated.next();
+                final int count = entry.getValue().get();
+                if (count > 0) {
+                    next = new SnapshotEntry<>(entry.getKey(), count);
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public Entry<E> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            last = next;
+            next = null;
+            return last;
+        }
+
+        @Override
+        public void remove() {
+            if (last == null) {
+                throw new IllegalStateException("Iterator remove() can only be called once after next()");
+            }
+            parent.setCount(last.getElement(), 0);
+            last = null;
+        }
+    }
+
+    /**
+     * Inner class SnapshotEntry, holding the count of its element when it was read.
+     */
+    private static class SnapshotEntry<E> extends AbstractEntry<E> {
+
+        private final E element;
+
+        private final int count;
+
+        /**
+         * Constructor.
+         * @param element  the element of the entry
+         * @param count  the count of the element
+         */
+        SnapshotEntry(final E element, final int count) {
+            this.element = element;
+            this.count = count;
+        }
+
+        @Override
+        public E getElement() {
+            return element;
+        }
+
+        @Override
+        public int getCount() {
+            return count;
+        }
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Write the multiset out using a custom routine.
+     * @param out the output stream
+     * @throws IOException any of the usual I/O related exceptions
+     */
+    @Override
+    protected void doWriteObject(final ObjectOutputStream out) throws IOException {
+        // the number of entries has to match the entries written, so take them first
+        final List<Entry<E>> entries = new ArrayList<>(entrySet());
+        out.writeInt(entries.size());
+        for (final Entry<E> entry : entries) {
+            out.writeObject(entry.getElement());
+            out.writeInt(entry.getCount());
+        }
+    }
+
+    /**
+     * Write the multiset out using a custom routine.
+     *
+     * @param out  the output stream
+     * @throws IOException if an error occurs while writing to the stream
+     */
+    private void writeObject(final ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        doWriteObject(out);
+    }
+
+    /**
+     * Read the multiset in using a custom routine.
+     *
+     * @param in the input stream
+     * @throws IOException if an error occurs while reading from the stream
+     * @throws ClassNotFoundException if an object read from the stream can not be loaded
+     */
+    private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        map = new ConcurrentHashMap<>();
+        doReadObject(in);
+    }
+
+}
@@ -0,0 +1,292 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.collections4.multiset;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.collections4.MultiSet.Entry;
+import org.apache.commons.collections4.multiset.AbstractMapMultiSet.MutableInteger;
+
+/**
+ * Orders the distinct elements of an {@link AbstractMapMultiSet} by count, in
+ * the manner of an LFU cache.
+ * <p>
+ * Every distinct count has a bucket, and the buckets form a list in
+ * increasing order of count. Every element has a node, recorded in its
+ * {@link MutableInteger}, in the list of the bucket of its count. A change of
+ * count moves the node to the bucket of the new count, found by walking from
+ * its current bucket, so changing a count by one costs O(1) and any change
+ * costs O(1) plus the number of distinct counts it passes. Queries walk the
+ * buckets from either end and visit no element they do not return.
+ *
+ * @param <E> the type held in the multiset
+ * @since 4.5
+ */
+final class CountIndex<E> {
+
+    /** The position of an element in the index */
+    static final class Node {
+        /** The element */
+        final Object element;
+        /** The bucket of the count of the element */
+        Bucket bucket;
+        /** The neighbours in the list of the bucket */
+        Node prev;
+        Node next;
+
+        Node(final Object element) {
+            this.element = element;
+        }
+    }
+
+    /** The elements with the same count */
+    private static final class Bucket {
+        /** The count of the elements */
+        final int count;
+        /** The buckets of the next lower and higher counts */
+        Bucket lower;
+        Bucket higher;
+        /** The first node of the list of elements */
+        Node head;
+
+        Bucket(final int count) {
+            this.count = count;
+        }
+    }
+
+    /** The bucket of the lowest count, null if the index is empty */
+    private Bucket lowest;
+    /** The bucket of the highest count, null if the index is empty */
+    private Bucket highest;
+
+    /**
+     * Builds an index over the entries of a map, in O(n log n).
+     */
+    CountIndex(final Map<E, MutableInteger> map) {
+        final List<Map.Entry<E, MutableInteger>> entries = new ArrayList<>(map.entrySet());
+        entries.sort((a, b) -> Integer.compare(a.getValue().value, b.getValue().value));
+        for (final Map.Entry<E, MutableInteger> entry : entries) {
+            final MutableInteger count = entry.getValue();
+            if (highest == null || highest.count != count.value) {
+                insertAfter(highest, count.value);
+            }
+            final Node node = new Node(entry.getKey());
+            count.node = node;
+            link(node, highest);
+        }
+    }
+
+    /**
+     * Registers a new element, whose count holds its number of occurrences.
+     */
+    void add(final E element, final MutableInteger count) {
+        final int target = count.value;
+        Bucket bucket;
+        if (lowest == null || lowest.count > target) {
+            bucket = insertAfter(null, target);
+        } else {
+            bucket = walkUp(lowest, target);
+        }
+        final Node node = new Node(element);
+        count.node = node;
+        link(node, bucket);
+    }
+
+    /**
+     * Records a change of the count of a registered element, which is still positive.
+     */
+    void update(final MutableInteger count) {
+        final Node node = count.node;
+        final Bucket from = node.bucket;
+        final int target = count.value;
+        if (target == from.count) {
+            return;
+        }
+        // find the new bucket while the old one still holds the node, so it stays in the list
+        final Bucket to = target > from.count ? walkUp(from, target) : walkDown(from, target);
+        unlink(node);
+        link(node, to);
+    }
+
+    /**
+     * Unregisters an element.
+     */
+    void remove(final MutableInteger count) {
+        unlink(count.node);
+        count.node = null;
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Returns up to k entries of the highest counts, in decreasing order of count.
+     */
+    List<Entry<E>> highest(final int k) {
+        final List<Entry<E>> result = new ArrayList<>(Math.min(k, 1024));
+        for (Bucket bucket = highest; bucket != null && result.size() < k; bucket = bucket.lower) {
+            for (Node node = bucket.head; node != null && result.size() < k; node = node.next) {
+                result.add(new IndexEntry<>(element(node), bucket.count));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns up to k entries of the lowest counts, in increasing order of count.
+     */
+    List<Entry<E>> lowest(final int k) {
+        final List<Entry<E>> result = new ArrayList<>(Math.min(k, 1024));
+        for (Bucket bucket = lowest; bucket != null && result.size() < k; bucket = bucket.higher) {
+            for (Node node = bucket.head; node != null && result.size() < k; node = node.next) {
+                result.add(new IndexEntry<>(element(node), bucket.count));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the elements with at least the given count, in decreasing order of count.
+     */
+    List<E> atLeast(final int count) {
+        final List<E> result = new ArrayList<>();
+        for (Bucket bucket = highest; bucket != null && bucket.count >= count; bucket = bucket.lower) {
+            for (Node node = bucket.head; node != null; node = node.next) {
+                result.add(element(node));
+            }
+        }
+        return result;
+    }
+
+    @SuppressWarnings("unchecked") // only elements of the multiset are registered
+    private E element(final Node node) {
+        return (E) node.element;
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Returns the bucket of a count not lower than the count of a bucket,
+     * creating it after the highest bucket not above the count if needed.
+     */
+    private Bucket walkUp(final Bucket from, final int target) {
+        Bucket bucket = from;
+        while (bucket.higher != null && bucket.higher.count <= target) {
+            bucket = bucket.higher;
+        }
+        return bucket.count == target ? bucket : insertAfter(bucket, target);
+    }
+
+    /**
+     * Returns the bucket of a count not higher than the count of a bucket,
+     * creating it before the lowest bucket not below the count if needed.
+     */
+    private Bucket walkDown(final Bucket from, final int target) {
+        Bucket bucket = from;
+        while (bucket.lower != null && bucket.lower.count >= target) {
+            bucket = bucket.lower;
+        }
+        return bucket.count == target ? bucket : insertAfter(bucket.lower, target);
+    }
+
+    /**
+     * Inserts a new bucket after a bucket, or first if that is null.
+     */
+    private Bucket insertAfter(final Bucket before, final int count) {
+        final Bucket bucket = new Bucket(count);
+        final Bucket after = before == null ? lowest : before.higher;
+        bucket.lower = before;
+        bucket.higher = after;
+        if (before == null) {
+            lowest = bucket;
+        } else {
+            before.higher = bucket;
+        }
+        if (after == null) {
+            highest = bucket;
+        } else {
+            after.lower = bucket;
+        }
+        return bucket;
+    }
+
+    private void link(final Node node, final Bucket bucket) {
+        node.bucket = bucket;
+        node.prev = null;
+        node.next = bucket.head;
+        if (bucket.head != null) {
+            bucket.head.prev = node;
+        }
+        bucket.head = node;
+    }
+
+    /**
+     * Removes a node from its bucket, and the bucket from the list if it is left empty.
+     */
+    private void unlink(final Node node) {
+        final Bucket bucket = node.bucket;
+        if (node.prev == null) {
+            bucket.head = node.next;
+        } else {
+            node.prev.next = node.next;
+        }
+        if (node.next != null) {
+            node.next.prev = node.prev;
+        }
+        node.bucket = null;
+        node.prev = null;
+        node.next = null;
+        if (bucket.head == null) {
+            if (bucket.lower == null) {
+                lowest = bucket.higher;
+            } else {
+                bucket.lower.higher = bucket.higher;
+            }
+            if (bucket.higher == null) {
+                highest = bucket.lower;
+            } else {
+                bucket.higher.lower = bucket.lower;
+            }
+        }
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * An entry holding a count read from the index.
+     */
+    private static final class IndexEntry<E> extends AbstractMultiSet.AbstractEntry<E> {
+
+        private final E element;
+
+        private final int count;
+
+        IndexEntry(final E element, final int count) {
+            this.element = element;
+            this.count = count;
+        }
+
+        @Override
+        public E getElement() {
+            return element;
+        }
+
+        @Override
+        public int getCount() {
+            return count;
+        }
+    }
+
+}
@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.collections4.multiset;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.commons.collections4.multiset.AbstractMapMultiSet.MutableInteger;
+
+/**
+ * Draws elements of an {@link AbstractMapMultiSet} with a probability
+ * proportional to their count, in O(log n) for n distinct elements.
+ * <p>
+ * Every distinct element has a slot, recorded in its {@link MutableInteger},
+ * and the counts of the slots are summed by a Fenwick tree. A draw picks a
+ * uniform position below the total count and descends the tree to the slot
+ * holding it. Count changes update the tree in O(log n); an element that
+ * is removed gives its slot to the element of the last slot.
+ *
+ * @param <E> the type held in the multiset
+ * @since 4.5
+ */
+final class CountSampler<E> {
+
+    /** The initial number of slots */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /** The element of each slot */
+    private Object[] elements;
+    /** The count of each slot */
+    private MutableInteger[] counts;
+    /** The Fenwick tree of the counts, indexed from 1 */
+    private long[] tree;
+    /** The number of slots in use */
+    private int size;
+
+    /**
+     * Builds a sampler over the entries of a map, in linear time.
+     */
+    CountSampler(final Map<E, MutableInteger> map) {
+        final int capacity = Math.max(INITIAL_CAPACITY, map.size());
+        elements = new Object[capacity];
+        counts = new MutableInteger[capacity];
+        tree = new long[capacity + 1];
+        for (final Map.Entry<E, MutableInteger> entry : map.entrySet()) {
+            final MutableInteger count = entry.getValue();
+            count.slot = size;
+            elements[size] = entry.getKey();
+            counts[size] = count;
+            tree[++size] = count.value;
+        }
+        // push every partial sum to its parent
+        for (int i = 1; i <= size; i++) {
+            final int parent = i + (i & -i);
+            if (parent <= size) {
+                tree[parent] += tree[i];
+            }
+        }
+    }
+
+    /**
+     * Registers a new element, whose count holds its number of occurrences.
+     */
+    void add(final E element, final MutableInteger count) {
+        if (size == elements.length) {
+            final int capacity = size + (size >> 1);
+            elements = Arrays.copyOf(elements, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+            tree = Arrays.copyOf(tree, capacity + 1);
+        }
+        final int index = size + 1;
+        // the node covers the slots after index - lowbit(index), all of which already exist
+        tree[index] = count.value + prefixSum(size) - prefixSum(index - (index & -index));
+        count.slot = size;
+        elements[size] = element;
+        counts[size] = count;
+        size = index;
+    }
+
+    /**
+     * Records a change of the count of a registered element.
+     */
+    void update(final MutableInteger count, final int delta) {
+        for (int i = count.slot + 1; i <= size; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+
+    /**
+     * Unregisters an element, whose count still holds its last number of occurrences.
+     */
+    void remove(final MutableInteger count) {
+        final int slot = count.slot;
+        update(count, -count.value);
+        count.slot = -1;
+        final int last = size - 1;
+        if (slot != last) {
+            // move the last element into the free slot; the only node that covers
+            // the last slot is dropped with it
+            final MutableInteger moved = counts[last];
+            moved.slot = slot;
+            update(moved, moved.value);
+            elements[slot] = elements[last];
+            counts[slot] = moved;
+        }
+        elements[last] = null;
+        counts[last] = null;
+        tree[size] = 0;
+        size = last;
+    }
+
+    /**
+     * Draws an element, which must exist, with a probability proportional to its count.
+     * The position is drawn below the total of the tree itself, so that the descent
+     * always ends on a registered slot.
+     */
+    E sample(final Random random) {
+        long remaining = random.nextInt((int) prefixSum(size));
+        int index = 0;
+        for (int step = Integer.highestOneBit(size); step > 0; step >>= 1) {
+            final int next = index + step;
+            if (next <= size && tree[next] <= remaining) {
+                index = next;
+                remaining -= tree[next];
+            }
+        }
+        @SuppressWarnings("unchecked") // only elements of the multiset are registered
+        final E element = (E) elements[index];
+        return element;
+    }
+
+    private long prefixSum(final int end) {
+        long sum = 0;
+        for (int i = end; i > 0; i -= i & -i) {
+            sum += tree[i];
+        }
+        return sum;
+    }
+
+}
@@ -17,6 +17,7 @@
 package org.apache.commons.collections4.multiset;
 
 import java.util.Set;
+import java.util.function.ObjIntConsumer;
 
 import org.apache.commons.collections4.MultiSet;
 import org.apache.commons.collections4.Predicate;
@@ -134,4 +135,9 @@ public class PredicatedMultiSet<E> extends PredicatedCollection<E> implements Mu
         return decorated().entrySet();
     }
 
+    @Override
+    public void forEachEntry(final ObjIntConsumer<? super E> action) {
+        decorated().forEachEntry(action);
+    }
+
 }
@@ -0,0 +1,210 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.collections4.set;
+
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+import org.apache.commons.collections4.Unmodifiable;
+import org.apache.commons.collections4.iterators.UnmodifiableIterator;
+
+/**
+ * An unmodifiable <code>Set</code> built once from a collection, intended as a
+ * membership index that is probed many times.
+ * <p>
+ * Membership is first tested against a compact Bloom filter, and only probes
+ * that pass the filter are checked against an exact hash set. As most probes
+ * of an allow-list or deny-list usually miss, most of them are rejected after
+ * reading a single cache line of the filter, without hashing into the much
+ * larger exact set. The answers are always exact.
+ * <p>
+ * The filter is blocked: all bits of an element lie in one 512 bit block, so
+ * a probe touches one cache line whatever the number of hash functions.
+ * <p>
+ * {@link org.apache.commons.collections4.CollectionUtils} recognizes this type in
+ * {@code containsAny} and {@code containsAll}, and probes it directly with the
+ * elements of the other collection.
+ * <p>
+ * Attempts to modify it will result in an UnsupportedOperationException.
+ *
+ * @param <E> the type of the elements in this set
+ * @since 4.5
+ */
+public final class BloomFilterSet<E> extends AbstractSet<E> implements Unmodifiable {
+
+    /** The default false positive probability of the filter */
+    public static final double DEFAULT_FALSE_POSITIVE_PROBABILITY = 0.01;
+
+    /** The number of bits in a block, as a shift */
+    private static final int BLOCK_SHIFT = 9;
+    /** The number of longs in a block */
+    private static final int BLOCK_LONGS = 1 << BLOCK_SHIFT - 6;
+    /** The maximum number of blocks */
+    private static final int MAXIMUM_BLOCKS = 1 << 24;
+    /** The maximum number of hash functions */
+    private static final int MAXIMUM_HASHES = 16;
+
+    /** The exact elements */
+    private final Set<E> exact;
+    /** The filter bits, in blocks of {@link #BLOCK_LONGS} longs */
+    private final long[] bits;
+    /** The number of blocks minus one */
+    private final int blockMask;
+    /** The number of bits set per element */
+    private final int hashes;
+
+    /**
+     * Constructs an index of the given collection with the default false
+     * positive probability.
+     *
+     * @param coll  the collection to index, must not be null
+     * @throws NullPointerException if the collection is null
+     */
+    public BloomFilterSet(final Collection<? extends E> coll) {
+        this(coll, DEFAULT_FALSE_POSITIVE_PROBABILITY);
+    }
+
+    /**
+     * Constructs an index of the given collection.
+     *
+     * @param coll  the collection to index, must not be null
+     * @param falsePositiveProbability  the target probability that the filter passes
+     *   an element that is not in the set, between 0 and 1 exclusive
+     * @throws NullPointerException if the collection is null
+     * @throws IllegalArgumentException if the probability is not between 0 and 1 exclusive
+     */
+    public BloomFilterSet(final Collection<? extends E> coll, final double falsePositiveProbability) {
+        if (coll == null) {
+            throw new NullPointerException("Collection must not be null.");
+        }
+        if (!(falsePositiveProbability > 0 && falsePositiveProbability < 1)) {
+            throw new IllegalArgumentException("False positive probability must be between 0 and 1 exclusive.");
+        }
+        exact = new HashSet<>(coll);
+        final int n = Math.max(1, exact.size());
+        final double ln2 = Math.log(2);
+        final double bitCount = -n * Math.log(falsePositiveProbability) / (ln2 * ln2);
+        final long blocks = Math.min(MAXIMUM_BLOCKS, Math.max(1, (long) Math.ceil(bitCount / (1 << BLOCK_SHIFT))));
+        final int blockCount = blocks == 1 ? 1 : Integer.highestOneBit((int) blocks - 1) << 1;
+        blockMask = blockCount - 1;
+        hashes = (int) Math.max(1, Math.min(MAXIMUM_HASHES, Math.round(-Math.log(falsePositiveProbability) / ln2)));
+        bits = new long[blockCount * BLOCK_LONGS];
+        for (final E obj : exact) {
+            final long h = hash(obj);
+            final int base = block(h);
+            int a = (int) h;
+            final int b = (int) (h >>> 32) | 1;
+            for (int i = 0; i < hashes; i++) {
+                final int bit = a & (1 << BLOCK_SHIFT) - 1;
+                bits[base + (bit >>> 6)] |= 1L << bit;
+                a += b;
+            }
+        }
+    }
+
+    //-----------------------------------------------------------------------
+    /**
+     * Tests the element against the filter only.
+     * <p>
+     * A <code>false</code> result is exact; a <code>true</code> result may be a
+     * false positive.
+     *
+     * @param object  the object to test, may be null
+     * @return false if the object is definitely not in this set
+     */
+    public boolean mightContain(final Object object) {
+        final long h = hash(object);
+        final int base = block(h);
+        int a = (int) h;
+        final int b = (int) (h >>> 32) | 1;
+        for (int i = 0; i < hashes; i++) {
+            final int bit = a & (1 << BLOCK_SHIFT) - 1;
+            if ((bits[base + (bit >>> 6)] & 1L << bit) == 0) {
+                return false;
+            }
+            a += b;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean contains(final Object object) {
+        return mightContain(object) && exact.contains(object);
+    }
+
+    @Override
+    public int size() {
+        return exact.size();
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return UnmodifiableIterator.unmodifiableIterator(exact.iterator());
+    }
+
+    /**
+     * Returns the first index of the block of a hash.
+     */
+    private int block(final long h) {
+        return ((int) (h >>> 40) & blockMask) << BLOCK_SHIFT - 6;
+    }
+
+    /**
+     * Calculates a 64 bit hash of an object, mixing its hash code.
+     */
+    private static long hash(final Object object) {
+        long h = (object == null ? 0 : object.hashCode()) * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 29;
+        h *= 0xBF58476D1CE4E5B9L;
+        return h ^ h >>> 32;
+    }
+
+    //-----------------------------------------------------------------------
+    @Override
+    public boolean add(final E object) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean addAll(final Collection<? extends E> coll) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean remove(final Object object) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean removeAll(final Collection<?> coll) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean retainAll(final Collection<?> coll) {
+        throw new UnsupportedOperationException();
+    }
+
+}
@@ -17,19 +17,56 @@ import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.AbstractCollection;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.ConcurrentModificationException;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Objects;
+import java.util.Random;
+import java.util.RandomAccess;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.Vector;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+import org.apache.commons.collections4.bag.CompactHashBag;
+import org.apache.commons.collections4.bag.HashBag;
+import org.apache.commons.collections4.bitmap.RoaringIntSet;
+import org.apache.commons.collections4.iterators.CombinationCursor;
+import org.apache.commons.collections4.iterators.ExternalSorter;
+import org.apache.commons.collections4.iterators.PermutationCursor;
+import org.apache.commons.collections4.iterators.SubsetCursor;
+import org.apache.commons.collections4.map.ObjectIntHashMap;
+import org.apache.commons.collections4.multiset.CompactHashMultiSet;
+import org.apache.commons.collections4.multiset.ConcurrentHashMultiSet;
+import org.apache.commons.collections4.multiset.HashMultiSet;
+import org.apache.commons.collections4.set.BloomFilterSet;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
@@ -314,4 +351,838 @@ public class CollectionUtilsTest {
           assertEquals(CollectionUtils.collect(list.iterator(), null, result), result);
           assertEquals(CollectionUtils.collect(list.iterator(), transformer, result), expectedResult);
 	  }
+	  
+	  @Test
+	  // Returns a primitive table mapping each unique element to its number of occurrences
+	  void getCardinalityTable() {
+		  assertThrows(java.lang.NullPointerException.class, () -> {
+			  CollectionUtils.getCardinalityTable(null);
+		  });
+		  
+		  List<String> collection = Arrays.asList("a1", "a2", null, "a1", null, "a1");
+		  ObjectIntHashMap<String> table = CollectionUtils.getCardinalityTable(collection);
+		  
+		  assertEquals(3, table.size());
+		  assertEquals(3, table.get("a1"));
+		  assertEquals(1, table.get("a2"));
+		  assertEquals(2, table.get(null));
+		  assertEquals(0, table.get("a3"));
+		  assertFalse(table.containsKey("a3"));
+		  
+		  Map<String, Integer> map = CollectionUtils.getCardinalityMap(collection);
+		  assertEquals(3, map.size());
+		  assertEquals(Integer.valueOf(3), map.get("a1"));
+		  assertEquals(Integer.valueOf(2), map.get(null));
+	  }
+	  
+	  @Test
+	  // Union, intersection and disjunction respect the cardinality of each element
+	  void setOperations() {
+		  List<String> a = Arrays.asList("a", "b", "b", "c", null);
+		  List<String> b = Arrays.asList("b", "c", "c", "d", null, null);
+		  
+		  assertThrows(java.lang.NullPointerException.class, () -> {
+			  CollectionUtils.union(a, null);
+		  });
+		  
+		  assertTrue(CollectionUtils.isEqualCollection(Arrays.asList("a", "b", "b", "c", "c", "d", null, null),
+				  CollectionUtils.union(a, b)));
+		  assertTrue(CollectionUtils.isEqualCollection(Arrays.asList("b", "c", null),
+				  CollectionUtils.intersection(a, b)));
+		  assertTrue(CollectionUtils.isEqualCollection(Arrays.asList("a", "b", "c", "d", null),
+				  CollectionUtils.disjunction(a, b)));
+		  assertTrue(CollectionUtils.intersection(a, Collections.emptyList()).isEmpty());
+	  }
+	  
+	  @Test
+	  // merge-based set operations on sorted inputs
+	  void sortedSetOperations() {
+		  List<Integer> a = Arrays.asList(1, 2, 2, 3, 5);
+		  List<Integer> b = Arrays.asList(2, 3, 3, 4);
+		  Comparator<Integer> c = Comparator.naturalOrder();
+		  
+		  assertThrows(java.lang.NullPointerException.class, () -> {
+			  CollectionUtils.intersection(a, b, null);
+		  });
+		  
+		  assertEquals(Arrays.asList(1, 2, 2, 3, 3, 4, 5), CollectionUtils.union(a, b, c));
+		  assertEquals(Arrays.asList(2, 3), CollectionUtils.intersection(a, b, c));
+		  assertEquals(Arrays.asList(1, 2, 3, 4, 5), CollectionUtils.disjunction(a, b, c));
+		  assertEquals(Arrays.asList(1, 2, 5), CollectionUtils.subtract(a, b, c));
+		  assertEquals(Arrays.asList(2, 3), ListUtils.intersection(a, b, c));
+	  }
+	  
+	  @Test
+	  // parallel set operations agree with the sequential ones, above and below the threshold
+	  void parallelSetOperations() {
+		  for (int n : new int[] {10, 40000}) {
+			  List<Integer> a = new ArrayList<>();
+			  List<Integer> b = new ArrayList<>();
+			  for (int i = 0; i < n; i++) {
+				  a.add(i % 1000);
+				  b.add(i * 7 % 1500);
+			  }
+			  assertTrue(CollectionUtils.isEqualCollection(CollectionUtils.union(a, b), CollectionUtils.parallelUnion(a, b)));
+			  assertTrue(CollectionUtils.isEqualCollection(CollectionUtils.intersection(a, b),
+					  CollectionUtils.parallelIntersection(a, b)));
+			  assertTrue(CollectionUtils.isEqualCollection(CollectionUtils.disjunction(a, b),
+					  CollectionUtils.parallelDisjunction(a, b)));
+			  assertTrue(CollectionUtils.isEqualCollection(CollectionUtils.subtract(a, b), CollectionUtils.parallelSubtract(a, b)));
+			  assertEquals(CollectionUtils.isSubCollection(a, b), CollectionUtils.parallelIsSubCollection(a, b));
+			  assertTrue(CollectionUtils.parallelIsEqualCollection(a, new ArrayList<>(a)));
+			  assertFalse(CollectionUtils.parallelIsEqualCollection(a, b));
+			  assertEquals(CollectionUtils.parallelUnion(a, b), CollectionUtils.parallelUnion(a, b));
+			  assertTrue(CollectionUtils.parallelIntersection(a, b).add(-1));
+		  }
+	  }
+	  
+	  @Test
+	  // set-algebra views and count-only methods agree with the materialized results
+	  void setOperationViews() {
+		  List<String> a = Arrays.asList("a", "b", "b", "c", null);
+		  List<String> b = Arrays.asList("b", "c", "c", "d", null, null);
+		  
+		  MultiSet<String> intersection = CollectionUtils.intersectionView(a, b);
+		  assertEquals(3, intersection.size());
+		  assertEquals(1, intersection.getCount("b"));
+		  assertEquals(0, intersection.getCount("a"));
+		  assertTrue(intersection.contains(null));
+		  assertTrue(CollectionUtils.isEqualCollection(CollectionUtils.intersection(a, b), intersection));
+		  assertEquals(2, CollectionUtils.unionView(a, b).getCount("c"));
+		  assertEquals(1, CollectionUtils.disjunctionView(a, b).getCount("b"));
+		  assertTrue(CollectionUtils.subtractView(a, a).isEmpty());
+		  assertThrows(UnsupportedOperationException.class, () -> {
+			  intersection.add("x");
+		  });
+		  
+		  assertEquals(3, CollectionUtils.intersectionCardinality(a, b));
+		  assertEquals(8, CollectionUtils.unionCardinality(a, b));
+		  assertEquals(5, CollectionUtils.disjunctionCardinality(a, b));
+	  }
+	  
+	  @Test
+	  // equator-based methods hash the raw elements with the equator
+	  void equatorOperations() {
+		  Equator<String> caseInsensitive = new Equator<String>() {
+			  @Override
+			  public boolean equate(String o1, String o2) {
+				  return o1.equalsIgnoreCase(o2);
+			  }
+			  
+			  @Override
+			  public int hash(String o) {
+				  return o.toLowerCase().hashCode();
+			  }
+		  };
+		  List<String> a = Arrays.asList("a", "B", "b", "c");
+		  List<String> b = Arrays.asList("C", "b", "A", "B");
+		  
+		  assertThrows(java.lang.NullPointerException.class, () -> {
+			  CollectionUtils.retainAll(a, b, null);
+		  });
+		  
+		  assertTrue(CollectionUtils.isEqualCollection(a, b, caseInsensitive));
+		  assertFalse(CollectionUtils.isEqualCollection(a, Arrays.asList("a", "b", "c", "c"), caseInsensitive));
+		  assertEquals(Arrays.asList("B", "b"), CollectionUtils.retainAll(a, Arrays.asList("b"), caseInsensitive));
+		  assertEquals(Arrays.asList("a", "c"), CollectionUtils.removeAll(a, Arrays.asList("b"), caseInsensitive));
+	  }
+	  
+	  @Test
+	  // a BloomFilterSet answers membership exactly and is probed directly
+	  void bloomFilterSetProbes() {
+		  List<Integer> allowed = new ArrayList<>();
+		  for (int i = 0; i < 1000; i += 2) {
+			  allowed.add(i);
+		  }
+		  BloomFilterSet<Integer> index = new BloomFilterSet<>(allowed);
+		  
+		  assertEquals(500, index.size());
+		  assertTrue(index.contains(998));
+		  assertFalse(index.contains(999));
+		  assertTrue(CollectionUtils.containsAny(Arrays.asList(1, 3, 4), index));
+		  assertFalse(CollectionUtils.containsAny(index, 1, 3, 5));
+		  assertTrue(CollectionUtils.containsAll(index, Arrays.asList(2, 4)));
+		  assertFalse(CollectionUtils.containsAll(index, Arrays.asList(2, 5)));
+		  assertEquals(Arrays.asList(2, 4), CollectionUtils.retainAll(Arrays.asList(1, 2, 3, 4), index));
+		  assertThrows(UnsupportedOperationException.class, () -> {
+			  index.add(1);
+		  });
+	  }
+	  
+	  @Test
+	  // retainAll and removeAll keep order and duplicates when the probe list is indexed
+	  void retainAllWithLargeProbeList() {
+		  List<Integer> probe = new ArrayList<>();
+		  for (int i = 0; i < 100; i += 2) {
+			  probe.add(i);
+		  }
+		  List<Integer> collection = Arrays.asList(4, 3, 4, 99, 98, 0);
+		  
+		  assertEquals(Arrays.asList(4, 4, 98, 0), CollectionUtils.retainAll(collection, probe));
+		  assertEquals(Arrays.asList(3, 99), CollectionUtils.removeAll(collection, probe));
+		  
+		  List<java.util.concurrent.TimeUnit> units = new ArrayList<>();
+		  for (int i = 0; i < 20; i++) {
+			  units.add(java.util.concurrent.TimeUnit.SECONDS);
+		  }
+		  assertEquals(Arrays.asList(java.util.concurrent.TimeUnit.SECONDS),
+				  CollectionUtils.retainAll(Arrays.asList(java.util.concurrent.TimeUnit.DAYS, java.util.concurrent.TimeUnit.SECONDS), units));
+	  }
+	  
+	  @Test
+	  // a probe collection that is not equals-based keeps its own containment test
+	  void retainAllWithComparatorProbe() {
+		  TreeSet<String> names = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+		  for (int i = 0; i < 20; i++) {
+			  names.add("name" + i);
+		  }
+		  Collection<String> probe = Collections.unmodifiableCollection(names);
+		  List<String> collection = Arrays.asList("NAME1", "other", "Name19", "name2");
+		  
+		  assertEquals(Arrays.asList("NAME1", "Name19", "name2"), CollectionUtils.retainAll(collection, probe));
+		  assertEquals(Arrays.asList("other"), CollectionUtils.removeAll(collection, probe));
+	  }
+	  
+	  @Test
+	  // enum and dense integer inputs give the same results as other inputs
+	  void denseSetOperations() {
+		  List<java.util.concurrent.TimeUnit> a = Arrays.asList(java.util.concurrent.TimeUnit.DAYS,
+				  java.util.concurrent.TimeUnit.SECONDS, java.util.concurrent.TimeUnit.SECONDS);
+		  List<java.util.concurrent.TimeUnit> b = Arrays.asList(java.util.concurrent.TimeUnit.SECONDS,
+				  java.util.concurrent.TimeUnit.HOURS);
+		  
+		  assertEquals(Arrays.asList(java.util.concurrent.TimeUnit.DAYS, java.util.concurrent.TimeUnit.SECONDS,
+				  java.util.concurrent.TimeUnit.SECONDS, java.util.concurrent.TimeUnit.HOURS), CollectionUtils.union(a, b));
+		  assertEquals(Arrays.asList(java.util.concurrent.TimeUnit.SECONDS), CollectionUtils.intersection(a, b));
+		  assertEquals(Arrays.asList(java.util.concurrent.TimeUnit.DAYS, java.util.concurrent.TimeUnit.SECONDS),
+				  CollectionUtils.subtract(a, b));
+		  assertTrue(CollectionUtils.isSubCollection(b.subList(0, 1), a));
+		  assertFalse(CollectionUtils.isSubCollection(b, a));
+		  assertTrue(CollectionUtils.containsAny(a, b));
+		  assertFalse(CollectionUtils.containsAll(a, b));
+		  
+		  assertEquals(Arrays.asList(3, 1, 3), CollectionUtils.subtract(Arrays.asList(1, 3, 1, 2, 3), Arrays.asList(2, 1)));
+		  assertEquals(Arrays.asList(1, 3), ListUtils.intersection(Arrays.asList(3, 3, 1), Arrays.asList(1, 2, 3, 4)));
+	  }
+	  
+	  @Test
+	  // two roaring sets are combined container by container, across array, bitmap and run containers
+	  void roaringIntSetOperations() {
+		  RoaringIntSet a = new RoaringIntSet();
+		  for (int i = -70000; i < 70000; i++) {
+			  a.add(i);
+		  }
+		  a.runOptimize();
+		  RoaringIntSet b = RoaringIntSet.of(-70001, -5, 3, 3, 69999, 70000, 1 << 20);
+		  
+		  assertEquals(Arrays.asList(-5, 3, 69999), new ArrayList<>(CollectionUtils.intersection(a, b)));
+		  assertInstanceOf(RoaringIntSet.class, CollectionUtils.union(a, b));
+		  assertEquals(140003, CollectionUtils.union(a, b).size());
+		  assertEquals(Arrays.asList(-70001, 70000, 1 << 20), new ArrayList<>(CollectionUtils.subtract(b, a)));
+		  assertEquals(140000, CollectionUtils.disjunctionCardinality(a, b));
+		  assertTrue(CollectionUtils.containsAny(a, b));
+		  assertFalse(CollectionUtils.containsAll(a, b));
+		  assertTrue(CollectionUtils.isSubCollection(CollectionUtils.intersection(a, b), b));
+		  assertTrue(CollectionUtils.isEqualCollection(RoaringIntSet.of(3, -5, 69999), CollectionUtils.intersection(b, a)));
+		  
+		  b.andNot(a);
+		  assertEquals(3, b.size());
+		  assertFalse(RoaringIntSet.intersects(a, b));
+		  assertEquals(3, RoaringIntSet.xorCardinality(b, new RoaringIntSet()));
+	  }
+	  
+	  @Test
+	  // many inputs are counted in one pass, a missing element counting as zero
+	  void naryOperations() {
+		  List<Integer> a = Arrays.asList(1, 1, 2, 3);
+		  List<Integer> b = Arrays.asList(1, 2, 2, 4);
+		  List<Integer> c = Arrays.asList(2, 1, 1, 1);
+		  
+		  assertEquals(Arrays.asList(1, 1, 1, 2, 2, 3, 4), CollectionUtils.union(a, b, c));
+		  assertEquals(Arrays.asList(1, 2), CollectionUtils.intersection(a, b, c));
+		  assertEquals(Arrays.asList(1, 1, 2, 3, 4), CollectionUtils.disjunction(Arrays.asList(a, b, c)));
+		  assertEquals(CollectionUtils.union(a, b), CollectionUtils.union(Arrays.asList(a, b)));
+		  assertTrue(CollectionUtils.intersection(Collections.<List<Integer>>emptyList()).isEmpty());
+		  assertThrows(NullPointerException.class, () -> CollectionUtils.union(a, null, c));
+	  }
+	  
+	  @Test
+	  // many sorted inputs are merged through a heap, equal elements keeping the order of the inputs
+	  void naryCollate() {
+		  List<List<Integer>> inputs = Arrays.asList(Arrays.asList(1, 4, 7), Arrays.asList(2, 4), Collections.<Integer>emptyList(),
+				  Arrays.asList(0, 4, 9));
+		  
+		  assertEquals(Arrays.asList(0, 1, 2, 4, 4, 4, 7, 9), CollectionUtils.collate(inputs));
+		  assertEquals(Arrays.asList(0, 1, 2, 4, 7, 9), CollectionUtils.collate(inputs, false));
+		  assertEquals(Arrays.asList(9, 7, 4, 4, 2), CollectionUtils.collate(Arrays.asList(Arrays.asList(9, 4), Arrays.asList(7, 4, 2)),
+				  Collections.reverseOrder()));
+		  
+		  List<String> a = Arrays.asList("a", "B");
+		  List<String> b = Arrays.asList("A", "b");
+		  assertEquals(Arrays.asList("a", "A", "B", "b"), CollectionUtils.collate(Arrays.asList(a, b), String.CASE_INSENSITIVE_ORDER));
+	  }
+	  
+	  @Test
+	  // runs spilled to disk are merged back in order over several passes, keeping equal keys in input order
+	  void externalSorter() throws IOException {
+		  Path dir = Files.createTempDirectory("sort");
+		  try {
+			  ExternalSorter<int[]> sorter = new ExternalSorter<>(Comparator.comparingInt(e -> e[0]), pairCodec(Integer.MAX_VALUE));
+			  sorter.setTempDirectory(dir);
+			  sorter.setRunSize(7);
+			  sorter.setFanIn(2);
+			  Random random = new Random(3);
+			  List<int[]> input = new ArrayList<>();
+			  for (int i = 0; i < 500; i++) {
+				  input.add(new int[] {random.nextInt(20), i});
+			  }
+			  
+			  // 72 runs are merged in passes down to two, which are merged lazily
+			  ExternalSorter.SortedIterator<int[]> it = sorter.sort(input.iterator());
+			  assertEquals(2, countFiles(dir));
+			  List<int[]> sorted = IteratorUtils.toList(it);
+			  assertEquals(500, sorted.size());
+			  for (int i = 1; i < sorted.size(); i++) {
+				  int[] previous = sorted.get(i - 1);
+				  int[] current = sorted.get(i);
+				  assertTrue(previous[0] < current[0] || previous[0] == current[0] && previous[1] < current[1]);
+			  }
+			  assertEquals(0, countFiles(dir));
+			  
+			  assertFalse(sorter.sort(Collections.<int[]>emptyIterator()).hasNext());
+			  assertEquals(Arrays.asList(3, 5), IteratorUtils.toList(IteratorUtils.transformedIterator(
+					  sorter.sort(Arrays.asList(new int[] {5, 0}, new int[] {3, 1}).iterator()), e -> e[0])));
+			  assertEquals(0, countFiles(dir));
+			  
+			  ExternalSorter<String> strings = new ExternalSorter<>(Comparator.<String>naturalOrder(), serializationCodec());
+			  strings.setTempDirectory(dir);
+			  strings.setRunSize(3);
+			  List<String> words = Arrays.asList("pear", "\u00e9clair", "apple", "", "fig", "\u00e9clair", "banana", "kiwi");
+			  List<String> expected = new ArrayList<>(words);
+			  Collections.sort(expected);
+			  assertEquals(expected, IteratorUtils.toList(strings.sort(words.iterator())));
+			  assertEquals(0, countFiles(dir));
+		  } finally {
+			  Files.delete(dir);
+		  }
+	  }
+	  
+	  @Test
+	  // run files are deleted when the sorted iterator is closed early or a run cannot be read back
+	  void externalSorterDeletesRunFiles() throws IOException {
+		  Path dir = Files.createTempDirectory("sort");
+		  try {
+			  List<int[]> input = new ArrayList<>();
+			  for (int i = 0; i < 100; i++) {
+				  input.add(new int[] {100 - i, i});
+			  }
+			  ExternalSorter<int[]> sorter = new ExternalSorter<>(Comparator.comparingInt(e -> e[0]), pairCodec(Integer.MAX_VALUE));
+			  sorter.setTempDirectory(dir);
+			  sorter.setRunSize(10);
+			  ExternalSorter.SortedIterator<int[]> it = sorter.sort(input.iterator());
+			  assertEquals(1, it.next()[0]);
+			  assertEquals(10, countFiles(dir));
+			  it.close();
+			  assertFalse(it.hasNext());
+			  assertEquals(0, countFiles(dir));
+			  
+			  // the merge pass fails
+			  ExternalSorter<int[]> failing = new ExternalSorter<>(Comparator.comparingInt(e -> e[0]), pairCodec(30));
+			  failing.setTempDirectory(dir);
+			  failing.setRunSize(10);
+			  failing.setFanIn(3);
+			  assertThrows(IOException.class, () -> failing.sort(input.iterator()));
+			  assertEquals(0, countFiles(dir));
+			  
+			  // the lazy merge fails
+			  ExternalSorter<int[]> failingLate = new ExternalSorter<>(Comparator.comparingInt(e -> e[0]), pairCodec(30));
+			  failingLate.setTempDirectory(dir);
+			  failingLate.setRunSize(10);
+			  ExternalSorter.SortedIterator<int[]> broken = failingLate.sort(input.iterator());
+			  assertEquals(1, broken.next()[0]);
+			  assertThrows(UncheckedIOException.class, () -> IteratorUtils.toList(broken));
+			  assertEquals(10, countFiles(dir));
+			  broken.close();
+			  assertEquals(0, countFiles(dir));
+		  } finally {
+			  Files.delete(dir);
+		  }
+	  }
+	  
+	  @Test
+	  // large inputs are merged in slices, giving the same list as the sequential merge
+	  void parallelCollate() {
+		  List<Integer> a = new ArrayList<>();
+		  List<Integer> b = new ArrayList<>();
+		  for (int i = 0; i < 40000; i++) {
+			  a.add(i / 3);
+			  b.add(i / 2);
+		  }
+		  
+		  assertEquals(CollectionUtils.collate(a, b, Comparator.naturalOrder()),
+				  CollectionUtils.parallelCollate(a, b, Comparator.naturalOrder()));
+		  assertEquals(CollectionUtils.collate(a, b, Comparator.naturalOrder(), false),
+				  CollectionUtils.parallelCollate(a, b, Comparator.naturalOrder(), false));
+		  assertEquals(20000, CollectionUtils.parallelCollate(a, b, Comparator.naturalOrder(), false).size());
+		  assertEquals(Arrays.asList("a", "A", "B", "b"), CollectionUtils.parallelCollate(Arrays.asList("a", "B"),
+				  Arrays.asList("A", "b"), String.CASE_INSENSITIVE_ORDER));
+	  }
+	  
+	  @Test
+	  // equal elements of both inputs keep the sequential order across slice bounds
+	  void parallelCollateEqualElements() {
+		  List<String> a = new ArrayList<>();
+		  List<String> b = new ArrayList<>();
+		  for (int i = 0; i < 20000; i++) {
+			  a.add(String.format("k%05d", i / 5));
+			  b.add(String.format("K%05d", i / 4));
+		  }
+		  
+		  List<String> merged = CollectionUtils.parallelCollate(a, b, String.CASE_INSENSITIVE_ORDER);
+		  assertEquals(CollectionUtils.collate(a, b, String.CASE_INSENSITIVE_ORDER), merged);
+		  assertTrue(merged.add("z"));
+		  List<String> distinct = CollectionUtils.parallelCollate(a, b, String.CASE_INSENSITIVE_ORDER, false);
+		  assertEquals(CollectionUtils.collate(a, b, String.CASE_INSENSITIVE_ORDER, false), distinct);
+		  assertTrue(distinct.add("z"));
+	  }
+	  
+	  @Test
+	  // the cursor walks the permutations in lexicographic order through a single reused list
+	  void permutationCursor() {
+		  PermutationCursor<String> cursor = new PermutationCursor<>(Arrays.asList("a", "b", "c"));
+		  List<String> first = cursor.next();
+		  assertEquals(Arrays.asList("a", "b", "c"), first);
+		  assertSame(first, cursor.next());
+		  assertEquals(Arrays.asList("a", "c", "b"), first);
+		  assertEquals(1, cursor.getRank());
+		  
+		  assertEquals(7, PermutationCursor.rank(new int[] {1, 0, 3, 2}));
+		  assertTrue(Arrays.equals(new int[] {2, 0, 1}, PermutationCursor.unrank(4, 3)));
+		  assertEquals(Arrays.asList("c", "a", "b"), new PermutationCursor<>(Arrays.asList("a", "b", "c"), 4, 5).next());
+		  assertEquals(24, StreamSupport.stream(new PermutationCursor<>(Arrays.asList(1, 2, 3, 4)).spliterator(), true)
+				  .map(ArrayList::new).distinct().count());
+		  assertThrows(IllegalArgumentException.class, () -> PermutationCursor.rank(new int[] {0, 0}));
+	  }
+	  
+	  @Test
+	  // combinations follow the lexicographic order of their positions, subsets the order of their bit masks
+	  void combinationAndSubsetCursors() {
+		  List<String> input = Arrays.asList("a", "b", "c", "d");
+		  CombinationCursor<String> combinations = new CombinationCursor<>(input, 2);
+		  assertEquals(Arrays.asList("a", "b"), combinations.next());
+		  assertEquals(Arrays.asList("a", "c"), combinations.next());
+		  assertEquals(6, CombinationCursor.count(4, 2));
+		  assertEquals(4, CombinationCursor.rank(new int[] {1, 3}, 4));
+		  assertTrue(Arrays.equals(new int[] {1, 3}, CombinationCursor.unrank(4, 4, 2)));
+		  assertEquals(6, StreamSupport.stream(new CombinationCursor<>(input, 2).spliterator(), true)
+				  .map(ArrayList::new).distinct().count());
+		  
+		  SubsetCursor<String> subsets = new SubsetCursor<>(input);
+		  assertEquals(Collections.emptyList(), subsets.next());
+		  assertEquals(Arrays.asList("d"), subsets.next());
+		  assertEquals(Arrays.asList("c"), subsets.next());
+		  assertEquals(Arrays.asList("c", "d"), subsets.next());
+		  assertEquals(Arrays.asList("a", "c"), new SubsetCursor<>(input, 10, 11).next());
+		  assertEquals(10, SubsetCursor.rank(new int[] {2, 0}, 4));
+		  assertEquals(16, StreamSupport.stream(new SubsetCursor<>(input).spliterator(), true)
+				  .map(ArrayList::new).distinct().count());
+	  }
+	  
+	  @Test
+	  // a shuffle visits every index once, in an order that only depends on the seed
+	  void shuffleIterator() {
+		  List<Integer> list = new ArrayList<>();
+		  for (int i = 0; i < 1000; i++) {
+			  list.add(i);
+		  }
+		  List<Integer> shuffled = IteratorUtils.toList(IteratorUtils.shuffleIterator(list, 42));
+		  assertEquals(new HashSet<>(list), new HashSet<>(shuffled));
+		  assertEquals(1000, shuffled.size());
+		  assertFalse(list.equals(shuffled));
+		  assertEquals(shuffled, IteratorUtils.toList(IteratorUtils.shuffleIterator(list, 42)));
+		  assertFalse(shuffled.equals(IteratorUtils.toList(IteratorUtils.shuffleIterator(list, 43))));
+		  assertFalse(IteratorUtils.shuffleIterator(Collections.emptyList(), 42).hasNext());
+	  }
+	  
+	  @Test
+	  // draws follow the counts of a multiset as it changes, reservoirs keep k elements of a stream
+	  void sampling() {
+		  Random random = new Random(7);
+		  HashMultiSet<String> multiSet = new HashMultiSet<>();
+		  multiSet.add("a", 3);
+		  multiSet.add("b", 1);
+		  assertTrue(multiSet.contains(multiSet.sample(random)));
+		  multiSet.remove("a", 3);
+		  multiSet.add("c", 2);
+		  for (int i = 0; i < 100; i++) {
+			  assertFalse("a".equals(multiSet.sample(random)));
+		  }
+		  multiSet.clear();
+		  assertThrows(NoSuchElementException.class, () -> multiSet.sample(random));
+		  
+		  List<Integer> stream = new ArrayList<>();
+		  for (int i = 0; i < 1000; i++) {
+			  stream.add(i);
+		  }
+		  List<Integer> sample = IteratorUtils.sample(stream.iterator(), 10, random);
+		  assertEquals(10, new HashSet<>(sample).size());
+		  assertTrue(stream.containsAll(sample));
+		  assertEquals(3, IteratorUtils.sample(Arrays.asList(1, 2, 3).iterator(), 10, random).size());
+		  assertEquals(Arrays.asList(3), IteratorUtils.weightedSample(Arrays.asList(1, 2, 3).iterator(), 1,
+				  i -> i == 3 ? 1 : 0, random));
+	  }
+	  
+	  @Test
+	  // removing through the unique set or the entry set keeps the size and the draws in step
+	  void samplingAfterIteratorRemove() {
+		  Random random = new Random(7);
+		  HashMultiSet<Integer> multiSet = new HashMultiSet<>();
+		  multiSet.add(1, 2);
+		  multiSet.add(2, 3);
+		  multiSet.add(3, 1);
+		  assertTrue(multiSet.contains(multiSet.sample(random)));
+		  
+		  Iterator<Integer> unique = multiSet.uniqueSet().iterator();
+		  while (unique.hasNext()) {
+			  if (unique.next() == 2) {
+				  unique.remove();
+			  }
+		  }
+		  assertEquals(3, multiSet.size());
+		  for (int i = 0; i < 100; i++) {
+			  assertFalse(Integer.valueOf(2).equals(multiSet.sample(random)));
+		  }
+		  
+		  Iterator<MultiSet.Entry<Integer>> entries = multiSet.entrySet().iterator();
+		  while (entries.hasNext()) {
+			  if (entries.next().getElement() == 1) {
+				  entries.remove();
+			  }
+		  }
+		  assertEquals(1, multiSet.size());
+		  for (int i = 0; i < 100; i++) {
+			  assertEquals(Integer.valueOf(3), multiSet.sample(random));
+		  }
+		  
+		  entries = multiSet.entrySet().iterator();
+		  entries.next();
+		  entries.remove();
+		  assertEquals(0, multiSet.size());
+		  assertThrows(NoSuchElementException.class, () -> multiSet.sample(random));
+	  }
+	  
+	  @Test
+	  // the compact bag and multiset count like their map based counterparts
+	  void compactBagAndMultiSet() {
+		  List<String> input = Arrays.asList("a", "b", "a", null, "c", "a");
+		  CompactHashMultiSet<String> multiSet = new CompactHashMultiSet<>(input);
+		  assertEquals(new HashMultiSet<>(input), multiSet);
+		  assertEquals(3, multiSet.getCount("a"));
+		  assertEquals(1, multiSet.getCount(null));
+		  assertEquals(3, multiSet.remove("a", 2));
+		  assertEquals(0, multiSet.setCount("d", 4));
+		  assertEquals(8, multiSet.size());
+		  assertEquals(new HashSet<>(Arrays.asList("a", "b", "c", "d", null)), multiSet.uniqueSet());
+		  
+		  CompactHashBag<String> bag = new CompactHashBag<>(input);
+		  assertEquals(new HashBag<>(input), bag);
+		  assertTrue(bag.add("d"));
+		  assertFalse(bag.add("a"));
+		  assertTrue(bag.remove("a", 1));
+		  assertEquals(3, bag.getCount("a"));
+		  assertTrue(bag.remove("a"));
+		  assertEquals(4, bag.size());
+		  Iterator<String> it = bag.iterator();
+		  it.next();
+		  bag.add("e");
+		  assertThrows(ConcurrentModificationException.class, it::next);
+	  }
+	  
+	  @Test
+	  // atomic count updates return the count they replaced and do not lose concurrent adds
+	  void concurrentMultiSet() {
+		  ConcurrentHashMultiSet<Integer> multiSet = new ConcurrentHashMultiSet<>();
+		  IntStream.range(0, 10000).parallel().forEach(i -> multiSet.add(i % 10));
+		  assertEquals(10000, multiSet.size());
+		  assertEquals(1000, multiSet.getCount(3));
+		  assertEquals(1000, multiSet.remove(3, 1500));
+		  assertFalse(multiSet.contains(3));
+		  assertEquals(0, multiSet.add(3, 2));
+		  assertEquals(2, multiSet.setCount(3, 5));
+		  assertEquals(1000, multiSet.setCount(4, 0));
+		  assertEquals(9, multiSet.uniqueSet().size());
+		  assertThrows(NullPointerException.class, () -> multiSet.add(null));
+	  }
+	  
+	  @Test
+	  // bulk operations merge counts per distinct element
+	  void bulkCountMerging() {
+		  HashMultiSet<String> multiSet = new HashMultiSet<>();
+		  multiSet.add("a", 1000000);
+		  multiSet.add("b", 2);
+		  HashMultiSet<String> other = new HashMultiSet<>();
+		  other.add("a", 3);
+		  other.add("c", 5);
+		  assertTrue(multiSet.union(other));
+		  assertEquals(1000007, multiSet.size());
+		  assertTrue(multiSet.subtract(other));
+		  assertEquals(999997, multiSet.getCount("a"));
+		  assertFalse(multiSet.contains("c"));
+		  assertTrue(multiSet.addAll(other));
+		  assertTrue(multiSet.intersect(other));
+		  assertEquals(8, multiSet.size());
+		  
+		  HashBag<String> bag = new HashBag<>(Arrays.asList("a", "a", "a", "b"));
+		  assertTrue(bag.retainAll(new HashBag<>(Arrays.asList("a", "a", "b", "b", "c"))));
+		  assertEquals(2, bag.getCount("a"));
+		  assertEquals(1, bag.getCount("b"));
+		  assertTrue(bag.union(new HashBag<>(Arrays.asList("b", "b", "c"))));
+		  assertTrue(bag.removeAll(new HashBag<>(Arrays.asList("a", "b"))));
+		  assertEquals(new HashBag<>(Arrays.asList("a", "b", "c")), bag);
+	  }
+	  
+	  @Test
+	  // every implementation visits each distinct element once with its count
+	  void forEachEntry() {
+		  List<String> input = Arrays.asList("a", "b", "a", "c", "a");
+		  List<MultiSet<String>> multiSets = Arrays.asList(new HashMultiSet<>(input), new CompactHashMultiSet<>(input),
+				  new ConcurrentHashMultiSet<>(input));
+		  for (MultiSet<String> multiSet : multiSets) {
+			  Map<String, Integer> counts = new HashMap<>();
+			  multiSet.forEachEntry(counts::put);
+			  assertEquals(3, counts.size());
+			  assertEquals(Integer.valueOf(3), counts.get("a"));
+			  assertEquals(Integer.valueOf(1), counts.get("c"));
+		  }
+		  List<Bag<String>> bags = Arrays.asList(new HashBag<>(input), new CompactHashBag<>(input));
+		  for (Bag<String> bag : bags) {
+			  Map<String, Integer> counts = new HashMap<>();
+			  bag.forEachEntry(counts::put);
+			  assertEquals(Integer.valueOf(3), counts.get("a"));
+			  assertThrows(ConcurrentModificationException.class, () -> bag.forEachEntry((e, n) -> bag.add("d")));
+		  }
+	  }
+	  
+	  @Test
+	  // the count index answers top-k queries and follows later changes
+	  void countOrderedQueries() {
+		  HashMultiSet<String> multiSet = new HashMultiSet<>();
+		  multiSet.add("a", 5);
+		  multiSet.add("b", 3);
+		  multiSet.add("c", 1);
+		  assertEquals("[a:5, b:3]", multiSet.topK(2).toString());
+		  multiSet.add("c", 9);
+		  multiSet.remove("a", 4);
+		  multiSet.add("d");
+		  assertEquals("[c:10, b:3]", multiSet.topK(2).toString());
+		  assertEquals(2, multiSet.bottomK(2).size());
+		  assertEquals(1, multiSet.bottomK(1).get(0).getCount());
+		  assertEquals(Arrays.asList("c", "b"), multiSet.elementsWithCountAtLeast(2));
+		  assertEquals(4, multiSet.topK(10).size());
+		  assertThrows(IllegalArgumentException.class, () -> multiSet.topK(-1));
+	  }
+	  
+	  @Test
+	  // sizes are compared before anything is counted, and counting stops at the first element that runs out
+	  void subCollectionAndEquality() {
+		  List<String> a = Arrays.asList("a", "b", "b", null);
+		  List<String> b = Arrays.asList("b", null, "a", "b");
+		  
+		  assertTrue(CollectionUtils.isEqualCollection(a, b));
+		  assertTrue(CollectionUtils.isSubCollection(a, b));
+		  assertTrue(CollectionUtils.isSubCollection(b, a));
+		  assertFalse(CollectionUtils.isProperSubCollection(a, b));
+		  assertFalse(CollectionUtils.isEqualCollection(a, Arrays.asList("a", "a", "b", null)));
+		  assertFalse(CollectionUtils.isSubCollection(a, Arrays.asList("a", "b", null, "c")));
+		  assertTrue(CollectionUtils.isProperSubCollection(Arrays.asList("b", "b"), a));
+		  
+		  assertTrue(CollectionUtils.isEqualCollection(Collections.emptyList(), Collections.emptyList()));
+		  assertTrue(CollectionUtils.isSubCollection(Collections.emptyList(), a));
+		  assertFalse(CollectionUtils.isSubCollection(a, Collections.emptyList()));
+		  assertFalse(CollectionUtils.isProperSubCollection(Collections.emptyList(), Collections.emptyList()));
+		  assertTrue(CollectionUtils.isProperSubCollection(Collections.emptyList(), a));
+		  
+		  assertFalse(CollectionUtils.isEqualCollection(a, readingAtMost(0, 3)));
+		  assertFalse(CollectionUtils.isSubCollection(readingAtMost(0, 5), a));
+		  assertFalse(CollectionUtils.isProperSubCollection(readingAtMost(0, 4), a));
+		  assertFalse(CollectionUtils.isEqualCollection(a, readingAtMost(1, 4)));
+		  assertFalse(CollectionUtils.isSubCollection(readingAtMost(1, 2), a));
+		  assertFalse(CollectionUtils.isProperSubCollection(readingAtMost(1, 3), a));
+		  
+		  Equator<String> caseInsensitive = new Equator<String>() {
+			  @Override
+			  public boolean equate(String o1, String o2) {
+				  return o1.equalsIgnoreCase(o2);
+			  }
+			  
+			  @Override
+			  public int hash(String o) {
+				  return o.toLowerCase().hashCode();
+			  }
+		  };
+		  List<String> c = Arrays.asList("a", "B", "b");
+		  assertTrue(CollectionUtils.isEqualCollection(c, Arrays.asList("b", "A", "b"), caseInsensitive));
+		  assertFalse(CollectionUtils.isEqualCollection(c, Arrays.asList("a", "A", "b"), caseInsensitive));
+		  assertFalse(CollectionUtils.isEqualCollection(c, readingAtMost(0, 2), caseInsensitive));
+		  assertFalse(CollectionUtils.isEqualCollection(c, readingAtMost(1, 3), caseInsensitive));
+		  assertTrue(CollectionUtils.isEqualCollection(Collections.<String>emptyList(), Collections.<String>emptyList(),
+				  caseInsensitive));
+	  }
+	  
+	  @Test
+	  // lists with a bulk removeIf use it, others are compacted in one pass
+	  void filterInBulk() {
+		  List<Integer> input = Arrays.asList(1, 2, 3, 4, 5, 6, 7);
+		  List<List<Integer>> lists = Arrays.asList(new ArrayList<>(input), new CopyOnWriteArrayList<>(input),
+				  Collections.synchronizedList(new ArrayList<>(input)), new LinkedList<>(input),
+				  new IndexedList<>(new ArrayList<>(input)));
+		  for (List<Integer> list : lists) {
+			  assertTrue(CollectionUtils.filter(list, i -> i % 3 != 0));
+			  assertEquals(Arrays.asList(1, 2, 4, 5, 7), list);
+			  assertFalse(CollectionUtils.filter(list, i -> true));
+			  assertTrue(CollectionUtils.filterInverse(list, i -> i > 4));
+			  assertEquals(Arrays.asList(1, 2, 4), list);
+			  assertFalse(CollectionUtils.filterInverse(list, i -> false));
+		  }
+		  
+		  List<Integer> fixed = new IndexedList<>(Arrays.asList(1, 2, 3));
+		  assertThrows(UnsupportedOperationException.class, () -> CollectionUtils.filter(fixed, i -> i != 2));
+		  assertEquals(Arrays.asList(1, 2, 3), fixed);
+		  
+		  List<Integer> list = new IndexedList<>(new ArrayList<>(input));
+		  assertThrows(IllegalStateException.class, () -> CollectionUtils.filter(list, i -> {
+			  if (i == 5) {
+				  throw new IllegalStateException();
+			  }
+			  return i % 3 != 0;
+		  }));
+		  assertEquals(Arrays.asList(1, 2, 4, 5, 6, 7), list);
+	  }
+	  
+	  /**
+	   * Returns a collection of the given size holding "z", whose iterator fails
+	   * when more than the given number of elements are read.
+	   */
+	  private static Collection<String> readingAtMost(final int reads, final int size) {
+		  return new AbstractCollection<String>() {
+			  @Override
+			  public Iterator<String> iterator() {
+				  return new Iterator<String>() {
+					  private int read;
+					  
+					  @Override
+					  public boolean hasNext() {
+						  return read < size;
+					  }
+					  
+					  @Override
+					  public String next() {
+						  if (++read > reads) {
+							  fail("read " + read + " elements");
+						  }
+						  return "z";
+					  }
+				  };
+			  }
+			  
+			  @Override
+			  public int size() {
+				  return size;
+			  }
+		  };
+	  }
+	  
+	  /**
+	   * A random access list inheriting the iterator-based removeIf.
+	   */
+	  private static final class IndexedList<E> extends AbstractList<E> implements RandomAccess {
+		  private final List<E> elements;
+		  
+		  IndexedList(final List<E> elements) {
+			  this.elements = elements;
+		  }
+		  
+		  @Override
+		  public E get(int index) {
+			  return elements.get(index);
+		  }
+		  
+		  @Override
+		  public E set(int index, E element) {
+			  return elements.set(index, element);
+		  }
+		  
+		  @Override
+		  public void add(int index, E element) {
+			  elements.add(index, element);
+		  }
+		  
+		  @Override
+		  public E remove(int index) {
+			  return elements.remove(index);
+		  }
+		  
+		  @Override
+		  public int size() {
+			  return elements.size();
+		  }
+	  }
+	  
+	  /**
+	   * Returns a codec of int pairs, which fails when more than the given number of pairs are read.
+	   */
+	  private static ExternalSorter.Codec<int[]> pairCodec(final int reads) {
+		  return new ExternalSorter.Codec<int[]>() {
+			  private int read;
+			  
+			  @Override
+			  public void write(int[] element, DataOutput out) throws IOException {
+				  out.writeInt(element[0]);
+				  out.writeInt(element[1]);
+			  }
+			  
+			  @Override
+			  public int[] read(DataInput in) throws IOException {
+				  if (++read > reads) {
+					  throw new IOException("read " + read + " pairs");
+				  }
+				  return new int[] {in.readInt(), in.readInt()};
+			  }
+		  };
+	  }
+	  
+	  /**
+	   * Returns a codec writing each element with Java serialization, prefixed by its length.
+	   */
+	  private static <E extends Serializable> ExternalSorter.Codec<E> serializationCodec() {
+		  return new ExternalSorter.Codec<E>() {
+			  @Override
+			  public void write(E element, DataOutput out) throws IOException {
+				  ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+				  try (ObjectOutputStream stream = new ObjectOutputStream(bytes)) {
+					  stream.writeObject(element);
+				  }
+				  out.writeInt(bytes.size());
+				  out.write(bytes.toByteArray());
+			  }
+			  
+			  @Override
+			  @SuppressWarnings("unchecked")
+			  public E read(DataInput in) throws IOException {
+				  byte[] bytes = new byte[in.readInt()];
+				  in.readFully(bytes);
+				  try (ObjectInputStream stream = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+					  return (E) stream.readObject();
+				  } catch (ClassNotFoundException ex) {
+					  throw new IOException(ex);
+				  }
+			  }
+		  };
+	  }
+	  
+	  private static long countFiles(final Path dir) throws IOException {
+		  try (Stream<Path> files = Files.list(dir)) {
+			  return files.count();
+		  }
+	  }
 }